@@ -0,0 +1,96 @@
+package tictactoe;
+
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * How {@link MctsEngine} scales with its worker count: every invocation is
+ * one search of the same mid-game position with a fixed time budget, and the
+ * {@code playouts} counter gives the playouts per second across all workers.
+ * A {@code threads} value of 0 stands for one worker per available
+ * processor.
+ *
+ * <p>Each search starts from a fresh copy of the position, so the engine
+ * never reuses the tree of the previous invocation.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MctsScalingBenchmark {
+    @Param({"1", "2", "4", "0"})
+    public int threads;
+
+    @Param({"100"})
+    public long budgetMillis;
+
+    private MctsEngine engine;
+    private GameSnapshot position;
+
+    /**
+     * Playouts of the searches in the current iteration; JMH reports them
+     * per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Playouts {
+        public long playouts;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int workers = threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+        engine = new MctsEngine(workers, 42);
+        engine.setBudgetMillis(budgetMillis);
+        position = midGame();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.close();
+    }
+
+    /**
+     * Six rounds of random play from a fixed seed, stopped where the next
+     * player has to place.
+     */
+    private static GameSnapshot midGame() {
+        BoardTopology topology = BoardTopology.of(Board.SIZE);
+        Game game = new Game(List.of(new Player("A"), new Player("B")), topology, 5, 30, new Random(42));
+        SplittableRandom choices = new SplittableRandom(42);
+        int[] moves = new int[MoveGenerator.capacity(topology)];
+        while (game.getCurrentRound() <= 6 || game.getPhase() != Game.PHASE_PLACE) {
+            if (game.getPhase() == Game.PHASE_CARD && game.getOfferMask() == 0) {
+                game.offerCards();
+            }
+            game.play(moves[choices.nextInt(MoveGenerator.generate(game, moves))]);
+        }
+        return game.snapshot();
+    }
+
+    @Benchmark
+    public int search(Playouts counter) {
+        SearchResult result = engine.search(position.restore(new Random(42)));
+        counter.playouts += result.getNodes();
+        return result.getBestMove();
+    }
+}
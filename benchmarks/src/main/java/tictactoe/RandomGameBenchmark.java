@@ -0,0 +1,111 @@
+package tictactoe;
+
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of complete games between two random players, the workload of
+ * self-play and tournament runs. Game seeds follow a fixed sequence, so every
+ * fork plays the same games.
+ *
+ * <p>{@link #randomGame()} plays for good with {@link Game#play(int)}, which
+ * keeps no undo history; {@link #randomLineUndone()} explores a line the way
+ * the search engines do, with {@link Game#make(int)} and
+ * {@link Game#unmake()}.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RandomGameBenchmark {
+    @Param({"3", "4"})
+    public int size;
+
+    @Param({"5"})
+    public int pieceCap;
+
+    @Param({"30"})
+    public int turnLimit;
+
+    private BoardTopology topology;
+    private SplittableRandom seeds;
+    private int[] moves;
+
+    private Game searchGame;
+    private SplittableRandom lineChoices;
+
+    @Setup
+    public void setUp() {
+        topology = BoardTopology.of(size);
+        seeds = new SplittableRandom(42);
+        moves = new int[MoveGenerator.capacity(topology)];
+        searchGame = new Game(List.of(new Player("A"), new Player("B")), topology, pieceCap, turnLimit, new Random(42));
+        lineChoices = new SplittableRandom(42);
+    }
+
+    /**
+     * One full game with the same turn flow as the UIs: place, play one of
+     * the two drawn cards in card rounds, maybe capture, end the turn.
+     */
+    @Benchmark
+    public int randomGame() {
+        long seed = seeds.nextLong();
+        List<Player> players = List.of(new Player("A"), new Player("B"));
+        Game game = new Game(players, topology, pieceCap, turnLimit, new Random(seed));
+        SplittableRandom choices = new SplittableRandom(seed);
+        while (!game.isGameOver()) {
+            if (game.getPhase() == Game.PHASE_CARD && game.getOfferMask() == 0) {
+                game.offerCards();
+            }
+            int count = MoveGenerator.generate(game, moves);
+            game.play(moves[choices.nextInt(count)]);
+        }
+        return players.get(0).getScore() - players.get(1).getScore();
+    }
+
+    /**
+     * One random line from the opening to the end of the game, made move by
+     * move with card draws as {@link Move#offer(int)} moves, then unmade back
+     * to the opening, so every invocation starts from the same position and
+     * the undo journal is part of the cost.
+     */
+    @Benchmark
+    public int randomLineUndone() {
+        Game game = searchGame;
+        int depth = 0;
+        while (!game.isGameOver()) {
+            int move;
+            if (game.getPhase() == Game.PHASE_CARD && game.getOfferMask() == 0) {
+                int first = lineChoices.nextInt(Move.CARD_KINDS);
+                int second = (first + 1 + lineChoices.nextInt(Move.CARD_KINDS - 1)) % Move.CARD_KINDS;
+                move = Move.offer(1 << first | 1 << second);
+            } else {
+                move = moves[lineChoices.nextInt(MoveGenerator.generate(game, moves))];
+            }
+            game.make(move);
+            depth++;
+        }
+        List<Player> players = game.getPlayers();
+        int margin = players.get(0).getScore() - players.get(1).getScore();
+        while (depth-- > 0) {
+            game.unmake();
+        }
+        return margin;
+    }
+}
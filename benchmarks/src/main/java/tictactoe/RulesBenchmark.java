@@ -0,0 +1,235 @@
+package tictactoe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-operation costs of the rules hot paths on the default 3×3×3 board.
+ *
+ * <p>Each benchmark keeps its game or board in a steady state so that every
+ * invocation does the same work: placements cycle through the cells with the
+ * piece cap evicting the oldest piece, scoring placements start a fresh game
+ * every cycle, layer shifts go up and back down, and captures are undone by
+ * hand after each measurement.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RulesBenchmark {
+    private static final int PIECE_CAP = 5;
+
+    private BoardTopology topology;
+
+    private Game placementGame;
+    private Player placer;
+    private int placementCell;
+
+    private Game scoringGame;
+    private Player scorer;
+    private int[] scoringCells;
+    private int scoringCursor;
+
+    private Game roundGame;
+    private Position roundFreeze;
+
+    private Board captureBoard;
+    private Piece attacker;
+    private Piece victim;
+    private Position captureFrom;
+    private Position captureTarget;
+
+    private Board shiftBoard;
+
+    private Board lookupBoard;
+    private Player lookupOwner;
+
+    @Setup
+    public void setUp() {
+        topology = BoardTopology.of(Board.SIZE);
+        Random random = new Random(42);
+
+        placer = new Player("placer");
+        placementGame = new Game(List.of(placer, new Player("idle")), PIECE_CAP, Integer.MAX_VALUE, random);
+
+        scoringCells = disjointLineCycle();
+        newScoringGame();
+
+        List<Player> roundPlayers = List.of(new Player("a"), new Player("b"));
+        roundGame = new Game(roundPlayers, PIECE_CAP, Integer.MAX_VALUE, random);
+        for (int i = 0; i < 2 * PIECE_CAP; i++) {
+            roundGame.placePiece(roundPlayers.get(i % 2), topology.position(i * 2));
+        }
+        roundFreeze = topology.position(topology.getCellCount() - 1);
+
+        Player red = new Player("red");
+        Player blue = new Player("blue");
+        captureBoard = new Board(topology);
+        captureFrom = new Position(1, 1, 1);
+        captureTarget = new Position(1, 1, 2);
+        attacker = detachedPiece(new PieceStore(red, 1), 0);
+        victim = detachedPiece(new PieceStore(blue, 1), 0);
+        captureBoard.setPiece(captureFrom, attacker);
+        captureBoard.setPiece(captureTarget, victim);
+        captureBoard.setEmpowered(attacker, true);
+
+        shiftBoard = filledBoard(red, blue, random);
+        lookupBoard = filledBoard(red, blue, random);
+        lookupOwner = red;
+    }
+
+    /**
+     * A game in which no line has been scored yet. A line scores only once,
+     * so {@link #placeCompletingLines()} needs a new one for every pass over
+     * its cycle.
+     */
+    private void newScoringGame() {
+        scorer = new Player("scorer");
+        scoringGame = new Game(List.of(scorer, new Player("idle")), topology, topology.getWinLength(),
+                Integer.MAX_VALUE, new Random(42));
+    }
+
+    /**
+     * Lines chained so that no two consecutive lines share a cell; with the
+     * piece cap equal to the win length every target cell is free when it is
+     * played, and every third placement completes a line.
+     */
+    private int[] disjointLineCycle() {
+        List<Integer> cells = new ArrayList<>();
+        int previous = -1;
+        for (int line = 0; line < topology.getLineCount(); line++) {
+            if (previous >= 0 && sharesCell(previous, line)) {
+                continue;
+            }
+            for (int cell : topology.lineCells(line)) {
+                cells.add(cell);
+            }
+            previous = line;
+        }
+        int[] cycle = new int[cells.size()];
+        for (int i = 0; i < cycle.length; i++) {
+            cycle[i] = cells.get(i);
+        }
+        return cycle;
+    }
+
+    private boolean sharesCell(int first, int second) {
+        for (int a : topology.lineCells(first)) {
+            for (int b : topology.lineCells(second)) {
+                if (a == b) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private Board filledBoard(Player red, Player blue, Random random) {
+        Board board = new Board(topology);
+        PieceStore redStore = new PieceStore(red, topology.getCellCount());
+        PieceStore blueStore = new PieceStore(blue, topology.getCellCount());
+        for (int cell = 0; cell < topology.getCellCount(); cell++) {
+            if (random.nextInt(3) != 0) {
+                PieceStore store = random.nextBoolean() ? redStore : blueStore;
+                board.setPiece(topology.position(cell), detachedPiece(store, cell));
+            }
+        }
+        return board;
+    }
+
+    /**
+     * A piece off any game's queue, allocated from {@code store}.
+     */
+    private static Piece detachedPiece(PieceStore store, int placementIndex) {
+        return store.view(store.allocate(placementIndex));
+    }
+
+    /**
+     * A placement that evicts the oldest piece once the cap is reached.
+     */
+    @Benchmark
+    public boolean placePiece() {
+        int cell = placementCell;
+        placementCell = cell + 1 == topology.getCellCount() ? 0 : cell + 1;
+        return placementGame.placePiece(placer, topology.position(cell));
+    }
+
+    /**
+     * Placements along lines, so scoring finds a newly completed line on
+     * every third call. The game is replaced once per pass over the cycle,
+     * since a line scores only once; that construction is part of the
+     * measured cost, spread over the placements of the pass.
+     */
+    @Benchmark
+    public boolean placeCompletingLines() {
+        int cell = scoringCells[scoringCursor];
+        boolean placed = scoringGame.placePiece(scorer, topology.position(cell));
+        if (++scoringCursor == scoringCells.length) {
+            scoringCursor = 0;
+            newScoringGame();
+        }
+        return placed;
+    }
+
+    /**
+     * Ages every piece and ticks one freeze timer, refreshed each round.
+     */
+    @Benchmark
+    public int advanceRound() {
+        roundGame.getBoard().freezeCell(roundFreeze, FreezeCard.TURNS);
+        roundGame.advanceRound();
+        return roundGame.getCurrentRound();
+    }
+
+    /**
+     * A capture followed by the four board updates that undo it.
+     */
+    @Benchmark
+    public Piece empoweredCapture() {
+        Piece removed = captureBoard.empoweredCapture(attacker, captureTarget);
+        captureBoard.removePiece(captureTarget);
+        captureBoard.setPiece(captureFrom, attacker);
+        captureBoard.setEmpowered(attacker, true);
+        captureBoard.setPiece(captureTarget, victim);
+        return removed;
+    }
+
+    /**
+     * One shift up and one back down.
+     */
+    @Benchmark
+    public Board shiftLayerUpAndDown() {
+        shiftBoard.shiftLayerUp(0);
+        shiftBoard.shiftLayerDown(1);
+        return shiftBoard;
+    }
+
+    @Benchmark
+    public Set<Position> positionsOf() {
+        return lookupBoard.positionsOf(lookupOwner);
+    }
+
+    /**
+     * Board construction; lines come from the shared topology.
+     */
+    @Benchmark
+    public Board newBoard() {
+        return new Board();
+    }
+}
@@ -0,0 +1,225 @@
+package tictactoe;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Load client for a running {@link SessionServer}: opens a number of idle
+ * connections, then plays games on a few busy ones and prints the latency
+ * percentiles of the commands, measured from sending a line to reading its
+ * reply. Run it in its own JVM, so that the server's pauses and the client's
+ * are not mixed up:
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar tictactoe.SessionServer 7333
+ * java -cp benchmarks/target/benchmarks.jar tictactoe.SessionLoadTest 7333 10000 4 10 20
+ * </pre>
+ *
+ * <p>Arguments: port, idle connections, concurrent games, warm-up seconds
+ * and measured seconds. Each game is driven by one client thread over its two
+ * connections: {@code STATE}, {@code PLACE} on the first free cell, a card
+ * that is always legal when one is offered, then {@code END}.</p>
+ */
+public final class SessionLoadTest {
+    private static final int MAX_MICROS = 100_000;
+    private static final int SIZE = 3;
+    private static final int TURN_LIMIT = 30;
+
+    private SessionLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : SessionServer.DEFAULT_PORT;
+        int idle = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int games = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        long warmupMillis = (args.length > 3 ? Long.parseLong(args[3]) : 10) * 1000;
+        long measureMillis = (args.length > 4 ? Long.parseLong(args[4]) : 20) * 1000;
+
+        List<Socket> idleSockets = new ArrayList<>(idle);
+        for (int i = 0; i < idle; i++) {
+            idleSockets.add(new Socket(InetAddress.getLoopbackAddress(), port));
+        }
+        System.out.println(idle + " idle connections open");
+
+        long start = System.currentTimeMillis();
+        long measureFrom = start + warmupMillis;
+        long stopAt = measureFrom + measureMillis;
+        Driver[] drivers = new Driver[games];
+        Thread[] threads = new Thread[games];
+        for (int i = 0; i < games; i++) {
+            drivers[i] = new Driver(port, measureFrom, stopAt);
+            threads[i] = new Thread(drivers[i], "game-" + i);
+            threads[i].start();
+        }
+        long[] histogram = new long[MAX_MICROS + 1];
+        long commands = 0;
+        for (int i = 0; i < games; i++) {
+            threads[i].join();
+            if (drivers[i].failure != null) {
+                throw drivers[i].failure;
+            }
+            for (int micros = 0; micros <= MAX_MICROS; micros++) {
+                histogram[micros] += drivers[i].histogram[micros];
+            }
+            commands += drivers[i].commands;
+        }
+        for (Socket socket : idleSockets) {
+            socket.close();
+        }
+        System.out.printf("%d commands in %d s: p50 %d us, p99 %d us, p99.9 %d us, max %d us%n", commands,
+                measureMillis / 1000, percentile(histogram, commands, 0.50), percentile(histogram, commands, 0.99),
+                percentile(histogram, commands, 0.999), percentile(histogram, commands, 1.0));
+    }
+
+    private static long percentile(long[] histogram, long total, double fraction) {
+        long rank = Math.max(1, (long) Math.ceil(total * fraction));
+        long seen = 0;
+        for (int micros = 0; micros < histogram.length; micros++) {
+            seen += histogram[micros];
+            if (seen >= rank) {
+                return micros;
+            }
+        }
+        return MAX_MICROS;
+    }
+
+    /**
+     * Plays game after game over two connections, recording the latency of
+     * every command sent between {@code measureFrom} and {@code stopAt}.
+     */
+    private static final class Driver implements Runnable {
+        final long[] histogram = new long[MAX_MICROS + 1];
+        long commands;
+        Exception failure;
+
+        private final int port;
+        private final long measureFrom;
+        private final long stopAt;
+        private final Client[] seats = new Client[2];
+
+        Driver(int port, long measureFrom, long stopAt) {
+            this.port = port;
+            this.measureFrom = measureFrom;
+            this.stopAt = stopAt;
+        }
+
+        @Override
+        public void run() {
+            try {
+                seats[0] = new Client(port);
+                seats[1] = new Client(port);
+                while (System.currentTimeMillis() < stopAt) {
+                    playGame();
+                }
+                seats[0].close();
+                seats[1].close();
+            } catch (Exception e) {
+                failure = e;
+            }
+        }
+
+        private void playGame() throws IOException {
+            String id = command(seats[0], "NEW load " + SIZE + " 5 " + TURN_LIMIT).split(" ")[1];
+            command(seats[1], "JOIN " + id + " load");
+            while (System.currentTimeMillis() < stopAt) {
+                String[] state = command(seats[0], "STATE").split(" ");
+                if (Integer.parseInt(state[1]) > TURN_LIMIT) {
+                    break;
+                }
+                Client seat = seats[Integer.parseInt(state[2])];
+                String placed = coordinates(state[7].indexOf('.'));
+                String reply = command(seat, "PLACE " + placed);
+                if (reply.startsWith("OK OFFER")) {
+                    command(seat, "CARD " + alwaysLegal(reply.split(" "), placed));
+                }
+                command(seat, "END");
+            }
+            seats[0].close();
+            seats[1].close();
+            seats[0] = new Client(port);
+            seats[1] = new Client(port);
+        }
+
+        /**
+         * A play of one of the offered cards that is legal right after
+         * placing on {@code placed}: empower or rewind that piece, shift the
+         * bottom layer up or the next one down, or freeze a cell.
+         */
+        private static String alwaysLegal(String[] reply, String placed) {
+            int kind = Integer.parseInt(reply[2]);
+            switch (kind) {
+                case Move.CARD_SHIFT_UP:
+                    return kind + " 0";
+                case Move.CARD_SHIFT_DOWN:
+                    return kind + " 1";
+                case Move.CARD_FREEZE:
+                    return kind + " 0 0 0";
+                default:
+                    return kind + " " + placed;
+            }
+        }
+
+        private static String coordinates(int cell) {
+            return (cell % SIZE) + " " + (cell / SIZE % SIZE) + " " + (cell / (SIZE * SIZE));
+        }
+
+        private String command(Client client, String line) throws IOException {
+            long sent = System.nanoTime();
+            String reply = client.request(line);
+            long micros = (System.nanoTime() - sent) / 1000;
+            long now = System.currentTimeMillis();
+            if (now >= measureFrom && now < stopAt) {
+                histogram[(int) Math.min(micros, MAX_MICROS)]++;
+                commands++;
+            }
+            if (!reply.startsWith("OK")) {
+                throw new IllegalStateException(line + " -> " + reply);
+            }
+            return reply;
+        }
+    }
+
+    /**
+     * One connection; unsolicited notices are skipped while waiting for the
+     * reply to a command.
+     */
+    private static final class Client {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final Writer out;
+
+        Client(int port) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            socket.setTcpNoDelay(true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        }
+
+        String request(String line) throws IOException {
+            out.write(line);
+            out.write('\n');
+            out.flush();
+            while (true) {
+                String reply = in.readLine();
+                if (reply == null) {
+                    throw new IOException("Server closed the connection");
+                }
+                if (reply.startsWith("OK") || reply.startsWith("ERR")) {
+                    return reply;
+                }
+            }
+        }
+
+        void close() throws IOException {
+            socket.close();
+        }
+    }
+}
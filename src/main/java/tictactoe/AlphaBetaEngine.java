@@ -0,0 +1,528 @@
+package tictactoe;
+
+import java.util.Arrays;
+
+/**
+ * Computer opponent for two-player games that searches the real ruleset
+ * through {@link Game#make(int)} and {@link Game#unmake()}.
+ *
+ * <p>The search is a negamax with alpha-beta pruning, run by iterative
+ * deepening until a time budget runs out. Depth is counted in actions
+ * (placement, card, capture, end of turn); a forced action does not use up
+ * depth, so non-card rounds cost one ply per turn. The card draw is a chance
+ * event: a card phase with no pending offer, at the root as anywhere else, is
+ * valued as the average over every pair of distinct cards of the better card
+ * of the pair. Once {@link Game#offerCards()} has drawn the pair, only the
+ * offered cards are searched.</p>
+ *
+ * <p>The principal variation of each iteration is collected in a triangular
+ * array and then followed further through the transposition table, since a
+ * table cutoff ends the collected line early. Moves are ordered by the
+ * previous iteration's principal variation, then
+ * the best move stored in the transposition table, a history table and a
+ * static bonus for placements that complete or block lines. Leaves are scored
+ * by the point difference plus the potential of lines that are still open for
+ * one side only.</p>
+ *
+ * <p>With a {@link TranspositionTable}, results are stored under the Zobrist
+ * hash mixed with the scores, the lines already scored, the round and the
+ * game settings, which the hash leaves out but the values depend on. One table can be shared by engines on
+ * several threads and kept across moves and games.</p>
+ */
+public class AlphaBetaEngine {
+    public static final long DEFAULT_BUDGET_MILLIS = 50;
+
+    private static final int POINT = 1000;
+    private static final int WIN = 1_000_000;
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+    private static final int MAX_PLY = 96;
+    private static final int CHECK_INTERVAL = 255;
+    private static final int HISTORY_SIZE = 1 << 14;
+    private static final int EMPOWERED_BONUS = 30;
+    private static final int PAIRS = Move.CARD_KINDS * (Move.CARD_KINDS - 1) / 2;
+
+    private final int[][] moves = new int[MAX_PLY][];
+    private final int[][] orderKeys = new int[MAX_PLY][];
+    private final int[][] pv = new int[MAX_PLY][MAX_PLY];
+    private final int[] pvLength = new int[MAX_PLY];
+    private final int[] history = new int[HISTORY_SIZE];
+    private final int[][] cardValues = new int[MAX_PLY][Move.CARD_KINDS];
+    private int[] previousPv = new int[0];
+    private long[][] occupancy = new long[2][0];
+
+    private TranspositionTable table;
+    private long budgetNanos = DEFAULT_BUDGET_MILLIS * 1_000_000L;
+    private int maxDepth = MAX_PLY - 1;
+
+    private Game game;
+    private Board board;
+    private BoardTopology topology;
+    private long deadline;
+    private long nodes;
+    private boolean aborted;
+    private boolean followPv;
+
+    public AlphaBetaEngine() {
+    }
+
+    public AlphaBetaEngine(TranspositionTable table) {
+        this.table = table;
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+
+    /**
+     * Sets the table to store results in, or {@code null} to search without
+     * one.
+     */
+    public void setTranspositionTable(TranspositionTable table) {
+        this.table = table;
+    }
+
+    public long getBudgetMillis() {
+        return budgetNanos / 1_000_000L;
+    }
+
+    /**
+     * Sets the time per search; 0 means no time limit, leaving the search to
+     * {@link #setMaxDepth(int)}, which makes its result independent of the
+     * machine's speed.
+     */
+    public void setBudgetMillis(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Budget must not be negative: " + millis);
+        }
+        this.budgetNanos = millis * 1_000_000L;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Caps the iterative deepening; mostly useful for reproducible searches.
+     */
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 1 || maxDepth >= MAX_PLY) {
+            throw new IllegalArgumentException("Depth must be between 1 and " + (MAX_PLY - 1) + ": " + maxDepth);
+        }
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Searches the current position of {@code game} for the player to move.
+     * The game is explored in place and left exactly as it was found.
+     *
+     * <p>Interrupting the searching thread ends the search at its next time
+     * check, as if the budget had run out; the result is then that of the
+     * last completed iteration, and the interrupt flag stays set.</p>
+     *
+     * <p>If the cards of a card round have not been drawn yet, the player has
+     * nothing to choose: the result carries the expected score over the draw
+     * and {@link Move#NONE} as its move. Draw with {@link Game#offerCards()}
+     * and search again for the card to play.</p>
+     */
+    public SearchResult search(Game game) {
+        if (game.getPlayers().size() != 2) {
+            throw new IllegalArgumentException("AlphaBetaEngine supports two-player games only");
+        }
+        prepare(game);
+        long start = System.nanoTime();
+        deadline = budgetNanos == 0 ? Long.MAX_VALUE : start + budgetNanos;
+        nodes = 0;
+        aborted = false;
+        previousPv = new int[0];
+        Arrays.fill(history, 0);
+        if (table != null) {
+            table.newSearch();
+        }
+        if (game.isGameOver()) {
+            return new SearchResult(Move.NONE, evaluate(), 0, 0, previousPv);
+        }
+
+        boolean pendingDraw = isPendingDraw();
+        int bestMove = Move.NONE;
+        int bestScore = 0;
+        int completedDepth = 0;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            followPv = true;
+            int score = negamax(depth, 0, -INFINITY, INFINITY);
+            if (aborted) {
+                break;
+            }
+            completedDepth = depth;
+            bestScore = score;
+            previousPv = principalVariation();
+            bestMove = previousPv.length > 0 ? previousPv[0] : Move.NONE;
+            if (Math.abs(score) >= WIN || System.nanoTime() > deadline) {
+                break;
+            }
+        }
+        if (bestMove == Move.NONE && !pendingDraw) {
+            // Not even depth 1 finished: fall back to the best-ordered legal move.
+            aborted = false;
+            int count = generate(0);
+            orderMoves(0, count, Move.NONE);
+            bestMove = moves[0][0];
+            previousPv = new int[]{bestMove};
+        }
+        SearchResult result = new SearchResult(bestMove, bestScore, completedDepth, nodes, previousPv);
+        this.game = null;
+        this.board = null;
+        return result;
+    }
+
+    private void prepare(Game game) {
+        this.game = game;
+        this.board = game.getBoard();
+        if (topology != board.getTopology()) {
+            topology = board.getTopology();
+            Arrays.fill(moves, null);
+            Arrays.fill(orderKeys, null);
+            occupancy = new long[2][topology.getWordCount()];
+        }
+    }
+
+    private int negamax(int depth, int ply, int alpha, int beta) {
+        if ((++nodes & CHECK_INTERVAL) == 0
+                && (System.nanoTime() > deadline || Thread.currentThread().isInterrupted())) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+        pvLength[ply] = ply;
+        if (game.isGameOver()) {
+            return terminal(ply);
+        }
+        if (ply >= MAX_PLY - 1) {
+            return evaluate();
+        }
+        if (isPendingDraw()) {
+            return chance(depth, ply);
+        }
+        int phase = game.getPhase();
+        if (depth <= 0 && phase != Game.PHASE_CARD) {
+            return evaluate();
+        }
+
+        long key = 0L;
+        int tableMove = Move.NONE;
+        if (table != null) {
+            key = tableKey();
+            long entry = table.probe(key);
+            if (entry != 0L) {
+                tableMove = TranspositionTable.move(entry);
+                int stored = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (ply > 0 && TranspositionTable.depth(entry) >= depth
+                        && (bound == TranspositionTable.BOUND_EXACT
+                        || bound == TranspositionTable.BOUND_LOWER && stored >= beta
+                        || bound == TranspositionTable.BOUND_UPPER && stored <= alpha)) {
+                    return stored;
+                }
+            }
+        }
+
+        int count = generate(ply);
+        orderMoves(ply, count, tableMove);
+        int childDepth = count == 1 ? depth : depth - 1;
+        int[] list = moves[ply];
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = Move.NONE;
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            int side = game.getCurrentPlayerIndex();
+            game.make(move);
+            int score = game.getCurrentPlayerIndex() == side
+                    ? negamax(childDepth, ply + 1, alpha, beta)
+                    : -negamax(childDepth, ply + 1, -beta, -alpha);
+            game.unmake();
+            if (aborted) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestMove = move;
+                updatePv(ply, move);
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        history[historySlot(move)] += depth * depth;
+                        break;
+                    }
+                }
+            }
+        }
+        if (table != null && bestMove != Move.NONE && Math.abs(best) <= TranspositionTable.MAX_SCORE - MAX_PLY) {
+            int bound = best >= beta ? TranspositionTable.BOUND_LOWER
+                    : best > originalAlpha ? TranspositionTable.BOUND_EXACT : TranspositionTable.BOUND_UPPER;
+            table.store(key, depth, bound, toTable(best, ply), bestMove);
+        }
+        return best;
+    }
+
+    /**
+     * Whether the current player is in a card phase whose cards have not
+     * been drawn yet.
+     */
+    private boolean isPendingDraw() {
+        return game.getPhase() == Game.PHASE_CARD && game.getOfferMask() == 0;
+    }
+
+    /**
+     * The principal variation of the iteration that just finished: the line
+     * collected in {@link #pv}, followed on through the table's best moves
+     * for as long as they are legal, up to the next card draw or the end of
+     * the game.
+     */
+    private int[] principalVariation() {
+        int[] line = Arrays.copyOf(pv[0], MAX_PLY - 1);
+        int length = 0;
+        while (length < pvLength[0] && game.make(line[length])) {
+            length++;
+        }
+        if (table != null && length == pvLength[0]) {
+            while (length < line.length && !game.isGameOver() && !isPendingDraw()) {
+                long entry = table.probe(tableKey());
+                int move = entry == 0L ? Move.NONE : TranspositionTable.move(entry);
+                if (move == Move.NONE || !game.make(move)) {
+                    break;
+                }
+                line[length++] = move;
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            game.unmake();
+        }
+        return Arrays.copyOf(line, length);
+    }
+
+    /**
+     * Table key of the current position: the Zobrist hash mixed with what it
+     * leaves out but the search value depends on.
+     */
+    private long tableKey() {
+        long key = game.getZobristHash();
+        for (Player player : game.getPlayers()) {
+            key = Long.rotateLeft(key, 13) ^ (player.getScore() + 1) * 0x9E37_79B9_7F4A_7C15L;
+        }
+        key = Long.rotateLeft(key, 11) ^ game.getScoredLinesHash();
+        key = Long.rotateLeft(key, 17) ^ game.getCurrentRound() * 0xC2B2_AE3D_27D4_EB4FL;
+        return Long.rotateLeft(key, 19) ^ ((long) game.getTurnLimit() << 32 | game.getPieceCap()) * 0x1656_67B1_9E37_79F9L;
+    }
+
+    /**
+     * Win and loss scores count plies from the root; the table keeps them
+     * relative to the stored node.
+     */
+    private static int toTable(int score, int ply) {
+        return score > WIN / 2 ? score + ply : score < -WIN / 2 ? score - ply : score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        return score > WIN / 2 ? score - ply : score < -WIN / 2 ? score + ply : score;
+    }
+
+    /**
+     * Values a card phase before the two cards are drawn: the player will
+     * get two distinct kinds uniformly at random and keep the better one.
+     */
+    private int chance(int depth, int ply) {
+        int childDepth = Math.max(depth - 1, 0);
+        boolean wasFollowing = followPv;
+        followPv = false;
+        int[] values = cardValues[ply];
+        for (int kind = 0; kind < Move.CARD_KINDS; kind++) {
+            ensureBuffers(ply);
+            int count = MoveGenerator.generateCardsForSearch(game, kind, moves[ply], 0);
+            orderMoves(ply, count, Move.NONE);
+            int[] list = moves[ply];
+            int best = -INFINITY;
+            for (int i = 0; i < count; i++) {
+                game.make(list[i]);
+                int score = negamax(childDepth, ply + 1, -INFINITY, INFINITY);
+                game.unmake();
+                if (aborted) {
+                    return 0;
+                }
+                best = Math.max(best, score);
+            }
+            values[kind] = best;
+        }
+        followPv = wasFollowing;
+        long sum = 0;
+        for (int a = 0; a < Move.CARD_KINDS; a++) {
+            for (int b = a + 1; b < Move.CARD_KINDS; b++) {
+                sum += Math.max(values[a], values[b]);
+            }
+        }
+        pvLength[ply] = ply;
+        return (int) (sum / PAIRS);
+    }
+
+    private void updatePv(int ply, int move) {
+        int[] line = pv[ply];
+        line[ply] = move;
+        int childLength = pvLength[ply + 1];
+        System.arraycopy(pv[ply + 1], ply + 1, line, ply + 1, childLength - (ply + 1));
+        pvLength[ply] = Math.max(childLength, ply + 1);
+    }
+
+    private int terminal(int ply) {
+        int diff = scoreDifference();
+        if (diff == 0) {
+            return 0;
+        }
+        // Prefer quicker wins and slower losses.
+        return diff > 0 ? WIN + diff * POINT - ply : -WIN + diff * POINT + ply;
+    }
+
+    private int scoreDifference() {
+        int me = game.getCurrentPlayerIndex();
+        return game.getPlayers().get(me).getScore() - game.getPlayers().get(1 - me).getScore();
+    }
+
+    /**
+     * Static evaluation from the point of view of the player to move.
+     */
+    private int evaluate() {
+        int me = game.getCurrentPlayerIndex();
+        Player mine = game.getPlayers().get(me);
+        Player theirs = game.getPlayers().get(1 - me);
+        int words = topology.getWordCount();
+        long[] own = occupancy[0];
+        long[] opp = occupancy[1];
+        int empowered = 0;
+        for (int word = 0; word < words; word++) {
+            own[word] = board.occupancyWord(mine, word);
+            opp[word] = board.occupancyWord(theirs, word);
+            long powered = board.empoweredWord(word);
+            empowered += Long.bitCount(powered & own[word]) - Long.bitCount(powered & opp[word]);
+        }
+        int winLength = topology.getWinLength();
+        int value = scoreDifference() * POINT + empowered * EMPOWERED_BONUS;
+        int lines = topology.getLineCount();
+        for (int line = 0; line < lines; line++) {
+            int ownCount = 0;
+            int oppCount = 0;
+            for (int cell : topology.lineCells(line)) {
+                long bit = 1L << cell;
+                if ((own[cell >>> 6] & bit) != 0) {
+                    ownCount++;
+                } else if ((opp[cell >>> 6] & bit) != 0) {
+                    oppCount++;
+                }
+            }
+            if (oppCount == 0 && ownCount > 0 && !game.hasScoredLine(mine, line)) {
+                value += lineWeight(ownCount, winLength);
+            } else if (ownCount == 0 && oppCount > 0 && !game.hasScoredLine(theirs, line)) {
+                value -= lineWeight(oppCount, winLength);
+            }
+        }
+        return value;
+    }
+
+    private static int lineWeight(int count, int winLength) {
+        if (count >= winLength - 1) {
+            return 200;
+        }
+        return 10 * count * count;
+    }
+
+    private int generate(int ply) {
+        ensureBuffers(ply);
+        return MoveGenerator.generateForSearch(game, moves[ply]);
+    }
+
+    private void ensureBuffers(int ply) {
+        if (moves[ply] == null) {
+            int capacity = MoveGenerator.capacity(topology);
+            moves[ply] = new int[capacity];
+            orderKeys[ply] = new int[capacity];
+        }
+    }
+
+    /**
+     * Sorts the first {@code count} moves of {@code ply} best-first.
+     */
+    private void orderMoves(int ply, int count, int tableMove) {
+        int[] list = moves[ply];
+        int[] keys = orderKeys[ply];
+        int pvMove = followPv && ply < previousPv.length ? previousPv[ply] : Move.NONE;
+        boolean pvFound = false;
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            int key;
+            if (move == pvMove) {
+                key = Integer.MAX_VALUE;
+                pvFound = true;
+            } else if (move == tableMove) {
+                key = Integer.MAX_VALUE - 1;
+            } else {
+                key = history[historySlot(move)];
+                switch (Move.type(move)) {
+                    case Move.TYPE_PLACE:
+                        key += placementBonus(Move.cell(move));
+                        break;
+                    case Move.TYPE_CAPTURE:
+                        key += 50_000;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            keys[i] = key;
+        }
+        followPv = pvFound;
+        for (int i = 1; i < count; i++) {
+            int move = list[i];
+            int key = keys[i];
+            int j = i - 1;
+            while (j >= 0 && keys[j] < key) {
+                list[j + 1] = list[j];
+                keys[j + 1] = keys[j];
+                j--;
+            }
+            list[j + 1] = move;
+            keys[j + 1] = key;
+        }
+    }
+
+    /**
+     * Rewards placements that complete or block lines, and central cells that
+     * lie on many lines.
+     */
+    private int placementBonus(int cell) {
+        Player me = game.getCurrentPlayer();
+        int winLength = topology.getWinLength();
+        int bonus = 0;
+        for (int line : topology.linesThrough(cell)) {
+            int own = 0;
+            int opp = 0;
+            for (int each : topology.lineCells(line)) {
+                Piece piece = board.getPiece(each);
+                if (piece != null) {
+                    if (piece.getOwner() == me) {
+                        own++;
+                    } else {
+                        opp++;
+                    }
+                }
+            }
+            if (opp == 0) {
+                bonus += own == winLength - 1 ? 20_000 : 1 + own * own * 10;
+            } else if (own == 0) {
+                bonus += opp == winLength - 1 ? 10_000 : opp * 5;
+            }
+        }
+        return bonus;
+    }
+
+    private static int historySlot(int move) {
+        return (move ^ (move >>> 14) ^ (move >>> 24)) & (HISTORY_SIZE - 1);
+    }
+}
@@ -1,7 +1,7 @@
 package tictactoe;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -9,134 +9,372 @@ import java.util.Set;
 /**
  * Represents a 3D grid board that stores pieces, frozen cells, and provides
  * convenience helpers for layer shifting and empowered captures.
+ *
+ * <p>The geometry (cell indexing, lines, neighbours) comes from a shared
+ * {@link BoardTopology}, so creating a board only allocates its state arrays.
+ * Cell state is kept as bitboards over the topology's cell indices, split into
+ * {@code long} words: occupancy per owner, plus masks for empowered pieces and
+ * frozen cells. Each layer is a contiguous block of bits, so on boards of up
+ * to 64 cells a layer swap is a pair of shifts. The {@link Piece} objects are
+ * still kept per cell so callers can resolve owners, ages and FIFO order.</p>
+ *
+ * <p>Each line is identified by its index in {@link #listAllLines()}. Using
+ * the topology's cell-to-lines index the board keeps, per owner, the set of
+ * lines that are currently complete: a placement or removal only re-checks the
+ * lines through that cell, and a layer swap only the lines touching the
+ * swapped layers.</p>
+ *
+ * <p>Freeze timers are kept as expiry stamps against the board's round clock,
+ * which {@link #tickFreezes()} advances without touching the cells: a cell is
+ * frozen while the clock is below its stamp. {@link Game} attaches its players' pieces
+ * to the same clock, so their ages need no per-round update either.</p>
+ *
+ * <p>The board also maintains the cell part of the position's Zobrist hash
+ * (owner, empowered flag and remaining freeze timer of every cell) as those
+ * change; a tick only rekeys the timers still running, so reading the hash
+ * takes constant time. The pieces' stores add the FIFO order, and
+ * {@link Game} the round and turn terms.</p>
  */
 public class Board {
+    /**
+     * Edge length of the default board.
+     */
     public static final int SIZE = 3;
 
-    private final Piece[][][] grid = new Piece[SIZE][SIZE][SIZE];
-    private final int[][][] frozenTurns = new int[SIZE][SIZE][SIZE];
-    private final List<List<Position>> allLines;
+    private final BoardTopology topology;
+    private final int size;
+    private final int words;
+    private final int lineWords;
+    private final Piece[] cells;
+    private final int[] frozenUntil;
+    private final RoundClock clock = new RoundClock();
+    private final List<Player> owners = new ArrayList<>(2);
+    private long[][] occupancy;
+    private long[][] completedLines;
+    private final long[] occupied;
+    private final long[] empoweredMask;
+    private final long[] frozenStamps;
+    private final Zobrist zobrist;
+    private long hash;
 
     public Board() {
-        this.allLines = computeAllLines();
+        this(BoardTopology.of(SIZE));
+    }
+
+    public Board(BoardTopology topology) {
+        this.topology = topology;
+        this.size = topology.getSize();
+        this.words = topology.getWordCount();
+        this.lineWords = topology.getLineWordCount();
+        this.cells = new Piece[topology.getCellCount()];
+        this.frozenUntil = new int[topology.getCellCount()];
+        this.occupancy = new long[2][words];
+        this.completedLines = new long[2][lineWords];
+        this.occupied = new long[words];
+        this.empoweredMask = new long[words];
+        this.frozenStamps = new long[words];
+        this.zobrist = Zobrist.of(topology);
+    }
+
+    public BoardTopology getTopology() {
+        return topology;
+    }
+
+    public int getSize() {
+        return size;
     }
 
     public boolean inBounds(Position pos) {
-        return pos.getX() >= 0 && pos.getX() < SIZE
-                && pos.getY() >= 0 && pos.getY() < SIZE
-                && pos.getZ() >= 0 && pos.getZ() < SIZE;
+        return topology.inBounds(pos.getX(), pos.getY(), pos.getZ());
     }
 
     public Piece getPiece(Position pos) {
-        return grid[pos.getX()][pos.getY()][pos.getZ()];
+        return cells[index(pos)];
+    }
+
+    /**
+     * Piece on the cell with index {@code cell} (see
+     * {@link BoardTopology#cellIndex(int, int, int)}), or {@code null}.
+     */
+    public Piece getPiece(int cell) {
+        return cells[cell];
     }
 
     public boolean isEmpty(Position pos) {
-        return getPiece(pos) == null;
+        return isEmpty(index(pos));
+    }
+
+    public boolean isEmpty(int cell) {
+        return !testBit(occupied, cell);
     }
 
     public boolean isFrozen(Position pos) {
-        return frozenTurns[pos.getX()][pos.getY()][pos.getZ()] > 0;
+        return isFrozen(index(pos));
+    }
+
+    public boolean isFrozen(int cell) {
+        return frozenUntil[cell] > clock.round;
     }
 
     public int frozenTurnsRemaining(Position pos) {
-        return frozenTurns[pos.getX()][pos.getY()][pos.getZ()];
+        return frozenTurnsRemaining(index(pos));
+    }
+
+    public int frozenTurnsRemaining(int cell) {
+        return Math.max(0, frozenUntil[cell] - clock.round);
     }
 
     public void freezeCell(Position pos, int turns) {
-        if (!inBounds(pos)) {
-            return;
+        if (inBounds(pos)) {
+            freezeCell(index(pos), turns);
         }
-        frozenTurns[pos.getX()][pos.getY()][pos.getZ()] = Math.max(turns,
-                frozenTurns[pos.getX()][pos.getY()][pos.getZ()]);
     }
 
+    /**
+     * Freezes cell {@code cell} for at least {@code turns} rounds; a longer
+     * running timer is kept.
+     */
+    public void freezeCell(int cell, int turns) {
+        if (turns > frozenTurnsRemaining(cell)) {
+            setFrozenTurnsAt(cell, turns);
+        }
+    }
+
+    /**
+     * Advances the round clock by one, counting down every freeze timer and
+     * ageing every attached piece without touching them.
+     */
     public void tickFreezes() {
-        for (int x = 0; x < SIZE; x++) {
-            for (int y = 0; y < SIZE; y++) {
-                for (int z = 0; z < SIZE; z++) {
-                    if (frozenTurns[x][y][z] > 0) {
-                        frozenTurns[x][y][z] -= 1;
-                    }
+        rekeyRunningFreezes();
+        clock.round++;
+    }
+
+    /**
+     * Reverts one {@link #tickFreezes()}; used when a round is undone.
+     */
+    void untickFreezes() {
+        clock.round--;
+        rekeyRunningFreezes();
+    }
+
+    /**
+     * Swaps the hash key of every timer running at the current round for the
+     * key of one turn less, or back; the key of a timer that is not running
+     * is zero either way.
+     */
+    private void rekeyRunningFreezes() {
+        for (int word = 0; word < words; word++) {
+            for (long bits = frozenStamps[word]; bits != 0; bits &= bits - 1) {
+                int idx = (word << 6) + Long.numberOfTrailingZeros(bits);
+                int remaining = frozenUntil[idx] - clock.round;
+                if (remaining > 0) {
+                    hash ^= zobrist.frozen(idx, remaining) ^ zobrist.frozen(idx, remaining - 1);
                 }
             }
         }
     }
 
-    public void setPiece(Position pos, Piece piece) {
-        if (!inBounds(pos)) {
-            throw new IllegalArgumentException("Position out of bounds: " + pos);
+    /**
+     * The clock that {@link #tickFreezes()} advances; pieces attached to it
+     * with {@link PieceStore#attachClock(RoundClock)} age with the board.
+     */
+    RoundClock clock() {
+        return clock;
+    }
+
+    /**
+     * Sets the frozen timer of {@code cell} exactly, unlike
+     * {@link #freezeCell(Position, int)}, which only extends it; used to
+     * restore timers from a snapshot.
+     */
+    void setFrozenTurnsAt(int cell, int turns) {
+        setFrozenUntilAt(cell, turns > 0 ? clock.round + turns : 0);
+    }
+
+    /**
+     * Round at which the freeze on {@code cell} ends, 0 if it was never
+     * frozen; it may lie in the past.
+     */
+    int frozenUntilAt(int cell) {
+        return frozenUntil[cell];
+    }
+
+    /**
+     * Sets the raw expiry stamp of {@code cell}; used to restore it when a
+     * move is undone, since an expired stamp comes back to life once the
+     * rounds after it are undone as well.
+     */
+    void setFrozenUntilAt(int cell, int round) {
+        hash ^= zobrist.frozen(cell, frozenUntil[cell] - clock.round) ^ zobrist.frozen(cell, round - clock.round);
+        frozenUntil[cell] = round;
+        if (round != 0) {
+            frozenStamps[cell >>> 6] |= 1L << cell;
+        } else {
+            frozenStamps[cell >>> 6] &= ~(1L << cell);
         }
-        grid[pos.getX()][pos.getY()][pos.getZ()] = piece;
-        piece.setPosition(pos);
+    }
+
+    public void setPiece(Position pos, Piece piece) {
+        setPiece(index(pos), piece);
+    }
+
+    public void setPiece(int cell, Piece piece) {
+        checkCell(cell);
+        piece.setLocation(cell, topology.position(cell)); // throws for a detached piece, before the cell changes
+        clearCell(cell);
+        fillCell(cell, piece);
     }
 
     public Piece removePiece(Position pos) {
-        if (!inBounds(pos)) {
-            throw new IllegalArgumentException("Position out of bounds: " + pos);
-        }
-        Piece piece = grid[pos.getX()][pos.getY()][pos.getZ()];
-        grid[pos.getX()][pos.getY()][pos.getZ()] = null;
+        return removePiece(index(pos));
+    }
+
+    public Piece removePiece(int cell) {
+        checkCell(cell);
+        Piece piece = clearCell(cell);
         if (piece != null) {
-            piece.setPosition(null);
+            piece.setLocation(-1, null);
         }
         return piece;
     }
 
+    private void checkCell(int cell) {
+        if (cell < 0 || cell >= cells.length) {
+            throw new IllegalArgumentException("Cell out of bounds: " + cell);
+        }
+    }
+
+    /**
+     * Sets the empowered flag of a piece and keeps the empowered mask in sync
+     * when the piece is on this board.
+     */
+    public void setEmpowered(Piece piece, boolean empowered) {
+        piece.setEmpowered(empowered);
+        Position pos = piece.getPosition();
+        if (pos == null || !inBounds(pos) || cells[index(pos)] != piece) {
+            return;
+        }
+        int idx = index(pos);
+        if (testBit(empoweredMask, idx) == empowered) {
+            return;
+        }
+        empoweredMask[idx >>> 6] ^= 1L << idx;
+        hash ^= zobrist.empowered(idx);
+    }
+
     public void shiftLayerUp(int layer) {
-        if (layer < 0 || layer >= SIZE - 1) {
+        if (layer < 0 || layer >= size - 1) {
             return; // cannot shift the topmost layer up
         }
         swapLayers(layer, layer + 1);
     }
 
     public void shiftLayerDown(int layer) {
-        if (layer <= 0 || layer >= SIZE) {
+        if (layer <= 0 || layer >= size) {
             return; // cannot shift the bottommost layer down
         }
         swapLayers(layer, layer - 1);
     }
 
-    private void swapLayers(int firstLayer, int secondLayer) {
-        for (int x = 0; x < SIZE; x++) {
-            for (int y = 0; y < SIZE; y++) {
-                Piece tempPiece = grid[x][y][firstLayer];
-                int tempFrozen = frozenTurns[x][y][firstLayer];
+    void swapLayers(int firstLayer, int secondLayer) {
+        int layerCells = topology.getLayerCells();
+        int firstBase = firstLayer * layerCells;
+        int secondBase = secondLayer * layerCells;
+        for (int i = 0; i < layerCells; i++) {
+            hash ^= cellHash(firstBase + i) ^ cellHash(secondBase + i);
+        }
+        for (int i = 0; i < layerCells; i++) {
+            Piece tempPiece = cells[firstBase + i];
+            int tempFrozen = frozenUntil[firstBase + i];
+            cells[firstBase + i] = cells[secondBase + i];
+            frozenUntil[firstBase + i] = frozenUntil[secondBase + i];
+            cells[secondBase + i] = tempPiece;
+            frozenUntil[secondBase + i] = tempFrozen;
+        }
+        for (int i = 0; i < layerCells; i++) {
+            if (cells[firstBase + i] != null) {
+                cells[firstBase + i].setLocation(firstBase + i, topology.position(firstBase + i));
+            }
+            if (cells[secondBase + i] != null) {
+                cells[secondBase + i].setLocation(secondBase + i, topology.position(secondBase + i));
+            }
+        }
 
-                grid[x][y][firstLayer] = grid[x][y][secondLayer];
-                frozenTurns[x][y][firstLayer] = frozenTurns[x][y][secondLayer];
-                if (grid[x][y][firstLayer] != null) {
-                    grid[x][y][firstLayer].setPosition(new Position(x, y, firstLayer));
+        for (int slot = 0; slot < owners.size(); slot++) {
+            swapLayerBits(occupancy[slot], firstBase, secondBase, layerCells);
+            long[] completed = completedLines[slot];
+            for (int word = 0; word < lineWords; word++) {
+                long touched = topology.layerLineWord(firstLayer, word) | topology.layerLineWord(secondLayer, word);
+                completed[word] &= ~touched;
+                for (long bits = touched; bits != 0; bits &= bits - 1) {
+                    int line = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    if (ownsAll(occupancy[slot], topology.lineCells(line))) {
+                        completed[word] |= 1L << line;
+                    }
                 }
+            }
+        }
+        swapLayerBits(occupied, firstBase, secondBase, layerCells);
+        swapLayerBits(empoweredMask, firstBase, secondBase, layerCells);
+        swapLayerBits(frozenStamps, firstBase, secondBase, layerCells);
+        for (int i = 0; i < layerCells; i++) {
+            hash ^= cellHash(firstBase + i) ^ cellHash(secondBase + i);
+        }
+    }
 
-                grid[x][y][secondLayer] = tempPiece;
-                frozenTurns[x][y][secondLayer] = tempFrozen;
-                if (grid[x][y][secondLayer] != null) {
-                    grid[x][y][secondLayer].setPosition(new Position(x, y, secondLayer));
-                }
+    private static void swapLayerBits(long[] mask, int firstBase, int secondBase, int layerCells) {
+        if (mask.length == 1) {
+            long layerMask = (1L << layerCells) - 1;
+            long value = mask[0];
+            long first = (value >>> firstBase) & layerMask;
+            long second = (value >>> secondBase) & layerMask;
+            value &= ~((layerMask << firstBase) | (layerMask << secondBase));
+            mask[0] = value | (first << secondBase) | (second << firstBase);
+            return;
+        }
+        for (int i = 0; i < layerCells; i++) {
+            int a = firstBase + i;
+            int b = secondBase + i;
+            boolean bitA = testBit(mask, a);
+            if (bitA != testBit(mask, b)) {
+                mask[a >>> 6] ^= 1L << a;
+                mask[b >>> 6] ^= 1L << b;
             }
         }
     }
 
     public Piece empoweredCapture(Piece piece, Position target) {
+        return inBounds(target) ? empoweredCapture(piece, index(target)) : null;
+    }
+
+    /**
+     * Moves the empowered {@code piece} onto the face-adjacent, unfrozen enemy
+     * piece on cell {@code target}, removing that piece and spending the
+     * empowerment.
+     *
+     * @return the captured piece, or {@code null} if the capture is not
+     *         possible
+     */
+    public Piece empoweredCapture(Piece piece, int target) {
         if (piece == null || !piece.isEmpowered() || piece.getPosition() == null) {
             return null;
         }
         Position current = piece.getPosition();
-        if (!inBounds(target) || isFrozen(target)) {
+        if (target < 0 || target >= cells.length || isFrozen(target) || !inBounds(current)) {
             return null;
         }
-        int dx = Math.abs(current.getX() - target.getX());
-        int dy = Math.abs(current.getY() - target.getY());
-        int dz = Math.abs(current.getZ() - target.getZ());
+        int from = index(current);
+        int dx = Math.abs(topology.x(from) - topology.x(target));
+        int dy = Math.abs(topology.y(from) - topology.y(target));
+        int dz = Math.abs(topology.z(from) - topology.z(target));
         if (dx + dy + dz != 1) {
             return null; // not adjacent
         }
-        Piece occupant = getPiece(target);
+        Piece occupant = cells[target];
         if (occupant == null || occupant.getOwner() == piece.getOwner()) {
             return null;
         }
-        removePiece(current);
+        removePiece(from);
         removePiece(target);
         piece.setEmpowered(false);
         setPiece(target, piece);
@@ -144,66 +382,228 @@ public class Board {
     }
 
     public List<List<Position>> listAllLines() {
-        return allLines;
-    }
-
-    private List<List<Position>> computeAllLines() {
-        List<List<Position>> lines = new ArrayList<>();
-        List<int[]> directions = List.of(
-                new int[]{1, 0, 0}, new int[]{0, 1, 0}, new int[]{0, 0, 1},
-                new int[]{1, 1, 0}, new int[]{1, 0, 1}, new int[]{0, 1, 1},
-                new int[]{1, -1, 0}, new int[]{1, 0, -1}, new int[]{0, 1, -1},
-                new int[]{1, 1, 1}, new int[]{1, 1, -1}, new int[]{1, -1, 1},
-                new int[]{1, -1, -1}
-        );
-
-        for (int x = 0; x < SIZE; x++) {
-            for (int y = 0; y < SIZE; y++) {
-                for (int z = 0; z < SIZE; z++) {
-                    Position start = new Position(x, y, z);
-                    for (int[] dir : directions) {
-                        if (!isCanonicalStart(start, dir)) {
-                            continue;
-                        }
-                        List<Position> candidate = new ArrayList<>();
-                        Position cursor = start;
-                        for (int step = 0; step < SIZE; step++) {
-                            if (!inBounds(cursor)) {
-                                candidate.clear();
-                                break;
-                            }
-                            candidate.add(cursor);
-                            cursor = cursor.translate(dir[0], dir[1], dir[2]);
-                        }
-                        if (candidate.size() == SIZE) {
-                            lines.add(candidate);
-                        }
-                    }
-                }
+        return topology.lines();
+    }
+
+    /**
+     * Whether every cell of line {@code lineIndex} is held by {@code player}.
+     */
+    public boolean isLineOwnedBy(Player player, int lineIndex) {
+        int slot = slotOf(player);
+        return slot >= 0 && ownsAll(occupancy[slot], topology.lineCells(lineIndex));
+    }
+
+    /**
+     * Word {@code word} of the bitset of line indices currently filled
+     * entirely by {@code player}; see {@link BoardTopology#getLineWordCount()}.
+     */
+    public long completedLinesWord(Player player, int word) {
+        int slot = slotOf(player);
+        return slot < 0 ? 0L : completedLines[slot][word];
+    }
+
+    /**
+     * Indices of the lines passing through {@code pos}. The returned array is
+     * shared and must not be modified.
+     */
+    public int[] linesThrough(Position pos) {
+        return topology.linesThrough(index(pos));
+    }
+
+    /**
+     * Word {@code word} of the bitmask of cells holding a piece owned by
+     * {@code player}; see {@link BoardTopology#getWordCount()}.
+     */
+    public long occupancyWord(Player player, int word) {
+        int slot = slotOf(player);
+        return slot < 0 ? 0L : occupancy[slot][word];
+    }
+
+    public long occupiedWord(int word) {
+        return occupied[word];
+    }
+
+    public long empoweredWord(int word) {
+        return empoweredMask[word];
+    }
+
+    /**
+     * Word {@code word} of the bitmask of frozen cells. Expired stamps are
+     * kept (an undone round may revive them), so this filters the stamped
+     * cells against the clock.
+     */
+    public long frozenWord(int word) {
+        long frozen = 0L;
+        for (long bits = frozenStamps[word]; bits != 0; bits &= bits - 1) {
+            int idx = (word << 6) + Long.numberOfTrailingZeros(bits);
+            if (frozenUntil[idx] > clock.round) {
+                frozen |= 1L << idx;
             }
         }
-        return Collections.unmodifiableList(lines);
+        return frozen;
     }
 
-    private boolean isCanonicalStart(Position start, int[] dir) {
-        int prevX = start.getX() - dir[0];
-        int prevY = start.getY() - dir[1];
-        int prevZ = start.getZ() - dir[2];
-        return prevX < 0 || prevX >= SIZE || prevY < 0 || prevY >= SIZE || prevZ < 0 || prevZ >= SIZE;
+    /**
+     * Zobrist hash of the cell contents: owners, empowered flags and frozen
+     * timers.
+     */
+    long hash() {
+        return hash;
+    }
+
+    /**
+     * Recomputes {@link #hash()} from the cells; used to verify the
+     * incrementally maintained value.
+     */
+    long recomputeHash() {
+        long fresh = 0L;
+        for (int idx = 0; idx < cells.length; idx++) {
+            fresh ^= cellHash(idx);
+        }
+        return fresh;
+    }
+
+    /**
+     * Gives {@code player} the next owner slot, so that slots (and hashes)
+     * follow the game's player order rather than the order of first placement.
+     */
+    void registerOwner(Player player) {
+        ownerSlot(player);
     }
 
     public Set<Position> positionsOf(Player player) {
         Set<Position> owned = new HashSet<>();
-        for (int x = 0; x < SIZE; x++) {
-            for (int y = 0; y < SIZE; y++) {
-                for (int z = 0; z < SIZE; z++) {
-                    Piece piece = grid[x][y][z];
-                    if (piece != null && piece.getOwner() == player) {
-                        owned.add(new Position(x, y, z));
-                    }
-                }
+        int slot = slotOf(player);
+        if (slot < 0) {
+            return owned;
+        }
+        for (int word = 0; word < words; word++) {
+            for (long bits = occupancy[slot][word]; bits != 0; bits &= bits - 1) {
+                owned.add(topology.position((word << 6) + Long.numberOfTrailingZeros(bits)));
             }
         }
         return owned;
     }
+
+    private void fillCell(int idx, Piece piece) {
+        int word = idx >>> 6;
+        long bit = 1L << idx;
+        int slot = ownerSlot(piece.getOwner());
+        long[] occ = occupancy[slot];
+        cells[idx] = piece;
+        occ[word] |= bit;
+        occupied[word] |= bit;
+        hash ^= zobrist.piece(slot, idx);
+        if (piece.isEmpowered()) {
+            empoweredMask[word] |= bit;
+            hash ^= zobrist.empowered(idx);
+        }
+        for (int line : topology.linesThrough(idx)) {
+            if (ownsAll(occ, topology.lineCells(line))) {
+                completedLines[slot][line >>> 6] |= 1L << line;
+            }
+        }
+    }
+
+    private Piece clearCell(int idx) {
+        Piece piece = cells[idx];
+        if (piece == null) {
+            return null;
+        }
+        int word = idx >>> 6;
+        long keep = ~(1L << idx);
+        int slot = ownerSlot(piece.getOwner());
+        hash ^= zobrist.piece(slot, idx);
+        if (testBit(empoweredMask, idx)) {
+            hash ^= zobrist.empowered(idx);
+        }
+        cells[idx] = null;
+        occupancy[slot][word] &= keep;
+        occupied[word] &= keep;
+        empoweredMask[word] &= keep;
+        for (int line : topology.linesThrough(idx)) {
+            completedLines[slot][line >>> 6] &= ~(1L << line);
+        }
+        return piece;
+    }
+
+    private long cellHash(int idx) {
+        long key = zobrist.frozen(idx, frozenUntil[idx] - clock.round);
+        Piece piece = cells[idx];
+        if (piece != null) {
+            key ^= zobrist.piece(slotOf(piece.getOwner()), idx);
+            if (testBit(empoweredMask, idx)) {
+                key ^= zobrist.empowered(idx);
+            }
+        }
+        return key;
+    }
+
+    private static boolean ownsAll(long[] occ, int[] lineCells) {
+        for (int cell : lineCells) {
+            if ((occ[cell >>> 6] & (1L << cell)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean testBit(long[] mask, int idx) {
+        return (mask[idx >>> 6] & (1L << idx)) != 0;
+    }
+
+    /**
+     * Owner slot of the piece on {@code cell}, or -1 if the cell is empty.
+     */
+    int slotAt(int cell) {
+        Piece piece = cells[cell];
+        return piece == null ? -1 : slotOf(piece.getOwner());
+    }
+
+    /**
+     * The players that own a slot, in slot order; not to be modified.
+     */
+    List<Player> owners() {
+        return owners;
+    }
+
+    /**
+     * Owner slot of {@code player}, or -1; compares by identity.
+     */
+    private int slotOf(Player player) {
+        for (int slot = 0, n = owners.size(); slot < n; slot++) {
+            if (owners.get(slot) == player) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int ownerSlot(Player player) {
+        int slot = slotOf(player);
+        if (slot >= 0) {
+            return slot;
+        }
+        owners.add(player);
+        if (owners.size() > occupancy.length) {
+            occupancy = Arrays.copyOf(occupancy, occupancy.length * 2);
+            completedLines = Arrays.copyOf(completedLines, completedLines.length * 2);
+            for (int i = owners.size() - 1; i < occupancy.length; i++) {
+                occupancy[i] = new long[words];
+                completedLines[i] = new long[lineWords];
+            }
+        }
+        return owners.size() - 1;
+    }
+
+    /**
+     * Cell index of {@code pos}; coordinates outside the board are rejected
+     * rather than wrapped onto another cell.
+     */
+    private int index(Position pos) {
+        if (!inBounds(pos)) {
+            throw new IllegalArgumentException("Position out of bounds: " + pos);
+        }
+        return pos.cellIndex(size);
+    }
 }
@@ -0,0 +1,236 @@
+package tictactoe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable geometry of an N×N×N board with a given win length: cell
+ * indexing, the table of winning lines, the cell-to-lines index and the
+ * face-neighbour table. Instances are computed once per (size, win length)
+ * and shared by every {@link Board} of that shape via {@link #of(int, int)}.
+ *
+ * <p>Cell {@code (x, y, z)} has index {@code x + size * (y + size * z)}, so a
+ * layer is a contiguous block of {@code size * size} indices. Lines are runs
+ * of {@code winLength} cells along one of the 13 lattice directions and are
+ * identified by their index in {@link #lines()}.</p>
+ */
+public final class BoardTopology {
+    public static final int MAX_SIZE = 16;
+
+    private static final int[][] DIRECTIONS = {
+            {1, 0, 0}, {0, 1, 0}, {0, 0, 1},
+            {1, 1, 0}, {1, 0, 1}, {0, 1, 1},
+            {1, -1, 0}, {1, 0, -1}, {0, 1, -1},
+            {1, 1, 1}, {1, 1, -1}, {1, -1, 1},
+            {1, -1, -1}
+    };
+    private static final ConcurrentMap<Integer, BoardTopology> REGISTRY = new ConcurrentHashMap<>();
+
+    private final int size;
+    private final int winLength;
+    private final int layerCells;
+    private final int cellCount;
+    private final int wordCount;
+    private final Position[] positions;
+    private final int[][] lineCells;
+    private final int[][] cellLines;
+    private final int[][] neighbours;
+    private final long[][] layerLineBits;
+    private final List<List<Position>> lines;
+
+    /**
+     * Returns the shared topology of a classic board, where a line spans the
+     * full edge of the cube.
+     */
+    public static BoardTopology of(int size) {
+        return of(size, size);
+    }
+
+    public static BoardTopology of(int size, int winLength) {
+        if (size < 2 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Board size must be between 2 and " + MAX_SIZE + ": " + size);
+        }
+        if (winLength < 2 || winLength > size) {
+            throw new IllegalArgumentException("Win length must be between 2 and " + size + ": " + winLength);
+        }
+        return REGISTRY.computeIfAbsent(size * (MAX_SIZE + 1) + winLength, key -> new BoardTopology(size, winLength));
+    }
+
+    private BoardTopology(int size, int winLength) {
+        this.size = size;
+        this.winLength = winLength;
+        this.layerCells = size * size;
+        this.cellCount = layerCells * size;
+        this.wordCount = (cellCount + Long.SIZE - 1) / Long.SIZE;
+
+        this.positions = new Position[cellCount];
+        for (int cell = 0; cell < cellCount; cell++) {
+            positions[cell] = Position.ofCell(cell, size);
+        }
+
+        List<int[]> found = new ArrayList<>();
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                for (int z = 0; z < size; z++) {
+                    for (int[] dir : DIRECTIONS) {
+                        int endX = x + dir[0] * (winLength - 1);
+                        int endY = y + dir[1] * (winLength - 1);
+                        int endZ = z + dir[2] * (winLength - 1);
+                        if (!inBounds(endX, endY, endZ)) {
+                            continue;
+                        }
+                        int[] line = new int[winLength];
+                        for (int step = 0; step < winLength; step++) {
+                            line[step] = cellIndex(x + dir[0] * step, y + dir[1] * step, z + dir[2] * step);
+                        }
+                        found.add(line);
+                    }
+                }
+            }
+        }
+        this.lineCells = found.toArray(new int[0][]);
+
+        int lineWords = getLineWordCount();
+        int[] counts = new int[cellCount];
+        this.layerLineBits = new long[size][lineWords];
+        List<List<Position>> lineViews = new ArrayList<>(lineCells.length);
+        for (int line = 0; line < lineCells.length; line++) {
+            List<Position> view = new ArrayList<>(winLength);
+            for (int cell : lineCells[line]) {
+                counts[cell]++;
+                layerLineBits[z(cell)][line >>> 6] |= 1L << line;
+                view.add(positions[cell]);
+            }
+            lineViews.add(Collections.unmodifiableList(view));
+        }
+        this.lines = Collections.unmodifiableList(lineViews);
+
+        this.cellLines = new int[cellCount][];
+        for (int cell = 0; cell < cellCount; cell++) {
+            cellLines[cell] = new int[counts[cell]];
+            counts[cell] = 0;
+        }
+        for (int line = 0; line < lineCells.length; line++) {
+            for (int cell : lineCells[line]) {
+                cellLines[cell][counts[cell]++] = line;
+            }
+        }
+
+        this.neighbours = new int[cellCount][];
+        int[] scratch = new int[6];
+        for (int cell = 0; cell < cellCount; cell++) {
+            int n = 0;
+            int x = x(cell);
+            int y = y(cell);
+            int z = z(cell);
+            for (int axis = 0; axis < 3; axis++) {
+                for (int delta = -1; delta <= 1; delta += 2) {
+                    int nx = x + (axis == 0 ? delta : 0);
+                    int ny = y + (axis == 1 ? delta : 0);
+                    int nz = z + (axis == 2 ? delta : 0);
+                    if (inBounds(nx, ny, nz)) {
+                        scratch[n++] = cellIndex(nx, ny, nz);
+                    }
+                }
+            }
+            neighbours[cell] = Arrays.copyOf(scratch, n);
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    public int getLayerCells() {
+        return layerCells;
+    }
+
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    /**
+     * Number of {@code long} words needed for a bitmask over all cells.
+     */
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    public int getLineCount() {
+        return lineCells.length;
+    }
+
+    /**
+     * Number of {@code long} words needed for a bitset over all line ids.
+     */
+    public int getLineWordCount() {
+        return (lineCells.length + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    public boolean inBounds(int x, int y, int z) {
+        return x >= 0 && x < size && y >= 0 && y < size && z >= 0 && z < size;
+    }
+
+    public int cellIndex(int x, int y, int z) {
+        return x + size * (y + size * z);
+    }
+
+    public int x(int cell) {
+        return cell % size;
+    }
+
+    public int y(int cell) {
+        return (cell / size) % size;
+    }
+
+    public int z(int cell) {
+        return cell / layerCells;
+    }
+
+    public Position position(int cell) {
+        return positions[cell];
+    }
+
+    /**
+     * Cell indices of line {@code line}, in order. The array is shared and
+     * must not be modified.
+     */
+    public int[] lineCells(int line) {
+        return lineCells[line];
+    }
+
+    /**
+     * Ids of the lines passing through {@code cell}. The array is shared and
+     * must not be modified.
+     */
+    public int[] linesThrough(int cell) {
+        return cellLines[cell];
+    }
+
+    /**
+     * Face-adjacent cells of {@code cell}. The array is shared and must not be
+     * modified.
+     */
+    public int[] neighbours(int cell) {
+        return neighbours[cell];
+    }
+
+    /**
+     * Word {@code word} of the bitset of lines touching {@code layer}.
+     */
+    public long layerLineWord(int layer, int word) {
+        return layerLineBits[layer][word];
+    }
+
+    public List<List<Position>> lines() {
+        return lines;
+    }
+}
@@ -16,6 +16,31 @@ public abstract class Card {
     }
 
     public abstract void apply(Board board, Player player, ActionContext ctx);
+
+    /**
+     * The {@code Move.CARD_*} kind of this card.
+     */
+    abstract int kind();
+
+    /**
+     * Creates the card of the given {@code Move.CARD_*} kind.
+     */
+    static Card create(int kind) {
+        switch (kind) {
+            case Move.CARD_EMPOWER:
+                return new EmpowerCard();
+            case Move.CARD_SHIFT_UP:
+                return new LayerShiftUpCard();
+            case Move.CARD_SHIFT_DOWN:
+                return new LayerShiftDownCard();
+            case Move.CARD_TIME_REWIND:
+                return new TimeRewindCard();
+            case Move.CARD_FREEZE:
+                return new FreezeCard();
+            default:
+                throw new IllegalArgumentException("Unknown card kind: " + kind);
+        }
+    }
 }
 
 class ActionContext {
@@ -47,12 +72,17 @@ class EmpowerCard extends Card {
         super("Empower");
     }
 
+    @Override
+    int kind() {
+        return Move.CARD_EMPOWER;
+    }
+
     @Override
     public void apply(Board board, Player player, ActionContext ctx) {
         if (ctx.piece == null) {
             return;
         }
-        ctx.piece.setEmpowered(true);
+        board.setEmpowered(ctx.piece, true);
     }
 }
 
@@ -61,6 +91,11 @@ class LayerShiftUpCard extends Card {
         super("Layer Shift Up");
     }
 
+    @Override
+    int kind() {
+        return Move.CARD_SHIFT_UP;
+    }
+
     @Override
     public void apply(Board board, Player player, ActionContext ctx) {
         board.shiftLayerUp(ctx.layer);
@@ -72,6 +107,11 @@ class LayerShiftDownCard extends Card {
         super("Layer Shift Down");
     }
 
+    @Override
+    int kind() {
+        return Move.CARD_SHIFT_DOWN;
+    }
+
     @Override
     public void apply(Board board, Player player, ActionContext ctx) {
         board.shiftLayerDown(ctx.layer);
@@ -83,6 +123,11 @@ class TimeRewindCard extends Card {
         super("Time Rewind");
     }
 
+    @Override
+    int kind() {
+        return Move.CARD_TIME_REWIND;
+    }
+
     @Override
     public void apply(Board board, Player player, ActionContext ctx) {
         if (ctx.piece == null) {
@@ -91,24 +136,32 @@ class TimeRewindCard extends Card {
         if (ctx.piece.getPosition() == null) {
             return; // no longer on the board
         }
-        boolean removed = player.getPiecesOnBoard().remove(ctx.piece);
-        if (removed) {
+        PieceStore store = player.pieceStore();
+        if (ctx.piece.store() == store && store.isQueued(ctx.piece.slot())) {
+            store.unlink(ctx.piece.slot());
             ctx.piece.resetAge();
-            player.getPiecesOnBoard().addLast(ctx.piece);
+            store.linkLast(ctx.piece.slot());
         }
     }
 }
 
 class FreezeCard extends Card {
+    static final int TURNS = 2;
+
     public FreezeCard() {
         super("Freeze");
     }
 
+    @Override
+    int kind() {
+        return Move.CARD_FREEZE;
+    }
+
     @Override
     public void apply(Board board, Player player, ActionContext ctx) {
         if (ctx.pos == null) {
             return;
         }
-        board.freezeCell(ctx.pos, 2);
+        board.freezeCell(ctx.pos, TURNS);
     }
 }
@@ -0,0 +1,140 @@
+package tictactoe;
+
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays the turns of one seat of a GUI game with an {@link AlphaBetaEngine}
+ * without ever blocking the UI thread.
+ *
+ * <p>Each action of the turn (placement, card choice, captures, end of turn)
+ * is searched on a private background thread, on a copy of the game restored
+ * from a {@link GameSnapshot}: the engine explores the game it is given in
+ * place, and the live game belongs to the UI thread. The chosen move is handed
+ * back through the UI executor ({@code SwingUtilities::invokeLater} or
+ * {@code Platform::runLater}) and played there through a {@link GameSession},
+ * which also draws the card offer after a placement in a card round.</p>
+ *
+ * <p>{@link #cancel()} interrupts a running search and drops any move still on
+ * its way to the UI thread, so a restarted game never sees a stale move;
+ * {@link #close()} also stops the thread. Apart from the search itself,
+ * everything runs on the UI thread, and the class is not thread-safe.</p>
+ *
+ * <p>A search that fails, or comes back with a move the session rejects, is
+ * an engine bug: the turn is abandoned and the exception is rethrown on the
+ * UI thread, where the toolkit's uncaught-exception handling reports it.</p>
+ */
+public final class ComputerPlayer implements AutoCloseable {
+    public static final long DEFAULT_BUDGET_MILLIS = 1000;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "computer-player");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AlphaBetaEngine engine = new AlphaBetaEngine();
+    private final Executor uiThread;
+    private Future<?> search;
+    private boolean thinking;
+    private int ticket;
+
+    public ComputerPlayer(long budgetMillis, Executor uiThread) {
+        if (budgetMillis <= 0) {
+            throw new IllegalArgumentException("Budget must be positive: " + budgetMillis);
+        }
+        engine.setBudgetMillis(budgetMillis);
+        this.uiThread = uiThread;
+    }
+
+    public long getBudgetMillis() {
+        return engine.getBudgetMillis();
+    }
+
+    /**
+     * Whether a turn is in progress: a search is running or its move has not
+     * been played yet.
+     */
+    public boolean isThinking() {
+        return thinking;
+    }
+
+    /**
+     * Plays the rest of the current player's turn in {@code session}, one
+     * background search per action. {@code onAction} runs on the UI thread
+     * after each action (boards follow the game's {@link GameListener}s, so
+     * it only needs to refresh labels), and {@code onTurnEnd} once the turn
+     * has passed to the next player or the game is over.
+     */
+    public void playTurn(GameSession session, Runnable onAction, Runnable onTurnEnd) {
+        cancel();
+        thinking = true;
+        next(session, session.getGame().getCurrentPlayer(), onAction, onTurnEnd);
+    }
+
+    /**
+     * Abandons the turn in progress, if any: the search is interrupted and
+     * its move is never played.
+     */
+    public void cancel() {
+        ticket++;
+        thinking = false;
+        if (search != null) {
+            search.cancel(true);
+            search = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        cancel();
+        worker.shutdownNow();
+    }
+
+    private void next(GameSession session, Player seat, Runnable onAction, Runnable onTurnEnd) {
+        Game game = session.getGame();
+        if (game.isGameOver() || game.getCurrentPlayer() != seat) {
+            thinking = false;
+            search = null;
+            onTurnEnd.run();
+            return;
+        }
+        int mine = ++ticket;
+        GameSnapshot snapshot = game.snapshot();
+        search = worker.submit(() -> {
+            int move;
+            try {
+                move = engine.search(snapshot.restore(new Random())).getBestMove();
+            } catch (RuntimeException e) {
+                uiThread.execute(() -> {
+                    if (mine == ticket) {
+                        fail(e);
+                    }
+                });
+                return;
+            }
+            uiThread.execute(() -> {
+                if (mine != ticket) {
+                    return; // cancelled or restarted while the move was in flight
+                }
+                if (!session.play(move)) {
+                    fail(new IllegalStateException("Computer chose an illegal move: "
+                            + Move.toString(move, game.getBoard().getTopology())));
+                }
+                onAction.run();
+                next(session, seat, onAction, onTurnEnd);
+            });
+        });
+    }
+
+    /**
+     * Abandons the turn and rethrows {@code e} on the UI thread.
+     */
+    private void fail(RuntimeException e) {
+        thinking = false;
+        search = null;
+        throw e;
+    }
+}
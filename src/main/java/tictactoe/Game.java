@@ -1,36 +1,217 @@
 package tictactoe;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 import java.util.Random;
 
 /**
  * Core game controller implementing the dynamic 3D Tic-Tac-Toe ruleset.
+ *
+ * <p>The game keeps a 64-bit Zobrist hash of the position up to date as it
+ * changes. The board contributes owners, empowered flags and frozen timers;
+ * each player's {@link PieceStore} contributes the order of its FIFO queue
+ * (which decides what the piece cap evicts next); the game adds the parity of
+ * the round, the side to move, the turn phase and any pending card offer.
+ * Piece ages only feed the life counters shown by the UIs and are not
+ * hashed. The lines each player has already scored are hashed separately,
+ * for the searches that key positions by their value.</p>
+ *
+ * <p>Besides the direct mutators used by the UIs, the game can be driven by
+ * packed {@link Move} codes through {@link #make(int)} and rolled back with
+ * {@link #unmake()}. While a move is being made every mutation pushes a
+ * fixed-width record describing its inverse onto a primitive journal, so
+ * search code can explore moves without copying the game. Calling one of the
+ * direct mutators discards the journal.</p>
+ *
+ * <p>{@link GameListener}s registered with {@link #addListener} hear about
+ * every action as one batch of typed {@link GameEvents}, so renderers and
+ * loggers can do work proportional to what changed. Moves explored with
+ * {@code make}/{@code unmake} are not reported.</p>
  */
 public class Game {
-    private final Board board = new Board();
+    /** The current player must place a piece. */
+    public static final int PHASE_PLACE = 0;
+    /** The current player placed in a card round and must play a card. */
+    public static final int PHASE_CARD = 1;
+    /** The current player may capture (card rounds only) or end the turn. */
+    public static final int PHASE_ACTIONS = 2;
+
+    private static final int U_FRAME = 0;
+    private static final int U_PLACED = 1;
+    private static final int U_EVICTED = 2;
+    private static final int U_REMOVED = 3;
+    private static final int U_MOVED = 4;
+    private static final int U_EMPOWER = 5;
+    private static final int U_SWAP = 6;
+    private static final int U_REWIND = 7;
+    private static final int U_FROZEN = 8;
+    private static final int U_ROUND = 9;
+    private static final int U_SCORED = 10;
+    private static final int U_LAST_LINE = 11;
+    private static final int U_LAST_HEADER = 12;
+    private static final int U_TURN = 13;
+    private static final int RECORD_INTS = 4;
+
+    private final Board board;
     private final List<Player> players;
-    private final Map<Player, Set<String>> scoredLines = new HashMap<>();
-    private final List<ScoredLine> lastCompletedLines = new ArrayList<>();
+    private final LineSet[] scoredLines;
+    private final int[] lastCompletedLines;
+    private int lastCompletedCount;
+    private Player lastScorer;
     private final int pieceCap;
     private final int turnLimit;
     private final Random rng;
+    private final Zobrist zobrist;
+    private final PieceStore[] stores;
+    private long scoredLinesHash;
     private int currentRound;
+    private int currentPlayerIndex;
+    private int phase;
+    private int offerMask;
+
+    private int[] journal = new int[RECORD_INTS * 1024];
+    private Piece[] journalPieces = new Piece[1024];
+    private int journalRecords;
+    private int journalFrames;
+    private boolean recording;
+
+    private GameListener[] listeners = new GameListener[0];
+    private final GameEvents events = new GameEvents();
+    private int actionDepth;
+    private boolean playing;
 
     public Game(List<Player> players, int pieceCap, int turnLimit, Random rng) {
+        this(players, BoardTopology.of(Board.SIZE), pieceCap, turnLimit, rng);
+    }
+
+    /**
+     * Creates a game on a board of the given shape, e.g.
+     * {@code BoardTopology.of(4)} for 4×4×4 Qubic.
+     */
+    public Game(List<Player> players, BoardTopology topology, int pieceCap, int turnLimit, Random rng) {
+        this.board = new Board(topology);
+        this.lastCompletedLines = new int[topology.getLineCount()];
         this.players = new ArrayList<>(players);
         this.pieceCap = pieceCap;
         this.turnLimit = turnLimit;
         this.rng = rng;
         this.currentRound = 1;
-        for (Player player : players) {
-            scoredLines.put(player, new HashSet<>());
+        this.scoredLines = new LineSet[this.players.size()];
+        for (int i = 0; i < scoredLines.length; i++) {
+            scoredLines[i] = new LineSet(lastCompletedLines.length);
+        }
+        this.zobrist = Zobrist.of(topology);
+        this.stores = new PieceStore[this.players.size()];
+        for (int i = 0; i < stores.length; i++) {
+            Player player = this.players.get(i);
+            board.registerOwner(player);
+            stores[i] = player.pieceStore();
+            stores[i].attachClock(board.clock());
+            stores[i].attachHash(zobrist);
+        }
+    }
+
+    /**
+     * Rebuilds the position recorded in {@code snapshot} with new players and
+     * pieces; see {@link GameSnapshot#restore(Random)}.
+     */
+    Game(GameSnapshot snapshot, Random rng) {
+        this(snapshot.newPlayers(), snapshot.getTopology(), snapshot.getPieceCap(), snapshot.getTurnLimit(), rng);
+        BoardTopology topology = board.getTopology();
+        Piece[] pieces = new Piece[topology.getCellCount()];
+        for (int cell = 0; cell < pieces.length; cell++) {
+            int owner = snapshot.ownerAt(cell);
+            if (owner >= 0) {
+                PieceStore store = players.get(owner).pieceStore();
+                Piece piece = store.view(store.allocate(snapshot.placementIndexAt(cell)));
+                piece.setEmpowered(snapshot.isEmpoweredAt(cell));
+                piece.setAgeTurns(snapshot.ageAt(cell));
+                board.setPiece(cell, piece);
+                pieces[cell] = piece;
+            }
+            if (snapshot.frozenTurnsAt(cell) > 0) {
+                board.setFrozenTurnsAt(cell, snapshot.frozenTurnsAt(cell));
+            }
+        }
+        for (int i = 0; i < players.size(); i++) {
+            PieceStore store = players.get(i).pieceStore();
+            for (int rank = 0; rank < snapshot.getQueueLength(i); rank++) {
+                store.linkLast(pieces[snapshot.getQueueCell(i, rank)].slot());
+            }
+            scoredLines[i].copyFrom(snapshot.scoredLines(i));
+            for (int line = 0; line < lastCompletedLines.length; line++) {
+                if (scoredLines[i].contains(line)) {
+                    scoredLinesHash ^= zobrist.scoredLine(i, line);
+                }
+            }
+        }
+        lastCompletedCount = snapshot.lastCompletedCount();
+        for (int i = 0; i < lastCompletedCount; i++) {
+            lastCompletedLines[i] = snapshot.lastCompletedLine(i);
+        }
+        lastScorer = snapshot.lastScorer() < 0 ? null : players.get(snapshot.lastScorer());
+        currentRound = snapshot.getCurrentRound();
+        currentPlayerIndex = snapshot.getCurrentPlayerIndex();
+        phase = snapshot.getPhase();
+        offerMask = snapshot.getOfferMask();
+    }
+
+    /**
+     * Copies the current position into an immutable {@link GameSnapshot},
+     * with one pass over the cells and the FIFO queues. Every piece on the
+     * board must belong to one of the game's players; queued pieces that are
+     * no longer on the board are left out.
+     */
+    public GameSnapshot snapshot() {
+        BoardTopology topology = board.getTopology();
+        int cells = topology.getCellCount();
+        int words = topology.getWordCount();
+        byte[] owners = new byte[cells];
+        Arrays.fill(owners, (byte) -1);
+        int[] ages = new int[cells];
+        int[] placements = new int[cells];
+        int[] frozen = new int[cells];
+        long[] empowered = new long[words];
+        for (int word = 0; word < words; word++) {
+            empowered[word] = board.empoweredWord(word);
+            for (long bits = board.frozenWord(word); bits != 0; bits &= bits - 1) {
+                int cell = (word << 6) + Long.numberOfTrailingZeros(bits);
+                frozen[cell] = board.frozenTurnsRemaining(cell);
+            }
+            for (int i = 0; i < players.size(); i++) {
+                for (long bits = board.occupancyWord(players.get(i), word); bits != 0; bits &= bits - 1) {
+                    int cell = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    Piece piece = board.getPiece(cell);
+                    owners[cell] = (byte) i;
+                    ages[cell] = piece.getAgeTurns();
+                    placements[cell] = piece.getPlacementIndex();
+                }
+            }
         }
+        String[] names = new String[players.size()];
+        int[] scores = new int[players.size()];
+        int[][] queues = new int[players.size()][];
+        LineSet[] scored = new LineSet[players.size()];
+        for (int i = 0; i < players.size(); i++) {
+            Player player = players.get(i);
+            PieceStore store = player.pieceStore();
+            names[i] = player.getName();
+            scores[i] = player.getScore();
+            scored[i] = scoredLines[i].copy();
+            int[] queue = new int[store.size()];
+            int length = 0;
+            for (int slot = store.first(); slot != PieceStore.NONE; slot = store.next(slot)) {
+                if (store.cellAt(slot) >= 0) {
+                    queue[length++] = store.cellAt(slot);
+                }
+            }
+            queues[i] = length == queue.length ? queue : Arrays.copyOf(queue, length);
+        }
+        return new GameSnapshot(topology, pieceCap, turnLimit, currentRound, currentPlayerIndex, phase, offerMask,
+                getZobristHash(), names, scores, queues, scored, Arrays.copyOf(lastCompletedLines, lastCompletedCount),
+                lastScorer == null ? -1 : indexOf(lastScorer), owners, empowered, frozen, ages, placements);
     }
 
     public Board getBoard() {
@@ -56,116 +237,769 @@ public class Game {
         return Collections.unmodifiableList(players);
     }
 
+    /**
+     * The player whose turn it is; turns pass in {@link #getPlayers()} order.
+     */
+    public Player getCurrentPlayer() {
+        return players.get(currentPlayerIndex);
+    }
+
+    public int getCurrentPlayerIndex() {
+        return currentPlayerIndex;
+    }
+
+    /**
+     * One of the {@code PHASE_*} constants describing what the current
+     * player may do next.
+     */
+    public int getPhase() {
+        return phase;
+    }
+
+    /**
+     * Bitmask over {@code Move.CARD_*} kinds of the cards drawn by the last
+     * {@link #offerCards()} call of this phase, or 0 when no offer is
+     * pending. While an offer is pending only those cards can be played
+     * through {@link #make(int)}.
+     */
+    public int getOfferMask() {
+        return offerMask;
+    }
+
+    public int getPieceCap() {
+        return pieceCap;
+    }
+
+    /**
+     * Passes the turn to the next player, advancing the round once every
+     * player has moved.
+     */
+    public void endTurn() {
+        beginAction();
+        try {
+            discardJournalUnlessRecording();
+            setTurn((currentPlayerIndex + 1) % players.size(), PHASE_PLACE);
+            emit(GameEvents.TURN_PASSED, -1, currentPlayerIndex, 0);
+            if (currentPlayerIndex == 0) {
+                advanceRound();
+            }
+        } finally {
+            endAction();
+        }
+    }
+
     public int getTurnLimit() {
         return turnLimit;
     }
 
     public boolean placePiece(Player player, Position pos) {
-        if (!board.inBounds(pos) || board.isFrozen(pos) || !board.isEmpty(pos)) {
+        return board.inBounds(pos) && placePiece(player, cellOf(pos));
+    }
+
+    /**
+     * Places a piece for {@code player} on the cell with index {@code cell};
+     * see {@link BoardTopology#cellIndex(int, int, int)}.
+     */
+    public boolean placePiece(Player player, int cell) {
+        if (cell < 0 || cell >= board.getTopology().getCellCount() || board.isFrozen(cell) || !board.isEmpty(cell)) {
             return false;
         }
+        beginAction();
+        try {
+            placeAt(player, cell);
+        } finally {
+            endAction();
+        }
+        return true;
+    }
+
+    private void placeAt(Player player, int cell) {
+        discardJournalUnlessRecording();
         enforcePieceCap(player);
-        Piece piece = new Piece(player, currentRound);
-        board.setPiece(pos, piece);
-        player.getPiecesOnBoard().addLast(piece);
+        PieceStore store = player.pieceStore();
+        int slot = store.allocate(currentRound);
+        Piece piece = store.view(slot);
+        board.setPiece(cell, piece);
+        store.linkLast(slot);
+        int playerIdx = indexOf(player);
+        if (recording) {
+            record(U_PLACED, cell, playerIdx, 0, piece);
+        }
+        emit(GameEvents.PIECE_PLACED, cell, playerIdx, 0);
+        if (playerIdx == currentPlayerIndex) {
+            setTurn(currentPlayerIndex, shouldOfferCard() ? PHASE_CARD : PHASE_ACTIONS);
+        }
         scoreNewLines(player);
-        return true;
     }
 
     private void enforcePieceCap(Player player) {
-        if (player.getPiecesOnBoard().size() < pieceCap) {
+        PieceStore store = player.pieceStore();
+        if (store.size() < pieceCap) {
             return;
         }
-        Piece oldest = player.getPiecesOnBoard().removeFirst();
+        int slot = store.first();
+        Piece oldest = store.view(slot);
+        store.unlink(slot);
         Position pos = oldest.getPosition();
+        if (recording) {
+            record(U_EVICTED, pos == null ? -1 : cellOf(pos), indexOf(player), 0, oldest);
+        }
         if (pos != null) {
             board.removePiece(pos);
+            emit(GameEvents.PIECE_EVICTED, cellOf(pos), indexOf(player), 0);
+        }
+        if (!recording) {
+            store.release(slot); // kept for the undo otherwise
         }
     }
 
+    /**
+     * Awards a point for every line that is now full for {@code player} and
+     * has not been scored by them before. The board already tracks complete
+     * lines incrementally, so this only walks the (usually empty) set of
+     * complete lines and never rescans the board.
+     */
     private void scoreNewLines(Player player) {
-        lastCompletedLines.clear();
-        Set<String> alreadyScored = scoredLines.get(player);
-        for (List<Position> line : board.listAllLines()) {
-            boolean fullByPlayer = true;
-            StringBuilder keyBuilder = new StringBuilder();
-            for (Position pos : line) {
-                Piece piece = board.getPiece(pos);
-                if (piece == null || piece.getOwner() != player) {
-                    fullByPlayer = false;
-                    break;
-                }
-                keyBuilder.append(pos.toString());
+        if (recording) {
+            for (int i = 0; i < lastCompletedCount; i++) {
+                record(U_LAST_LINE, i, lastCompletedLines[i], 0, null);
             }
-            if (fullByPlayer) {
-                String key = keyBuilder.toString();
-                if (!alreadyScored.contains(key)) {
-                    alreadyScored.add(key);
+            record(U_LAST_HEADER, indexOf(lastScorer), lastCompletedCount, 0, null);
+        }
+        lastCompletedCount = 0;
+        lastScorer = player;
+        int playerIdx = indexOf(player);
+        LineSet alreadyScored = scoredLines[playerIdx];
+        int lineWords = board.getTopology().getLineWordCount();
+        for (int word = 0; word < lineWords; word++) {
+            for (long bits = board.completedLinesWord(player, word); bits != 0; bits &= bits - 1) {
+                int line = (word << 6) + Long.numberOfTrailingZeros(bits);
+                if (alreadyScored.add(line)) {
+                    scoredLinesHash ^= zobrist.scoredLine(playerIdx, line);
                     player.addScore(1);
-                    lastCompletedLines.add(new ScoredLine(player, new ArrayList<>(line)));
+                    lastCompletedLines[lastCompletedCount++] = line;
+                    emit(GameEvents.LINE_SCORED, -1, playerIdx, line);
+                    if (recording) {
+                        record(U_SCORED, playerIdx, line, 0, null);
+                    }
                 }
             }
         }
     }
 
     public void advanceRound() {
-        currentRound++;
-        board.tickFreezes();
-        for (Player player : players) {
-            for (Piece piece : player.getPiecesOnBoard()) {
-                piece.incrementAge();
+        beginAction();
+        try {
+            discardJournalUnlessRecording();
+            if (recording) {
+                record(U_ROUND, 0, 0, 0, null);
             }
+            currentRound++;
+            // Freeze timers and the ages of the pieces run on the board's clock.
+            if (isObserved()) {
+                int words = board.getTopology().getWordCount();
+                long[] frozen = new long[words];
+                for (int word = 0; word < words; word++) {
+                    frozen[word] = board.frozenWord(word);
+                }
+                board.tickFreezes();
+                emit(GameEvents.ROUND_ADVANCED, -1, -1, currentRound);
+                for (int word = 0; word < words; word++) {
+                    for (long bits = frozen[word] & ~board.frozenWord(word); bits != 0; bits &= bits - 1) {
+                        emit(GameEvents.CELL_UNFROZEN, (word << 6) + Long.numberOfTrailingZeros(bits), -1, 0);
+                    }
+                }
+            } else {
+                board.tickFreezes();
+            }
+        } finally {
+            endAction();
         }
     }
 
     public boolean empoweredCapture(Player player, Piece piece, Position target) {
+        return board.inBounds(target) && empoweredCapture(player, piece, cellOf(target));
+    }
+
+    /**
+     * Like {@link #empoweredCapture(Player, Piece, Position)}, with the target
+     * given as a cell index.
+     */
+    public boolean empoweredCapture(Player player, Piece piece, int target) {
         if (piece == null || piece.getOwner() != player) {
             return false;
         }
+        Position from = piece.getPosition();
         Piece removed = board.empoweredCapture(piece, target);
         if (removed != null) {
-            removed.getOwner().getPiecesOnBoard().remove(removed);
-            scoreNewLines(player);
+            beginAction();
+            try {
+                captured(player, piece, removed, cellOf(from), target);
+            } finally {
+                endAction();
+            }
             return true;
         }
         return false;
     }
 
+    private void captured(Player player, Piece piece, Piece removed, int from, int target) {
+        discardJournalUnlessRecording();
+        int anchor = removeFromQueue(removed.getOwner(), removed);
+        if (recording) {
+            record(U_REMOVED, target, indexOf(removed.getOwner()), anchor, removed);
+            record(U_MOVED, from, target, 0, piece);
+        } else if (anchor >= 0) {
+            removed.store().release(removed.slot());
+        }
+        emit(GameEvents.PIECE_CAPTURED, target, indexOf(removed.getOwner()), from);
+        scoreNewLines(player);
+    }
+
     public List<Card> offerCards() {
-        List<Card> deck = List.of(
-                new EmpowerCard(),
-                new LayerShiftUpCard(),
-                new LayerShiftDownCard(),
-                new TimeRewindCard(),
-                new FreezeCard()
-        );
-        int first = rng.nextInt(deck.size());
+        int first = rng.nextInt(Move.CARD_KINDS);
         int second;
         do {
-            second = rng.nextInt(deck.size());
+            second = rng.nextInt(Move.CARD_KINDS);
         } while (second == first);
+        offerMask = 1 << first | 1 << second;
+        if (isObserved()) {
+            beginAction();
+            emit(GameEvents.CARDS_OFFERED, -1, currentPlayerIndex, offerMask);
+            endAction();
+        }
         List<Card> options = new ArrayList<>(2);
-        options.add(deck.get(first));
-        options.add(deck.get(second));
+        options.add(Card.create(first));
+        options.add(Card.create(second));
         return options;
     }
 
     public boolean useCard(Card card, Player player, ActionContext ctx) {
-        int previousScore = player.getScore();
-        card.apply(board, player, ctx);
-        if (card instanceof LayerShiftDownCard || card instanceof LayerShiftUpCard
-                || card instanceof EmpowerCard) {
-            scoreNewLines(player);
+        beginAction();
+        try {
+            discardJournalUnlessRecording();
+            int previousScore = player.getScore();
+            int effect = isObserved() ? cardEffect(card, player, ctx) : Move.NONE;
+            card.apply(board, player, ctx);
+            if (effect != Move.NONE) {
+                emitCard(Move.cardKind(effect), Move.cell(effect), indexOf(player));
+            }
+            if (indexOf(player) == currentPlayerIndex && phase == PHASE_CARD) {
+                setTurn(currentPlayerIndex, PHASE_ACTIONS);
+            }
+            if (card instanceof LayerShiftDownCard || card instanceof LayerShiftUpCard
+                    || card instanceof EmpowerCard) {
+                scoreNewLines(player);
+            }
+            return player.getScore() != previousScore;
+        } finally {
+            endAction();
+        }
+    }
+
+    /**
+     * What playing {@code card} with {@code ctx} is going to do, as a card
+     * move, or {@link Move#NONE} if it will change nothing; worked out before
+     * the card is applied, for the listeners.
+     */
+    private int cardEffect(Card card, Player player, ActionContext ctx) {
+        int kind = card.kind();
+        switch (kind) {
+            case Move.CARD_SHIFT_UP:
+                return ctx.layer >= 0 && ctx.layer < board.getSize() - 1 ? Move.card(kind, ctx.layer) : Move.NONE;
+            case Move.CARD_SHIFT_DOWN:
+                return ctx.layer > 0 && ctx.layer < board.getSize() ? Move.card(kind, ctx.layer) : Move.NONE;
+            case Move.CARD_FREEZE:
+                return ctx.pos != null && board.inBounds(ctx.pos) ? Move.card(kind, cellOf(ctx.pos)) : Move.NONE;
+            case Move.CARD_TIME_REWIND:
+                PieceStore store = player.pieceStore();
+                if (ctx.piece == null || ctx.piece.store() != store || !store.isQueued(ctx.piece.slot())) {
+                    return Move.NONE;
+                }
+                return pieceCardEffect(kind, ctx.piece);
+            default:
+                return pieceCardEffect(kind, ctx.piece);
+        }
+    }
+
+    /**
+     * The card move for a card that targets {@code piece}, or
+     * {@link Move#NONE} if the piece is not on the board.
+     */
+    private int pieceCardEffect(int kind, Piece piece) {
+        Position pos = piece == null ? null : piece.getPosition();
+        return pos == null ? Move.NONE : Move.card(kind, cellOf(pos));
+    }
+
+    /**
+     * Whether {@code move} is legal for the current player in the current
+     * phase: placements need an empty, unfrozen cell; cards must be played
+     * right after placing in a card round, on a valid target; captures need an
+     * empowered piece of the player next to an unfrozen enemy cell in a card
+     * round; the turn can be ended once the placement (and card) are done.
+     * A card draw ({@link Move#offer(int)}) must name two distinct kinds and
+     * is only legal in a card phase before any offer was made.
+     */
+    public boolean isLegal(int move) {
+        if (isGameOver()) {
+            return false;
+        }
+        BoardTopology topology = board.getTopology();
+        int cells = topology.getCellCount();
+        int cell = Move.cell(move);
+        switch (Move.type(move)) {
+            case Move.TYPE_PLACE:
+                return phase == PHASE_PLACE && cell < cells && board.isEmpty(cell) && !board.isFrozen(cell);
+            case Move.TYPE_CARD:
+                if (phase != PHASE_CARD || (offerMask != 0 && (offerMask & 1 << Move.cardKind(move)) == 0)) {
+                    return false;
+                }
+                switch (Move.cardKind(move)) {
+                    case Move.CARD_EMPOWER:
+                    case Move.CARD_TIME_REWIND:
+                        return cell < cells && board.getPiece(cell) != null
+                                && board.getPiece(cell).getOwner() == getCurrentPlayer();
+                    case Move.CARD_SHIFT_UP:
+                        return cell < topology.getSize() - 1;
+                    case Move.CARD_SHIFT_DOWN:
+                        return cell >= 1 && cell < topology.getSize();
+                    case Move.CARD_FREEZE:
+                        return cell < cells;
+                    default:
+                        return false;
+                }
+            case Move.TYPE_CAPTURE:
+                if (phase != PHASE_ACTIONS || !shouldOfferCard() || cell >= cells) {
+                    return false;
+                }
+                Piece piece = board.getPiece(cell);
+                int target = Move.target(move);
+                if (piece == null || piece.getOwner() != getCurrentPlayer() || !piece.isEmpowered()
+                        || target >= cells || board.isFrozen(target)) {
+                    return false;
+                }
+                Piece occupant = board.getPiece(target);
+                if (occupant == null || occupant.getOwner() == piece.getOwner()) {
+                    return false;
+                }
+                for (int neighbour : topology.neighbours(cell)) {
+                    if (neighbour == target) {
+                        return true;
+                    }
+                }
+                return false;
+            case Move.TYPE_END_TURN:
+                return phase == PHASE_ACTIONS;
+            case Move.TYPE_OFFER:
+                return phase == PHASE_CARD && offerMask == 0 && cell < 1 << Move.CARD_KINDS
+                        && Integer.bitCount(cell) == 2;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Plays {@code move} for the current player if it is legal and records
+     * how to undo it.
+     *
+     * @return whether the move was legal and has been played
+     */
+    public boolean make(int move) {
+        if (!isLegal(move)) {
+            return false;
+        }
+        record(U_FRAME, 0, 0, 0, null);
+        journalFrames++;
+        recording = true;
+        beginAction();
+        try {
+            apply(move);
+        } finally {
+            recording = false;
+            endAction();
+        }
+        return true;
+    }
+
+    /**
+     * Plays {@code move} like {@link #make(int)}, but for good: the undo
+     * journal is discarded, so replaying a long game keeps no history.
+     *
+     * @return whether the move was legal and has been played
+     */
+    public boolean play(int move) {
+        playing = true;
+        try {
+            if (!make(move)) {
+                return false;
+            }
+        } finally {
+            playing = false;
+        }
+        discardJournalUnlessRecording();
+        return true;
+    }
+
+    /**
+     * Number of moves that {@link #unmake()} can currently take back.
+     */
+    public int getUndoDepth() {
+        return journalFrames;
+    }
+
+    /**
+     * Whether {@code player} has already scored line {@code line}.
+     */
+    public boolean hasScoredLine(Player player, int line) {
+        int idx = indexOf(player);
+        return idx >= 0 && scoredLines[idx].contains(line);
+    }
+
+    /**
+     * Takes back the most recent move played through {@link #make(int)},
+     * restoring the board, FIFO queues, ages, scores, scored lines, freeze
+     * timers, empowered flags, last completed lines, round and turn.
+     */
+    public void unmake() {
+        if (journalFrames == 0) {
+            throw new IllegalStateException("No move to unmake");
+        }
+        while (true) {
+            int r = --journalRecords;
+            int base = r * RECORD_INTS;
+            int op = journal[base];
+            int a = journal[base + 1];
+            int b = journal[base + 2];
+            int c = journal[base + 3];
+            Piece piece = journalPieces[r];
+            journalPieces[r] = null;
+            if (op == U_FRAME) {
+                break;
+            }
+            switch (op) {
+                case U_PLACED:
+                    board.removePiece(a);
+                    PieceStore store = players.get(b).pieceStore();
+                    int slot = store.last();
+                    store.unlink(slot);
+                    store.unallocate(slot);
+                    break;
+                case U_EVICTED:
+                    if (a >= 0) {
+                        board.setPiece(a, piece);
+                    }
+                    players.get(b).pieceStore().linkFirst(piece.slot());
+                    break;
+                case U_REMOVED:
+                    board.setPiece(a, piece);
+                    if (b >= 0 && c >= 0) {
+                        players.get(b).pieceStore().linkAfter(c - 1, piece.slot());
+                    }
+                    break;
+                case U_MOVED:
+                    board.removePiece(b);
+                    board.setPiece(a, piece);
+                    board.setEmpowered(piece, true);
+                    break;
+                case U_EMPOWER:
+                    board.setEmpowered(piece, b != 0);
+                    break;
+                case U_SWAP:
+                    board.swapLayers(a, b);
+                    break;
+                case U_REWIND:
+                    players.get(a).pieceStore().unlink(piece.slot());
+                    players.get(a).pieceStore().linkAfter(b - 1, piece.slot());
+                    piece.setAgeTurns(c);
+                    break;
+                case U_FROZEN:
+                    board.setFrozenUntilAt(a, b);
+                    break;
+                case U_ROUND:
+                    currentRound--;
+                    board.untickFreezes();
+                    break;
+                case U_SCORED:
+                    scoredLines[a].remove(b);
+                    scoredLinesHash ^= zobrist.scoredLine(a, b);
+                    players.get(a).addScore(-1);
+                    break;
+                case U_LAST_LINE:
+                    lastCompletedLines[a] = b;
+                    break;
+                case U_LAST_HEADER:
+                    lastScorer = a < 0 ? null : players.get(a);
+                    lastCompletedCount = b;
+                    break;
+                case U_TURN:
+                    currentPlayerIndex = a;
+                    phase = b;
+                    offerMask = c;
+                    break;
+                default:
+                    throw new IllegalStateException("Corrupt undo journal: " + op);
+            }
+        }
+        journalFrames--;
+    }
+
+    private void apply(int move) {
+        Player player = getCurrentPlayer();
+        int cell = Move.cell(move);
+        switch (Move.type(move)) {
+            case Move.TYPE_PLACE:
+                placePiece(player, cell);
+                break;
+            case Move.TYPE_CARD:
+                applyCard(player, Move.cardKind(move), cell);
+                setTurn(currentPlayerIndex, PHASE_ACTIONS);
+                break;
+            case Move.TYPE_CAPTURE:
+                empoweredCapture(player, board.getPiece(cell), Move.target(move));
+                break;
+            case Move.TYPE_END_TURN:
+                endTurn();
+                break;
+            case Move.TYPE_OFFER:
+                record(U_TURN, currentPlayerIndex, phase, offerMask, null);
+                offerMask = cell;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown move type: " + Move.type(move));
+        }
+    }
+
+    private void applyCard(Player player, int kind, int arg) {
+        Piece piece;
+        switch (kind) {
+            case Move.CARD_EMPOWER:
+                piece = board.getPiece(arg);
+                record(U_EMPOWER, arg, piece.isEmpowered() ? 1 : 0, 0, piece);
+                board.setEmpowered(piece, true);
+                emitCard(kind, arg, currentPlayerIndex);
+                scoreNewLines(player);
+                break;
+            case Move.CARD_SHIFT_UP:
+            case Move.CARD_SHIFT_DOWN:
+                int other = kind == Move.CARD_SHIFT_UP ? arg + 1 : arg - 1;
+                record(U_SWAP, arg, other, 0, null);
+                board.swapLayers(arg, other);
+                emitCard(kind, arg, currentPlayerIndex);
+                scoreNewLines(player);
+                break;
+            case Move.CARD_TIME_REWIND:
+                piece = board.getPiece(arg);
+                int anchor = removeFromQueue(player, piece);
+                record(U_REWIND, currentPlayerIndex, anchor, piece.getAgeTurns(), piece);
+                piece.resetAge();
+                player.pieceStore().linkLast(piece.slot());
+                emitCard(kind, arg, currentPlayerIndex);
+                break;
+            case Move.CARD_FREEZE:
+                record(U_FROZEN, arg, board.frozenUntilAt(arg), 0, null);
+                board.freezeCell(arg, FreezeCard.TURNS);
+                emitCard(kind, arg, currentPlayerIndex);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown card kind: " + kind);
+        }
+    }
+
+    private void setTurn(int playerIndex, int newPhase) {
+        if (recording) {
+            record(U_TURN, currentPlayerIndex, phase, offerMask, null);
+        }
+        currentPlayerIndex = playerIndex;
+        phase = newPhase;
+        offerMask = 0;
+    }
+
+    private void record(int op, int a, int b, int c, Piece piece) {
+        if (journalRecords == journalPieces.length) {
+            journal = Arrays.copyOf(journal, journal.length * 2);
+            journalPieces = Arrays.copyOf(journalPieces, journalPieces.length * 2);
+        }
+        int base = journalRecords * RECORD_INTS;
+        journal[base] = op;
+        journal[base + 1] = a;
+        journal[base + 2] = b;
+        journal[base + 3] = c;
+        journalPieces[journalRecords++] = piece;
+    }
+
+    private void discardJournalUnlessRecording() {
+        if (recording || journalRecords == 0) {
+            return;
+        }
+        for (int r = 0; r < journalRecords; r++) {
+            int op = journal[r * RECORD_INTS];
+            if (op == U_EVICTED || op == U_REMOVED && journal[r * RECORD_INTS + 3] >= 0) {
+                journalPieces[r].store().release(journalPieces[r].slot());
+            }
+        }
+        Arrays.fill(journalPieces, 0, journalRecords, null);
+        journalRecords = 0;
+        journalFrames = 0;
+    }
+
+    /**
+     * Removes {@code piece} from its owner's FIFO queue in constant time and
+     * returns an anchor for putting it back: one more than the slot of the
+     * piece before it (0 if it was the oldest), or -1 if it was not queued.
+     */
+    private int removeFromQueue(Player owner, Piece piece) {
+        PieceStore store = owner.pieceStore();
+        if (piece.store() != store || !store.isQueued(piece.slot())) {
+            return -1;
+        }
+        return store.unlink(piece.slot()) + 1;
+    }
+
+    /**
+     * Registers {@code listener} to hear about every later action; see
+     * {@link GameListener}.
+     */
+    public void addListener(GameListener listener) {
+        GameListener[] grown = Arrays.copyOf(listeners, listeners.length + 1);
+        grown[listeners.length] = listener;
+        listeners = grown;
+    }
+
+    public void removeListener(GameListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                GameListener[] shrunk = Arrays.copyOf(listeners, listeners.length - 1);
+                System.arraycopy(listeners, i + 1, shrunk, i, listeners.length - i - 1);
+                listeners = shrunk;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Whether changes are being reported: someone listens and the change is
+     * not a move explored with {@link #make(int)}.
+     */
+    private boolean isObserved() {
+        return listeners.length != 0 && (!recording || playing);
+    }
+
+    private void emit(int type, int cell, int player, int value) {
+        if (isObserved()) {
+            events.add(type, cell, player, value);
+        }
+    }
+
+    private void emitCard(int kind, int arg, int playerIdx) {
+        switch (kind) {
+            case Move.CARD_EMPOWER:
+                emit(GameEvents.PIECE_EMPOWERED, arg, playerIdx, 0);
+                break;
+            case Move.CARD_SHIFT_UP:
+                emit(GameEvents.LAYERS_SWAPPED, arg, playerIdx, arg + 1);
+                break;
+            case Move.CARD_SHIFT_DOWN:
+                emit(GameEvents.LAYERS_SWAPPED, arg, playerIdx, arg - 1);
+                break;
+            case Move.CARD_TIME_REWIND:
+                emit(GameEvents.PIECE_REWOUND, arg, playerIdx, 0);
+                break;
+            default:
+                emit(GameEvents.CELL_FROZEN, arg, playerIdx, board.frozenTurnsRemaining(arg));
+                break;
+        }
+    }
+
+    /**
+     * Actions nest (ending the turn advances the round, playing a move places
+     * a piece); the listeners hear from the outermost one once it is done.
+     * {@link GameSession} also uses this to report a placement and the card
+     * draw it triggers as one action.
+     */
+    void beginAction() {
+        actionDepth++;
+    }
+
+    void endAction() {
+        if (--actionDepth > 0 || events.size() == 0) {
+            return;
+        }
+        try {
+            for (GameListener listener : listeners) {
+                listener.gameChanged(this, events);
+            }
+        } finally {
+            events.clear();
         }
-        return player.getScore() != previousScore;
     }
 
     public boolean isGameOver() {
         return currentRound > turnLimit;
     }
 
+    /**
+     * 64-bit Zobrist hash of the current position.
+     */
+    public long getZobristHash() {
+        long hash = board.hash() ^ zobrist.side(currentPlayerIndex) ^ zobrist.phase(phase)
+                ^ zobrist.offer(offerMask);
+        for (PieceStore store : stores) {
+            hash ^= store.orderHash();
+        }
+        if ((currentRound & 1) != 0) {
+            hash ^= zobrist.oddRound();
+        }
+        return hash;
+    }
+
+    /**
+     * Hash of the lines every player has already scored, which can never
+     * score again; the Zobrist hash leaves them out. Kept up to date as lines
+     * are scored and unscored.
+     */
+    long getScoredLinesHash() {
+        return scoredLinesHash;
+    }
+
+    /**
+     * Recomputes {@link #getZobristHash()} from scratch; used to verify the
+     * incrementally maintained value.
+     */
+    long recomputeZobristHash() {
+        long hash = board.recomputeHash() ^ zobrist.side(currentPlayerIndex) ^ zobrist.phase(phase)
+                ^ zobrist.offer(offerMask);
+        for (PieceStore store : stores) {
+            hash ^= store.recomputeOrderHash();
+        }
+        if ((currentRound & 1) != 0) {
+            hash ^= zobrist.oddRound();
+        }
+        return hash;
+    }
+
+    private int indexOf(Player player) {
+        for (int i = 0, n = players.size(); i < n; i++) {
+            if (players.get(i) == player) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int cellOf(Position pos) {
+        return pos.cellIndex(board.getSize());
+    }
+
     public List<ScoredLine> getLastCompletedLines() {
-        return Collections.unmodifiableList(lastCompletedLines);
+        if (lastCompletedCount == 0) {
+            return Collections.emptyList();
+        }
+        List<List<Position>> lines = board.listAllLines();
+        List<ScoredLine> completed = new ArrayList<>(lastCompletedCount);
+        for (int i = 0; i < lastCompletedCount; i++) {
+            completed.add(new ScoredLine(lastScorer, lines.get(lastCompletedLines[i])));
+        }
+        return Collections.unmodifiableList(completed);
     }
 
     public static class ScoredLine {
@@ -0,0 +1,109 @@
+package tictactoe;
+
+import java.util.Arrays;
+
+/**
+ * The changes one action made to a game, in the order they happened, as
+ * handed to a {@link GameListener}.
+ *
+ * <p>Each event has a type and up to three int fields, read by index:
+ * {@link #cell(int)}, {@link #player(int)} (an index into
+ * {@link Game#getPlayers()}) and {@link #value(int)}, whose meaning the type
+ * constants describe. The batch is a reused primitive buffer, so recording
+ * events allocates nothing once it has grown; listeners must read it during
+ * the callback and not keep it.</p>
+ */
+public final class GameEvents {
+    /** A piece of {@code player} was placed on {@code cell}. */
+    public static final int PIECE_PLACED = 1;
+    /** The piece cap removed the oldest piece of {@code player} from {@code cell}. */
+    public static final int PIECE_EVICTED = 2;
+    /**
+     * An empowered piece moved from cell {@code value} onto {@code cell},
+     * capturing the piece of {@code player} there, and lost its empowerment.
+     */
+    public static final int PIECE_CAPTURED = 3;
+    /** Layers {@code cell} and {@code value} swapped places (a layer shift by {@code player}). */
+    public static final int LAYERS_SWAPPED = 4;
+    /** {@code cell} was frozen for {@code value} more turns by {@code player}. */
+    public static final int CELL_FROZEN = 5;
+    /** The freeze on {@code cell} ran out. */
+    public static final int CELL_UNFROZEN = 6;
+    /** The piece of {@code player} on {@code cell} was empowered. */
+    public static final int PIECE_EMPOWERED = 7;
+    /** The piece of {@code player} on {@code cell} had its age reset by Time Rewind. */
+    public static final int PIECE_REWOUND = 8;
+    /** {@code player} scored line {@code value}; see {@link BoardTopology#lineCells(int)}. */
+    public static final int LINE_SCORED = 9;
+    /** It is now the turn of {@code player}. */
+    public static final int TURN_PASSED = 10;
+    /** Round {@code value} began. */
+    public static final int ROUND_ADVANCED = 11;
+    /** {@code player} was offered the card kinds in bitmask {@code value}. */
+    public static final int CARDS_OFFERED = 12;
+
+    private static final int INTS = 4;
+
+    private int[] data = new int[INTS * 16];
+    private int size;
+    private int types;
+
+    GameEvents() {
+    }
+
+    /**
+     * Number of events in the batch.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int type(int index) {
+        return data[check(index)];
+    }
+
+    public int cell(int index) {
+        return data[check(index) + 1];
+    }
+
+    public int player(int index) {
+        return data[check(index) + 2];
+    }
+
+    public int value(int index) {
+        return data[check(index) + 3];
+    }
+
+    /**
+     * Whether the batch holds an event of {@code type}, e.g. to skip work a
+     * listener only does for some kinds of change.
+     */
+    public boolean contains(int type) {
+        return (types & 1 << type) != 0;
+    }
+
+    void add(int type, int cell, int player, int value) {
+        int base = size * INTS;
+        if (base == data.length) {
+            data = Arrays.copyOf(data, data.length * 2);
+        }
+        data[base] = type;
+        data[base + 1] = cell;
+        data[base + 2] = player;
+        data[base + 3] = value;
+        types |= 1 << type;
+        size++;
+    }
+
+    void clear() {
+        size = 0;
+        types = 0;
+    }
+
+    private int check(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Event " + index + " of " + size);
+        }
+        return index * INTS;
+    }
+}
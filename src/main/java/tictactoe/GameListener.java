@@ -0,0 +1,21 @@
+package tictactoe;
+
+/**
+ * Receives what changed in a {@link Game}, one callback per action.
+ *
+ * <p>An action is a call of one of the game's mutators (placing, playing a
+ * card, capturing, ending the turn, advancing the round, drawing cards) or of
+ * {@link Game#play(int)}; everything it changed, including evictions, scored
+ * lines and expired freezes, arrives together in one {@link GameEvents}
+ * batch. Moves explored with {@link Game#make(int)} and {@link Game#unmake()}
+ * are not reported, so search engines can work on an observed game. Listeners
+ * run on the thread that mutated the game.</p>
+ */
+@FunctionalInterface
+public interface GameListener {
+    /**
+     * Called after an action changed {@code game}; {@code events} is only
+     * valid during the call.
+     */
+    void gameChanged(Game game, GameEvents events);
+}
@@ -0,0 +1,208 @@
+package tictactoe;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reads the games of a record file written by {@link GameRecordWriter}, one at
+ * a time, through a read-only memory-mapped window.
+ *
+ * <p>{@link #next()} moves to the next game and exposes its header; the
+ * actions are read straight from the mapping by {@link #getAction(int)} or
+ * played into a {@link Game} by {@link #replay()}. Replaying plays each action
+ * with {@link Game#play(int)}, which checks it and keeps no undo history.</p>
+ */
+public final class GameRecordReader implements Closeable {
+    private static final int WINDOW_BYTES = 64 << 20;
+
+    private final FileChannel channel;
+    private final long end;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long nextGame = GameRecordWriter.FILE_HEADER_BYTES;
+    private int actionsOffset = -1;
+
+    private int actionCount;
+    private long seed;
+    private BoardTopology topology;
+    private int pieceCap;
+    private int turnLimit;
+    private final List<String> playerNames = new ArrayList<>();
+
+    private GameRecordReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        if (channel.size() < GameRecordWriter.FILE_HEADER_BYTES) {
+            throw new IOException("Not a game record");
+        }
+        this.window = map(0, GameRecordWriter.FILE_HEADER_BYTES);
+        if (window.getInt(0) != GameRecordWriter.MAGIC || window.getInt(4) != GameRecordWriter.VERSION) {
+            throw new IOException("Not a version " + GameRecordWriter.VERSION + " game record");
+        }
+        this.end = window.getLong(GameRecordWriter.COMMITTED_OFFSET);
+        if (end < GameRecordWriter.FILE_HEADER_BYTES || end > channel.size()) {
+            throw new IOException("Corrupt game record: committed length " + end);
+        }
+    }
+
+    public static GameRecordReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new GameRecordReader(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Moves to the next game of the file.
+     *
+     * @return whether there was one
+     */
+    public boolean next() throws IOException {
+        if (nextGame >= end) {
+            actionsOffset = -1;
+            return false;
+        }
+        int offset = window(nextGame, GameRecordWriter.GAME_HEADER_BYTES);
+        if (window.getInt(offset) != GameRecordWriter.GAME_MARKER) {
+            throw new IOException("Corrupt game record at byte " + nextGame);
+        }
+        actionCount = window.getInt(offset + 4);
+        seed = window.getLong(offset + 8);
+        int size = window.get(offset + 16);
+        int winLength = window.get(offset + 17);
+        int players = window.get(offset + 18) & 0xFF;
+        pieceCap = window.getInt(offset + 20);
+        turnLimit = window.getInt(offset + 24);
+        topology = BoardTopology.of(size, winLength);
+
+        long names = nextGame + GameRecordWriter.GAME_HEADER_BYTES;
+        long position = names;
+        playerNames.clear();
+        for (int i = 0; i < players; i++) {
+            offset = window(position, 2);
+            int length = window.getShort(offset) & 0xFFFF;
+            offset = window(position + 2, length);
+            byte[] name = new byte[length];
+            window.get(offset, name);
+            playerNames.add(new String(name, StandardCharsets.UTF_8));
+            position += 2 + length;
+        }
+        long actions = (position + 3) & ~3L;
+        long gameEnd = actions + 4L * actionCount;
+        if (actionCount < 0 || gameEnd > end) {
+            throw new IOException("Corrupt game record at byte " + nextGame);
+        }
+        actionsOffset = window(actions, (int) (gameEnd - actions));
+        nextGame = gameEnd;
+        return true;
+    }
+
+    public List<String> getPlayerNames() {
+        return Collections.unmodifiableList(playerNames);
+    }
+
+    public BoardTopology getTopology() {
+        return topology;
+    }
+
+    public int getPieceCap() {
+        return pieceCap;
+    }
+
+    public int getTurnLimit() {
+        return turnLimit;
+    }
+
+    /**
+     * Seed of the random generator the game was created with.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getActionCount() {
+        return actionCount;
+    }
+
+    /**
+     * The {@code index}-th action of the current game, a packed {@link Move}.
+     */
+    public int getAction(int index) {
+        if (actionsOffset < 0) {
+            throw new IllegalStateException("No current game");
+        }
+        if (index < 0 || index >= actionCount) {
+            throw new IndexOutOfBoundsException("Action " + index + " of " + actionCount);
+        }
+        return window.getInt(actionsOffset + 4 * index);
+    }
+
+    /**
+     * Replays the current game on a new {@link Game} with fresh players and a
+     * generator seeded with the recorded seed, and returns it.
+     */
+    public Game replay() {
+        List<Player> players = new ArrayList<>(playerNames.size());
+        for (String name : playerNames) {
+            players.add(new Player(name));
+        }
+        Game game = new Game(players, topology, pieceCap, turnLimit, new Random(seed));
+        replay(game);
+        return game;
+    }
+
+    /**
+     * Plays the actions of the current game into {@code game}, which should be
+     * set up like the recorded one.
+     *
+     * @throws IllegalStateException if an action is illegal in {@code game}
+     */
+    public void replay(Game game) {
+        for (int i = 0; i < actionCount; i++) {
+            int move = getAction(i);
+            if (!game.play(move)) {
+                throw new IllegalStateException("Recorded action " + i + " is illegal: "
+                        + Move.toString(move, game.getBoard().getTopology()));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    /**
+     * Returns the offset in the window of file position {@code position},
+     * remapping so that the {@code bytes} bytes from there are mapped.
+     */
+    private int window(long position, int bytes) throws IOException {
+        if (position + bytes > end) {
+            throw new IOException("Corrupt game record: truncated at byte " + position);
+        }
+        if (position < windowStart || position + bytes > windowStart + window.capacity()) {
+            windowStart = position;
+            window = map(position, (int) Math.min(end - position, Math.max(WINDOW_BYTES, bytes)));
+        }
+        return (int) (position - windowStart);
+    }
+
+    private MappedByteBuffer map(long start, int size) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+}
@@ -0,0 +1,234 @@
+package tictactoe;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends games to a compact binary record file through a memory-mapped
+ * window, so writing a move is a bounds check and a store into the page cache.
+ *
+ * <p>A file starts with a 16-byte header: the magic {@code "T3DR"}, the format
+ * version and the length of the file up to the end of the last complete game.
+ * Each game follows as a header and its actions:</p>
+ * <pre>
+ * int   marker "GAME"       int   action count
+ * long  RNG seed
+ * byte  board size          byte  win length
+ * byte  player count        byte  0
+ * int   piece cap           int   turn limit
+ * per player: short name length, UTF-8 name bytes
+ * zero padding to a multiple of 4 bytes
+ * int   action × count      (packed {@link Move} codes)
+ * </pre>
+ *
+ * <p>Actions are the codes {@link Game#make(int)} plays: placements, card
+ * draws ({@link Move#offer(int)}, the kinds {@link Game#offerCards()} drew),
+ * card plays, captures and turn ends, which also advance the round after the
+ * last player. All values are little-endian on every platform, so a record
+ * can be read on any machine; a file written in the other byte order fails
+ * the magic check.</p>
+ *
+ * <p>A game only becomes part of the file when {@link #endGame()} commits it.
+ * If the writer dies before that, or the file is reopened after a crash, the
+ * partial game is overwritten by the next one. A writer is not thread-safe;
+ * give each thread a file of its own.</p>
+ */
+public final class GameRecordWriter implements Closeable {
+    static final int MAGIC = 0x5433_4452;
+    static final int VERSION = 1;
+    static final int FILE_HEADER_BYTES = 16;
+    static final int COMMITTED_OFFSET = 8;
+    static final int GAME_MARKER = 0x4741_4D45;
+    static final int GAME_HEADER_BYTES = 28;
+
+    private static final int WINDOW_BYTES = 64 << 20;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long committed;
+    private long gameStart = -1;
+    private int actionCount;
+    private BoardTopology topology;
+
+    private GameRecordWriter(FileChannel channel) throws IOException {
+        this.channel = channel;
+        boolean fresh = channel.size() == 0;
+        this.header = map(0, FILE_HEADER_BYTES);
+        if (fresh) {
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putLong(COMMITTED_OFFSET, FILE_HEADER_BYTES);
+        } else if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("Not a version " + VERSION + " game record");
+        }
+        this.committed = header.getLong(COMMITTED_OFFSET);
+        if (committed < FILE_HEADER_BYTES || committed > channel.size()) {
+            throw new IOException("Corrupt game record: committed length " + committed);
+        }
+        this.windowStart = committed;
+        this.window = map(committed, WINDOW_BYTES);
+    }
+
+    /**
+     * Opens {@code path} for appending, creating it if it does not exist.
+     */
+    public static GameRecordWriter open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            return new GameRecordWriter(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts the record of {@code game}, which must not have been played yet,
+     * noting the seed of the generator it was created with.
+     */
+    public void beginGame(Game game, long seed) throws IOException {
+        if (gameStart >= 0) {
+            throw new IllegalStateException("A game is already being recorded");
+        }
+        List<Player> players = game.getPlayers();
+        if (players.size() > 0xFF) {
+            throw new IllegalArgumentException("Too many players to record: " + players.size());
+        }
+        byte[][] names = new byte[players.size()][];
+        int bytes = GAME_HEADER_BYTES;
+        for (int i = 0; i < names.length; i++) {
+            names[i] = players.get(i).getName().getBytes(StandardCharsets.UTF_8);
+            if (names[i].length > 0xFFFF) {
+                throw new IllegalArgumentException("Player name too long to record");
+            }
+            bytes += 2 + names[i].length;
+        }
+        bytes = (bytes + 3) & ~3;
+        topology = game.getBoard().getTopology();
+        gameStart = committed;
+        actionCount = 0;
+        ensure(bytes);
+        window.putInt(GAME_MARKER)
+                .putInt(0)
+                .putLong(seed)
+                .put((byte) topology.getSize())
+                .put((byte) topology.getWinLength())
+                .put((byte) names.length)
+                .put((byte) 0)
+                .putInt(game.getPieceCap())
+                .putInt(game.getTurnLimit());
+        for (byte[] name : names) {
+            window.putShort((short) name.length).put(name);
+        }
+        while ((window.position() & 3) != 0) {
+            window.put((byte) 0);
+        }
+    }
+
+    /**
+     * Appends an action, as passed to {@link Game#make(int)}, to the game
+     * being recorded.
+     */
+    public void append(int move) throws IOException {
+        if (gameStart < 0) {
+            throw new IllegalStateException("No game is being recorded");
+        }
+        if (Move.type(move) == 0) {
+            throw new IllegalArgumentException("Not a move: " + move);
+        }
+        if (window.remaining() < 4) {
+            ensure(4);
+        }
+        window.putInt(move);
+        actionCount++;
+    }
+
+    /**
+     * Appends a card play given as a packed {@link Move#card(int, int)} code,
+     * e.g. {@code Move.card(Move.CARD_FREEZE, cell)}.
+     */
+    public void appendCard(int move) throws IOException {
+        if (Move.type(move) != Move.TYPE_CARD) {
+            throw new IllegalArgumentException("Not a card play: " + move);
+        }
+        append(move);
+    }
+
+    /**
+     * Ends the game being recorded and commits it to the file.
+     */
+    public void endGame() {
+        if (gameStart < 0) {
+            throw new IllegalStateException("No game is being recorded");
+        }
+        window.putInt((int) (gameStart - windowStart) + 4, actionCount);
+        committed = windowStart + window.position();
+        header.putLong(COMMITTED_OFFSET, committed);
+        gameStart = -1;
+    }
+
+    /**
+     * Writes the committed games through to the storage device.
+     */
+    public void flush() {
+        window.force();
+        header.force();
+    }
+
+    /**
+     * Commits nothing further: a game still being recorded is dropped. The
+     * file is cut back to the committed games.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            window = null;
+            try {
+                channel.truncate(committed);
+            } catch (IOException e) {
+                // Some platforms refuse to shrink a mapped file; readers stop
+                // at the committed length anyway.
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Makes room for {@code bytes} more bytes, remapping the window so that it
+     * still starts at or before the game being recorded, whose action count
+     * is written last.
+     */
+    private void ensure(int bytes) throws IOException {
+        if (window.remaining() >= bytes) {
+            return;
+        }
+        long position = windowStart + window.position();
+        long start = gameStart >= 0 ? gameStart : position;
+        long needed = position - start + bytes;
+        if (needed > Integer.MAX_VALUE / 2) {
+            throw new IOException("Game too long to record");
+        }
+        window.force();
+        windowStart = start;
+        window = map(start, Math.max(WINDOW_BYTES, (int) needed * 2));
+        window.position((int) (position - start));
+    }
+
+    private MappedByteBuffer map(long start, int size) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, start, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+}
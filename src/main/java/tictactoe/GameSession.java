@@ -0,0 +1,79 @@
+package tictactoe;
+
+/**
+ * The turn flow of one game, in one place: the current player places a
+ * piece; in a card round two cards are then drawn and one of them must be
+ * played; after that the player may capture with empowered pieces (card
+ * rounds only) and ends the turn, which advances the round after the last
+ * player.
+ *
+ * <p>Every action is a packed {@link Move} checked by {@link Game#isLegal(int)}
+ * and played with {@link Game#play(int)}; the session only adds the card draw
+ * after a placement in a card round, reported to {@link GameListener}s
+ * together with the placement. Like {@link Game}, a session is not
+ * thread-safe.</p>
+ */
+public class GameSession {
+    private final Game game;
+
+    public GameSession(Game game) {
+        this.game = game;
+    }
+
+    public Game getGame() {
+        return game;
+    }
+
+    /**
+     * Plays {@code move} for the current player and, if it was a placement in
+     * a card round, draws the card offer.
+     *
+     * @return whether the move was legal and has been played; card draws are
+     *         made by the session and are never legal here
+     */
+    public boolean play(int move) {
+        if (Move.type(move) == Move.TYPE_OFFER) {
+            return false;
+        }
+        game.beginAction();
+        try {
+            if (!game.play(move)) {
+                return false;
+            }
+            if (game.getPhase() == Game.PHASE_CARD && game.getOfferMask() == 0 && !game.isGameOver()) {
+                game.offerCards();
+            }
+            return true;
+        } finally {
+            game.endAction();
+        }
+    }
+
+    public boolean place(int cell) {
+        return play(Move.place(cell));
+    }
+
+    /**
+     * Plays an offered card; {@code arg} is as for
+     * {@link Move#card(int, int)}.
+     */
+    public boolean playCard(int kind, int arg) {
+        return play(Move.card(kind, arg));
+    }
+
+    public boolean capture(int fromCell, int targetCell) {
+        return play(Move.capture(fromCell, targetCell));
+    }
+
+    public boolean endTurn() {
+        return play(Move.endTurn());
+    }
+
+    /**
+     * Bitmask over {@code Move.CARD_*} kinds of the cards the current player
+     * must choose from, or 0 when no card is due.
+     */
+    public int getOfferMask() {
+        return game.getPhase() == Game.PHASE_CARD ? game.getOfferMask() : 0;
+    }
+}
@@ -0,0 +1,197 @@
+package tictactoe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Immutable copy of a game position made of primitive arrays, taken with
+ * {@link Game#snapshot()} in time linear in the number of cells.
+ *
+ * <p>A snapshot holds no reference to the live game, its players or pieces,
+ * and none of its arrays is ever written after construction or handed out,
+ * so it can be shared freely between threads: spectators can read it while
+ * the game goes on, and search workers can each {@link #restore(Random)} a
+ * game of their own from it.</p>
+ *
+ * <p>Per cell it records the owner (as a player index), the empowered flag,
+ * the freeze timer and the piece's age and placement index; per player the
+ * name, score, scored lines and the cells of the FIFO queue from oldest to
+ * newest. Hands of cards are not part of the position.</p>
+ */
+public final class GameSnapshot {
+    private final BoardTopology topology;
+    private final int pieceCap;
+    private final int turnLimit;
+    private final int round;
+    private final int currentPlayerIndex;
+    private final int phase;
+    private final int offerMask;
+    private final long zobristHash;
+
+    private final String[] names;
+    private final int[] scores;
+    private final int[][] queues;
+    private final LineSet[] scoredLines;
+    private final int[] lastCompletedLines;
+    private final int lastScorer;
+
+    private final byte[] owners;
+    private final long[] empowered;
+    private final int[] frozenTurns;
+    private final int[] ages;
+    private final int[] placements;
+
+    GameSnapshot(BoardTopology topology, int pieceCap, int turnLimit, int round, int currentPlayerIndex,
+                 int phase, int offerMask, long zobristHash, String[] names, int[] scores, int[][] queues,
+                 LineSet[] scoredLines, int[] lastCompletedLines, int lastScorer, byte[] owners, long[] empowered,
+                 int[] frozenTurns, int[] ages, int[] placements) {
+        this.topology = topology;
+        this.pieceCap = pieceCap;
+        this.turnLimit = turnLimit;
+        this.round = round;
+        this.currentPlayerIndex = currentPlayerIndex;
+        this.phase = phase;
+        this.offerMask = offerMask;
+        this.zobristHash = zobristHash;
+        this.names = names;
+        this.scores = scores;
+        this.queues = queues;
+        this.scoredLines = scoredLines;
+        this.lastCompletedLines = lastCompletedLines;
+        this.lastScorer = lastScorer;
+        this.owners = owners;
+        this.empowered = empowered;
+        this.frozenTurns = frozenTurns;
+        this.ages = ages;
+        this.placements = placements;
+    }
+
+    /**
+     * Builds a new, independent game in this position, with fresh players
+     * carrying the recorded names and scores. {@code rng} drives its card
+     * offers from here on.
+     */
+    public Game restore(Random rng) {
+        return new Game(this, rng);
+    }
+
+    List<Player> newPlayers() {
+        List<Player> players = new ArrayList<>(names.length);
+        for (int i = 0; i < names.length; i++) {
+            Player player = new Player(names[i]);
+            player.addScore(scores[i]);
+            players.add(player);
+        }
+        return players;
+    }
+
+    public BoardTopology getTopology() {
+        return topology;
+    }
+
+    public int getPieceCap() {
+        return pieceCap;
+    }
+
+    public int getTurnLimit() {
+        return turnLimit;
+    }
+
+    public int getCurrentRound() {
+        return round;
+    }
+
+    public int getCurrentPlayerIndex() {
+        return currentPlayerIndex;
+    }
+
+    public int getPhase() {
+        return phase;
+    }
+
+    public int getOfferMask() {
+        return offerMask;
+    }
+
+    public boolean isGameOver() {
+        return round > turnLimit;
+    }
+
+    /**
+     * {@link Game#getZobristHash()} at the time of the snapshot.
+     */
+    public long getZobristHash() {
+        return zobristHash;
+    }
+
+    public int getPlayerCount() {
+        return names.length;
+    }
+
+    public String getPlayerName(int player) {
+        return names[player];
+    }
+
+    public int getScore(int player) {
+        return scores[player];
+    }
+
+    public boolean hasScoredLine(int player, int line) {
+        return scoredLines[player].contains(line);
+    }
+
+    /**
+     * Number of pieces in {@code player}'s FIFO queue.
+     */
+    public int getQueueLength(int player) {
+        return queues[player].length;
+    }
+
+    /**
+     * Cell of the {@code rank}-th oldest piece of {@code player}.
+     */
+    public int getQueueCell(int player, int rank) {
+        return queues[player][rank];
+    }
+
+    /**
+     * Index of the player owning the piece on {@code cell}, or -1 if the cell
+     * is empty.
+     */
+    public int ownerAt(int cell) {
+        return owners[cell];
+    }
+
+    public boolean isEmpoweredAt(int cell) {
+        return (empowered[cell >>> 6] & 1L << cell) != 0;
+    }
+
+    public int frozenTurnsAt(int cell) {
+        return frozenTurns[cell];
+    }
+
+    public int ageAt(int cell) {
+        return ages[cell];
+    }
+
+    public int placementIndexAt(int cell) {
+        return placements[cell];
+    }
+
+    LineSet scoredLines(int player) {
+        return scoredLines[player];
+    }
+
+    int lastCompletedCount() {
+        return lastCompletedLines.length;
+    }
+
+    int lastCompletedLine(int i) {
+        return lastCompletedLines[i];
+    }
+
+    int lastScorer() {
+        return lastScorer;
+    }
+}
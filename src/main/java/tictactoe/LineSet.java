@@ -0,0 +1,92 @@
+package tictactoe;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-capacity set of line ids backed by bits. Boards with at most 64 lines
+ * (the 49 lines of the 3×3×3 cube) use a single {@code long}; larger boards
+ * spill into a {@code long[]}.
+ */
+final class LineSet {
+    private final int capacity;
+    private long bits;
+    private final long[] words;
+
+    LineSet(int capacity) {
+        this.capacity = capacity;
+        this.words = capacity > Long.SIZE ? new long[(capacity + Long.SIZE - 1) / Long.SIZE] : null;
+    }
+
+    private LineSet(LineSet source) {
+        this.capacity = source.capacity;
+        this.bits = source.bits;
+        this.words = source.words == null ? null : source.words.clone();
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    boolean contains(int line) {
+        if (words == null) {
+            return (bits & (1L << line)) != 0;
+        }
+        return (words[line >>> 6] & (1L << line)) != 0;
+    }
+
+    /**
+     * Adds {@code line} and reports whether it was absent before.
+     */
+    boolean add(int line) {
+        long bit = 1L << line;
+        if (words == null) {
+            boolean absent = (bits & bit) == 0;
+            bits |= bit;
+            return absent;
+        }
+        int word = line >>> 6;
+        boolean absent = (words[word] & bit) == 0;
+        words[word] |= bit;
+        return absent;
+    }
+
+    void remove(int line) {
+        if (words == null) {
+            bits &= ~(1L << line);
+        } else {
+            words[line >>> 6] &= ~(1L << line);
+        }
+    }
+
+    int size() {
+        if (words == null) {
+            return Long.bitCount(bits);
+        }
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    void clear() {
+        bits = 0L;
+        if (words != null) {
+            Arrays.fill(words, 0L);
+        }
+    }
+
+    void copyFrom(LineSet source) {
+        if (source.capacity != capacity) {
+            throw new IllegalArgumentException("Line set capacity mismatch: " + source.capacity + " vs " + capacity);
+        }
+        bits = source.bits;
+        if (words != null) {
+            System.arraycopy(source.words, 0, words, 0, words.length);
+        }
+    }
+
+    LineSet copy() {
+        return new LineSet(this);
+    }
+}
@@ -0,0 +1,559 @@
+package tictactoe;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Computer opponent based on Monte Carlo tree search, shared by a pool of
+ * worker threads.
+ *
+ * <p>Every worker restores its own game from a {@link GameSnapshot} of the
+ * searched position. It walks the shared tree with UCT, then plays random
+ * moves to the end of the game through {@link Game#make(int)} (so the piece
+ * cap, card effects and turn limit all apply) and takes everything back with
+ * {@link Game#unmake()}. Node
+ * statistics are updated with atomic adds and never locked; a child is
+ * expanded by whichever worker wins a compare-and-set. On the way down each
+ * worker charges a virtual loss to the nodes it passes, steering the other
+ * workers towards different lines until the playout result is backed up.</p>
+ *
+ * <p>Every playout updates the root and a node or two below it, so the nodes
+ * of the first two plies carry padding that keeps each one's counters off the
+ * cache lines of its siblings, which are allocated next to it. Deeper nodes
+ * are rarely hit by two workers at once and stay small. The benchmarks
+ * module's {@code MctsScalingBenchmark} reports playouts per second for 1, 2,
+ * 4 and one worker per core at a fixed budget.</p>
+ *
+ * <p>Card draws are chance nodes: a card phase with no offer yet has one
+ * child per pair of distinct cards ({@link Move#offer(int)}), sampled
+ * uniformly instead of selected. A playout scores 1 for the player with the
+ * most points, shared on a tie, so games with more than two players work as
+ * well. Between searches the engine keeps the subtree of the position it is
+ * asked about next if that position was already in the tree.</p>
+ */
+public class MctsEngine implements AutoCloseable {
+    public static final long DEFAULT_BUDGET_MILLIS = 50;
+
+    private static final double EXPLORATION = 1.4;
+    private static final int VIRTUAL_LOSS = 3;
+    private static final long REWARD_SCALE = 1L << 20;
+    private static final int REUSE_DEPTH = 16;
+    /** Nodes down to this many plies below the root are padded. */
+    private static final int PADDED_DEPTH = 2;
+    private static final int[] OFFERS = offerMasks();
+
+    private final int threads;
+    private final ExecutorService pool;
+    private final SplittableRandom seeds;
+    private long budgetNanos = DEFAULT_BUDGET_MILLIS * 1_000_000L;
+    private long maxPlayouts;
+
+    private volatile Node root;
+    private volatile long deadline;
+    private Game lastGame;
+
+    public MctsEngine() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public MctsEngine(int threads) {
+        this(threads, new Random().nextLong());
+    }
+
+    /**
+     * An engine searching with {@code threads} workers. A one-thread engine
+     * runs its worker on the thread calling {@link #search(Game)} and starts
+     * no threads of its own, so it is cheap to create per game.
+     */
+    public MctsEngine(int threads, long seed) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one thread: " + threads);
+        }
+        this.threads = threads;
+        this.seeds = new SplittableRandom(seed);
+        this.pool = threads == 1 ? null : Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "mcts-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public long getBudgetMillis() {
+        return budgetNanos / 1_000_000L;
+    }
+
+    /**
+     * Sets the time per search; 0 means no time limit, leaving the search to
+     * {@link #setMaxPlayouts(long)}. A one-thread engine with a playout limit
+     * and no time limit plays the same moves on any machine.
+     */
+    public void setBudgetMillis(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Budget must not be negative: " + millis);
+        }
+        this.budgetNanos = millis * 1_000_000L;
+    }
+
+    public long getMaxPlayouts() {
+        return maxPlayouts;
+    }
+
+    /**
+     * Stops a search after roughly this many playouts even if time is left;
+     * 0 (the default) means no limit. One of the two limits must be set.
+     */
+    public void setMaxPlayouts(long maxPlayouts) {
+        if (maxPlayouts < 0) {
+            throw new IllegalArgumentException("Playout limit must not be negative: " + maxPlayouts);
+        }
+        this.maxPlayouts = maxPlayouts;
+    }
+
+    /**
+     * Searches the current position of {@code game} for the player to move.
+     * The game itself is only read; the workers play on games restored from
+     * a snapshot of it.
+     *
+     * <p>The score of the result is the expected share of the win for the
+     * player to move, in thousandths; the node count is the number of
+     * playouts.</p>
+     *
+     * <p>If the cards of a card round have not been drawn yet, the root is a
+     * chance node like any other pending draw: the result carries the
+     * expected share over the draw and {@link Move#NONE} as its move. Draw
+     * with {@link Game#offerCards()} and search again for the card to
+     * play.</p>
+     */
+    public SearchResult search(Game game) {
+        if (budgetNanos == 0 && maxPlayouts == 0) {
+            throw new IllegalStateException("MCTS needs a time budget or a playout limit");
+        }
+        if (game.isGameOver()) {
+            return new SearchResult(Move.NONE, 0, 0, 0, new int[0]);
+        }
+        long key = key(game);
+        Node start = game == lastGame ? reuse(root, key) : null;
+        if (start == null) {
+            start = Node.create(Move.NONE, -1, 0);
+            start.key = key;
+            start.children = children(game, new int[MoveGenerator.capacity(game.getBoard().getTopology())], 1);
+        }
+        root = start;
+        lastGame = game;
+        deadline = budgetNanos == 0 ? Long.MAX_VALUE : System.nanoTime() + budgetNanos;
+
+        long perWorker = maxPlayouts == 0 ? Long.MAX_VALUE : Math.max(1, maxPlayouts / threads);
+        GameSnapshot snapshot = game.snapshot();
+        if (pool == null) {
+            long[] stats = new Worker(snapshot, new Random(seeds.nextLong()), seeds.split(), perWorker).run();
+            return result(start, stats[0], (int) stats[1]);
+        }
+        List<Future<long[]>> futures = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            Worker worker = new Worker(snapshot, new Random(seeds.nextLong()), seeds.split(), perWorker);
+            futures.add(pool.submit(worker::run));
+        }
+        long playouts = 0;
+        int depth = 0;
+        try {
+            for (Future<long[]> future : futures) {
+                long[] stats = future.get();
+                playouts += stats[0];
+                depth = Math.max(depth, (int) stats[1]);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            deadline = 0;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("MCTS worker failed", e.getCause());
+        }
+
+        return result(start, playouts, depth);
+    }
+
+    private static SearchResult result(Node start, long playouts, int depth) {
+        if (isChance(start.children)) {
+            long visits = 0;
+            long value = 0;
+            for (Node draw : start.children) {
+                visits += draw.visits;
+                value += draw.value;
+            }
+            int score = visits == 0 ? 0 : (int) Math.round((double) value / (REWARD_SCALE * visits) * 1000);
+            return new SearchResult(Move.NONE, score, depth, playouts, new int[0]);
+        }
+        Node best = mostVisited(start);
+        int[] pv = principalVariation(start);
+        int score = best == null ? 0 : (int) Math.round(best.mean() * 1000);
+        return new SearchResult(best == null ? Move.NONE : best.move, score, depth, playouts, pv);
+    }
+
+    /**
+     * Stops the worker threads. A closed engine cannot search any more.
+     */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Looks for the position with {@code key} among the first plies below
+     * {@code old}. A pending draw and the position after it differ in the
+     * offer, which the key includes, so a chance node is only found for a
+     * game that has not drawn its cards either.
+     */
+    private static Node reuse(Node old, long key) {
+        if (old == null) {
+            return null;
+        }
+        ArrayDeque<Node> frontier = new ArrayDeque<>();
+        ArrayDeque<Node> next = new ArrayDeque<>();
+        frontier.add(old);
+        for (int ply = 0; ply <= REUSE_DEPTH && !frontier.isEmpty(); ply++) {
+            for (Node node : frontier) {
+                Node[] children = node.children;
+                if (node.key == key && children != null) {
+                    return node;
+                }
+                if (children != null) {
+                    for (Node child : children) {
+                        if (child.visits > 0) {
+                            next.add(child);
+                        }
+                    }
+                }
+            }
+            ArrayDeque<Node> swap = frontier;
+            frontier = next;
+            next = swap;
+            next.clear();
+        }
+        return null;
+    }
+
+    private static Node mostVisited(Node node) {
+        Node[] children = node.children;
+        if (children == null) {
+            return null;
+        }
+        Node best = null;
+        for (Node child : children) {
+            if (best == null || child.visits > best.visits) {
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Most visited line from {@code node}, up to the first card draw.
+     */
+    private static int[] principalVariation(Node node) {
+        int[] line = new int[16];
+        int length = 0;
+        for (Node child = mostVisited(node); child != null && child.visits > 0
+                && Move.type(child.move) != Move.TYPE_OFFER; child = mostVisited(child)) {
+            if (length == line.length) {
+                line = Arrays.copyOf(line, length * 2);
+            }
+            line[length++] = child.move;
+        }
+        return Arrays.copyOf(line, length);
+    }
+
+    private static boolean isChance(Node[] children) {
+        return children.length > 0 && Move.type(children[0].move) == Move.TYPE_OFFER;
+    }
+
+    /**
+     * Position key used to find the subtree to reuse: the Zobrist hash, which
+     * leaves out scores and the lines already scored, mixed with both.
+     */
+    private static long key(Game game) {
+        long key = game.getZobristHash();
+        for (Player player : game.getPlayers()) {
+            key = Long.rotateLeft(key, 13) ^ (player.getScore() + 1) * 0x9E37_79B9_7F4A_7C15L;
+        }
+        return Long.rotateLeft(key, 11) ^ game.getScoredLinesHash();
+    }
+
+    /**
+     * Children of the current position of {@code game}, {@code depth} plies
+     * below the search root: one per pair of cards if a draw is pending,
+     * otherwise one per move. {@code moves} is scratch space for the move
+     * generator.
+     */
+    private static Node[] children(Game game, int[] moves, int depth) {
+        int mover = game.getCurrentPlayerIndex();
+        if (game.getPhase() == Game.PHASE_CARD && game.getOfferMask() == 0) {
+            Node[] draws = new Node[OFFERS.length];
+            for (int i = 0; i < OFFERS.length; i++) {
+                draws[i] = Node.create(Move.offer(OFFERS[i]), mover, depth);
+            }
+            return draws;
+        }
+        int count = MoveGenerator.generateForSearch(game, moves);
+        Node[] children = new Node[count];
+        for (int i = 0; i < count; i++) {
+            children[i] = Node.create(moves[i], mover, depth);
+        }
+        return children;
+    }
+
+    private static int[] offerMasks() {
+        int[] masks = new int[Move.CARD_KINDS * (Move.CARD_KINDS - 1) / 2];
+        int count = 0;
+        for (int a = 0; a < Move.CARD_KINDS; a++) {
+            for (int b = a + 1; b < Move.CARD_KINDS; b++) {
+                masks[count++] = 1 << a | 1 << b;
+            }
+        }
+        return masks;
+    }
+
+    /**
+     * Tree node for the position reached by {@link #move}. Statistics are from
+     * the point of view of {@link #mover}, the player who chose the move
+     * (or, for a card draw, who receives the cards).
+     */
+    static class Node {
+        private static final VarHandle VISITS;
+        private static final VarHandle VALUE;
+        private static final VarHandle CHILDREN;
+
+        static {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                VISITS = lookup.findVarHandle(Node.class, "visits", long.class);
+                VALUE = lookup.findVarHandle(Node.class, "value", long.class);
+                CHILDREN = lookup.findVarHandle(Node.class, "children", Node[].class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        final int move;
+        final int mover;
+        volatile long key;
+        volatile long visits;
+        volatile long value;
+        volatile Node[] children;
+
+        Node(int move, int mover) {
+            this.move = move;
+            this.mover = mover;
+        }
+
+        /**
+         * A node {@code depth} plies below the search root, padded if it is
+         * one of the contended ones near the root.
+         */
+        static Node create(int move, int mover, int depth) {
+            return depth <= PADDED_DEPTH ? new PaddedNode(move, mover) : new Node(move, mover);
+        }
+
+        double mean() {
+            long n = visits;
+            return n == 0 ? 0.0 : (double) value / (REWARD_SCALE * n);
+        }
+
+        void addVirtualLoss() {
+            VISITS.getAndAdd(this, (long) VIRTUAL_LOSS);
+        }
+
+        /**
+         * Replaces the virtual loss with one real visit worth {@code reward}.
+         */
+        void update(double reward) {
+            VALUE.getAndAdd(this, Math.round(reward * REWARD_SCALE));
+            VISITS.getAndAdd(this, (long) (1 - VIRTUAL_LOSS));
+        }
+
+        /**
+         * Installs {@code expanded} unless another worker got there first,
+         * and returns the children that won.
+         */
+        Node[] expand(Node[] expanded) {
+            if (CHILDREN.compareAndSet(this, null, expanded)) {
+                return expanded;
+            }
+            return children;
+        }
+    }
+
+    /**
+     * A node followed by 128 bytes of padding, two cache lines on every
+     * common CPU, so that atomic adds to its counters do not invalidate the
+     * line holding the next node in memory.
+     */
+    static final class PaddedNode extends Node {
+        long p00, p01, p02, p03, p04, p05, p06, p07;
+        long p08, p09, p10, p11, p12, p13, p14, p15;
+
+        PaddedNode(int move, int mover) {
+            super(move, mover);
+        }
+    }
+
+    private final class Worker {
+        private final GameSnapshot snapshot;
+        private final Random cards;
+        private final SplittableRandom random;
+        private final long limit;
+        private final int[] moves;
+        private final double[] rewards;
+        private Game game;
+        private Node[] path = new Node[64];
+
+        Worker(GameSnapshot snapshot, Random cards, SplittableRandom random, long limit) {
+            this.snapshot = snapshot;
+            this.cards = cards;
+            this.random = random;
+            this.limit = limit;
+            this.moves = new int[MoveGenerator.capacity(snapshot.getTopology())];
+            this.rewards = new double[snapshot.getPlayerCount()];
+        }
+
+        /**
+         * Runs playouts until the deadline and returns the playout count and
+         * the deepest tree path walked.
+         */
+        long[] run() {
+            game = snapshot.restore(cards);
+            long playouts = 0;
+            int deepest = 0;
+            Node top = root;
+            while (playouts < limit && System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+                deepest = Math.max(deepest, iterate(top));
+                playouts++;
+            }
+            return new long[]{playouts, deepest};
+        }
+
+        private int iterate(Node top) {
+            Node node = top;
+            int length = 0;
+            push(length++, node);
+            node.addVirtualLoss();
+            int made = 0;
+            while (!game.isGameOver()) {
+                Node[] children = node.children;
+                if (children == null) {
+                    if (node.visits <= VIRTUAL_LOSS) {
+                        break; // first visit: play out from here, expand next time
+                    }
+                    children = node.expand(children(game, moves, length));
+                }
+                if (children.length == 0) {
+                    break;
+                }
+                node = isChance(children) ? children[random.nextInt(children.length)] : select(node, children);
+                game.make(node.move);
+                made++;
+                if (node.key == 0) {
+                    node.key = key(game);
+                }
+                push(length++, node);
+                node.addVirtualLoss();
+            }
+            made += playout();
+            score();
+            for (int i = 0; i < made; i++) {
+                game.unmake();
+            }
+            for (int i = 0; i < length; i++) {
+                Node each = path[i];
+                each.update(each.mover < 0 ? 0.0 : rewards[each.mover]);
+                path[i] = null;
+            }
+            return length - 1;
+        }
+
+        /**
+         * UCT choice; untried children first, in random order across workers
+         * thanks to the virtual loss they receive once picked.
+         */
+        private Node select(Node parent, Node[] children) {
+            double logVisits = Math.log(Math.max(1, parent.visits));
+            Node best = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            int offset = random.nextInt(children.length);
+            for (int i = 0; i < children.length; i++) {
+                Node child = children[(i + offset) % children.length];
+                long n = child.visits;
+                if (n == 0) {
+                    return child;
+                }
+                double value = (double) child.value / (REWARD_SCALE * n) + EXPLORATION * Math.sqrt(logVisits / n);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Plays uniformly random moves, and random card draws, to the end of
+         * the game; returns how many moves were made.
+         */
+        private int playout() {
+            int made = 0;
+            while (!game.isGameOver()) {
+                int move;
+                if (game.getPhase() == Game.PHASE_CARD && game.getOfferMask() == 0) {
+                    move = Move.offer(OFFERS[random.nextInt(OFFERS.length)]);
+                } else {
+                    int count = MoveGenerator.generateForSearch(game, moves);
+                    move = moves[random.nextInt(count)];
+                }
+                game.make(move);
+                made++;
+            }
+            return made;
+        }
+
+        /**
+         * Fills {@link #rewards}: the leaders by points share a reward of 1.
+         */
+        private void score() {
+            List<Player> players = game.getPlayers();
+            int top = Integer.MIN_VALUE;
+            int leaders = 0;
+            for (Player player : players) {
+                if (player.getScore() > top) {
+                    top = player.getScore();
+                    leaders = 1;
+                } else if (player.getScore() == top) {
+                    leaders++;
+                }
+            }
+            for (int i = 0; i < rewards.length; i++) {
+                rewards[i] = players.get(i).getScore() == top ? 1.0 / leaders : 0.0;
+            }
+        }
+
+        private void push(int index, Node node) {
+            if (index == path.length) {
+                path = Arrays.copyOf(path, index * 2);
+            }
+            path[index] = node;
+        }
+    }
+}
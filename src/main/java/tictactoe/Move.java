@@ -0,0 +1,110 @@
+package tictactoe;
+
+/**
+ * Packs game actions into {@code int} codes for {@link Game#make(int)}.
+ *
+ * <p>Layout: bits 0–11 hold the main cell (the layer for layer-shift cards,
+ * the bitmask of drawn kinds for a card draw), bits 12–23 the capture target
+ * cell, bits 24–26 the card kind and bits 28–30 the move type. Cells are
+ * topology cell indices, which fit in 12 bits for every board up to
+ * {@link BoardTopology#MAX_SIZE}.</p>
+ */
+public final class Move {
+    public static final int NONE = 0;
+
+    public static final int TYPE_PLACE = 1;
+    public static final int TYPE_CARD = 2;
+    public static final int TYPE_CAPTURE = 3;
+    public static final int TYPE_END_TURN = 4;
+    /** The random draw of two cards; a chance event rather than a choice. */
+    public static final int TYPE_OFFER = 5;
+
+    /** Card kinds, in the deck order used by {@link Game#offerCards()}. */
+    public static final int CARD_EMPOWER = 0;
+    public static final int CARD_SHIFT_UP = 1;
+    public static final int CARD_SHIFT_DOWN = 2;
+    public static final int CARD_TIME_REWIND = 3;
+    public static final int CARD_FREEZE = 4;
+    public static final int CARD_KINDS = 5;
+
+    private static final int FIELD_MASK = 0xFFF;
+
+    private Move() {
+    }
+
+    public static int place(int cell) {
+        return TYPE_PLACE << 28 | cell;
+    }
+
+    /**
+     * A card play. {@code arg} is the layer for the layer-shift cards, the
+     * cell of the player's own piece for Empower and Time Rewind, and the cell
+     * to freeze for Freeze.
+     */
+    public static int card(int kind, int arg) {
+        return TYPE_CARD << 28 | kind << 24 | arg;
+    }
+
+    public static int capture(int fromCell, int targetCell) {
+        return TYPE_CAPTURE << 28 | targetCell << 12 | fromCell;
+    }
+
+    public static int endTurn() {
+        return TYPE_END_TURN << 28;
+    }
+
+    /**
+     * A card draw offering the kinds in {@code kindMask}, as
+     * {@link Game#offerCards()} would; lets search code play out each
+     * possible draw.
+     */
+    public static int offer(int kindMask) {
+        return TYPE_OFFER << 28 | kindMask;
+    }
+
+    public static int type(int move) {
+        return (move >>> 28) & 0x7;
+    }
+
+    /**
+     * The placed cell, the card argument or the capturing piece's cell.
+     */
+    public static int cell(int move) {
+        return move & FIELD_MASK;
+    }
+
+    public static int target(int move) {
+        return (move >>> 12) & FIELD_MASK;
+    }
+
+    public static int cardKind(int move) {
+        return (move >>> 24) & 0x7;
+    }
+
+    public static String toString(int move, BoardTopology topology) {
+        switch (type(move)) {
+            case TYPE_PLACE:
+                return "place " + topology.position(cell(move));
+            case TYPE_CARD:
+                int kind = cardKind(move);
+                String arg = kind == CARD_SHIFT_UP || kind == CARD_SHIFT_DOWN
+                        ? "layer " + cell(move)
+                        : topology.position(cell(move)).toString();
+                return Card.create(kind).getName() + " " + arg;
+            case TYPE_CAPTURE:
+                return "capture " + topology.position(cell(move)) + "->" + topology.position(target(move));
+            case TYPE_END_TURN:
+                return "end";
+            case TYPE_OFFER:
+                StringBuilder drawn = new StringBuilder("draw");
+                for (int each = 0; each < CARD_KINDS; each++) {
+                    if ((cell(move) & 1 << each) != 0) {
+                        drawn.append(' ').append(Card.create(each).getName());
+                    }
+                }
+                return drawn.toString();
+            default:
+                return "none";
+        }
+    }
+}
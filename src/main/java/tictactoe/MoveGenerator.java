@@ -0,0 +1,185 @@
+package tictactoe;
+
+/**
+ * Lists the actions available to the current player of a game as packed
+ * {@link Move} codes, written into a caller-supplied {@code int} buffer.
+ *
+ * <p>The generator keeps no state and allocates nothing: it walks the board's
+ * bitboards and the topology's shared tables, so random playouts and search
+ * engines can call it for every move. A buffer of {@link #capacity} entries
+ * holds the moves of any position on that topology.</p>
+ *
+ * <p>{@link #generate} returns exactly the moves that
+ * {@link Game#isLegal(int)} accepts in the current phase: placements on
+ * empty, unfrozen cells; after placing in a card round, every play of the
+ * offered cards (or of every card kind if none was offered) on its valid
+ * {@link ActionContext} targets; then every empowered capture and the end of
+ * the turn. Card draws ({@link Move#offer(int)}) are chance events and are
+ * not listed.</p>
+ */
+public final class MoveGenerator {
+    private MoveGenerator() {
+    }
+
+    /**
+     * Size of a buffer that can hold the moves of any position on
+     * {@code topology}: every card kind on every cell, or every cell
+     * capturing in all six directions, plus the end of the turn.
+     */
+    public static int capacity(BoardTopology topology) {
+        int cells = topology.getCellCount();
+        return Math.max(Move.CARD_KINDS * cells, 6 * cells) + 1;
+    }
+
+    /**
+     * Writes every legal move of the current phase into {@code moves} and
+     * returns how many there are; none once the game is over.
+     */
+    public static int generate(Game game, int[] moves) {
+        return generate(game, moves, false);
+    }
+
+    /**
+     * Appends every legal play of card {@code kind} at {@code moves[count]}
+     * and returns the new count, e.g. to list the targets of a card the
+     * player picked from an offer. Whether the card may be played now is not
+     * checked.
+     */
+    public static int generateCards(Game game, int kind, int[] moves, int count) {
+        return generateCards(game, kind, moves, count, false);
+    }
+
+    /**
+     * Like {@link #generate}, but card plays that cannot change anything
+     * (empowering an empowered piece, rewinding the newest piece, freezing an
+     * occupied or frozen cell) are skipped unless the card has no other
+     * target, since a drawn card must be played. Used by the engines.
+     */
+    static int generateForSearch(Game game, int[] moves) {
+        return generate(game, moves, true);
+    }
+
+    static int generateCardsForSearch(Game game, int kind, int[] moves, int count) {
+        return generateCards(game, kind, moves, count, true);
+    }
+
+    private static int generate(Game game, int[] moves, boolean pruned) {
+        if (game.isGameOver()) {
+            return 0;
+        }
+        Board board = game.getBoard();
+        int count = 0;
+        switch (game.getPhase()) {
+            case Game.PHASE_PLACE:
+                count = freeCells(board, moves, count, Move.TYPE_PLACE, 0);
+                break;
+            case Game.PHASE_CARD:
+                int offered = game.getOfferMask();
+                for (int kind = 0; kind < Move.CARD_KINDS; kind++) {
+                    if (offered == 0 || (offered & 1 << kind) != 0) {
+                        count = generateCards(game, kind, moves, count, pruned);
+                    }
+                }
+                break;
+            default:
+                if (game.shouldOfferCard()) {
+                    count = generateCaptures(game, moves, count);
+                }
+                moves[count++] = Move.endTurn();
+                break;
+        }
+        return count;
+    }
+
+    private static int generateCards(Game game, int kind, int[] moves, int count, boolean pruned) {
+        Board board = game.getBoard();
+        BoardTopology topology = board.getTopology();
+        int start = count;
+        Player player = game.getCurrentPlayer();
+        int words = topology.getWordCount();
+        switch (kind) {
+            case Move.CARD_EMPOWER:
+            case Move.CARD_TIME_REWIND:
+                Piece newest = player.pieceStore().newest();
+                int fallback = -1;
+                for (int word = 0; word < words; word++) {
+                    for (long own = board.occupancyWord(player, word); own != 0; own &= own - 1) {
+                        int cell = (word << 6) + Long.numberOfTrailingZeros(own);
+                        fallback = cell;
+                        Piece piece = board.getPiece(cell);
+                        if (!pruned || (kind == Move.CARD_EMPOWER ? !piece.isEmpowered() : piece != newest)) {
+                            moves[count++] = Move.card(kind, cell);
+                        }
+                    }
+                }
+                if (count == start && fallback >= 0) {
+                    moves[count++] = Move.card(kind, fallback);
+                }
+                break;
+            case Move.CARD_SHIFT_UP:
+                for (int layer = 0; layer < topology.getSize() - 1; layer++) {
+                    moves[count++] = Move.card(kind, layer);
+                }
+                break;
+            case Move.CARD_SHIFT_DOWN:
+                for (int layer = 1; layer < topology.getSize(); layer++) {
+                    moves[count++] = Move.card(kind, layer);
+                }
+                break;
+            case Move.CARD_FREEZE:
+                if (!pruned) {
+                    int cells = topology.getCellCount();
+                    for (int cell = 0; cell < cells; cell++) {
+                        moves[count++] = Move.card(kind, cell);
+                    }
+                    break;
+                }
+                count = freeCells(board, moves, count, Move.TYPE_CARD, kind);
+                if (count == start) {
+                    moves[count++] = Move.card(kind, 0);
+                }
+                break;
+            default:
+                break;
+        }
+        return count;
+    }
+
+    /**
+     * Appends a placement or a card play for every empty, unfrozen cell.
+     */
+    private static int freeCells(Board board, int[] moves, int count, int type, int kind) {
+        int cells = board.getTopology().getCellCount();
+        int words = board.getTopology().getWordCount();
+        for (int word = 0; word < words; word++) {
+            long free = ~(board.occupiedWord(word) | board.frozenWord(word));
+            if (word == words - 1 && (cells & 63) != 0) {
+                free &= (1L << cells) - 1;
+            }
+            for (; free != 0; free &= free - 1) {
+                int cell = (word << 6) + Long.numberOfTrailingZeros(free);
+                moves[count++] = type == Move.TYPE_PLACE ? Move.place(cell) : Move.card(kind, cell);
+            }
+        }
+        return count;
+    }
+
+    private static int generateCaptures(Game game, int[] moves, int count) {
+        Board board = game.getBoard();
+        BoardTopology topology = board.getTopology();
+        Player player = game.getCurrentPlayer();
+        int words = topology.getWordCount();
+        for (int word = 0; word < words; word++) {
+            for (long bits = board.occupancyWord(player, word) & board.empoweredWord(word); bits != 0; bits &= bits - 1) {
+                int cell = (word << 6) + Long.numberOfTrailingZeros(bits);
+                for (int target : topology.neighbours(cell)) {
+                    Piece occupant = board.getPiece(target);
+                    if (occupant != null && occupant.getOwner() != player && !board.isFrozen(target)) {
+                        moves[count++] = Move.capture(cell, target);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -3,60 +3,153 @@ package tictactoe;
 /**
  * Represents a single piece placed by a player. The {@code placementIndex}
  * field is used to enforce FIFO removal when the piece cap is exceeded.
+ *
+ * <p>A piece is a view over one slot of its owner's {@link PieceStore}, which
+ * keeps the state in primitive arrays. Pieces placed through {@link Game}
+ * come from that store, and a piece built with the public constructor gets a
+ * private store of its own.</p>
+ *
+ * <p>Once a piece has left the game for good (evicted or captured, and past
+ * undo), its slot goes back to the store for the next piece its owner places,
+ * and this object is detached from it: it keeps its owner, placement index,
+ * empowered flag and the age it had, and has no position. A reference held
+ * across moves therefore never turns into another piece. Only a placement
+ * taken back with {@link Game#unmake()} leaves its object to the next piece
+ * placed in the slot, as if the undone piece had never existed; that is what
+ * keeps search allocation-free.</p>
+ *
+ * <p>The age is not counted up round by round: the store keeps the round the
+ * piece was born in and reads its age off a {@link RoundClock}. Until a game
+ * attaches the store to its board's clock, pieces run on a clock that never
+ * advances and only the explicit age changes apply.</p>
  */
 public class Piece {
-    private final Player owner;
+    private final PieceStore store;
+    private int slot;
+    // State of a detached piece; see detach()
     private int placementIndex;
-    private boolean empowered;
     private int ageTurns;
-    private Position position;
+    private boolean empowered;
 
+    /**
+     * A piece outside any game, with a one-slot store of its own; code that
+     * builds many pieces should allocate them from a shared
+     * {@link PieceStore} instead.
+     */
     public Piece(Player owner, int placementIndex) {
-        this.owner = owner;
-        this.placementIndex = placementIndex;
+        this.store = new PieceStore(owner, 1);
+        this.slot = store.allocate(placementIndex);
+        store.bindView(slot, this);
+    }
+
+    Piece(PieceStore store, int slot) {
+        this.store = store;
+        this.slot = slot;
+    }
+
+    PieceStore store() {
+        return store;
+    }
+
+    /**
+     * Slot in the store, or {@link PieceStore#NONE} once detached.
+     */
+    int slot() {
+        return slot;
+    }
+
+    /**
+     * Cuts this piece loose from its slot, which the store is about to reuse,
+     * keeping a copy of the slot's state.
+     */
+    void detach() {
+        placementIndex = store.placementAt(slot);
+        ageTurns = store.ageAt(slot);
+        empowered = store.isEmpoweredAt(slot);
+        slot = PieceStore.NONE;
+    }
+
+    private boolean isDetached() {
+        return slot == PieceStore.NONE;
     }
 
     public Player getOwner() {
-        return owner;
+        return store.owner();
     }
 
     public int getPlacementIndex() {
-        return placementIndex;
+        return isDetached() ? placementIndex : store.placementAt(slot);
     }
 
     public void setPlacementIndex(int placementIndex) {
-        this.placementIndex = placementIndex;
+        if (isDetached()) {
+            this.placementIndex = placementIndex;
+        } else {
+            store.setPlacement(slot, placementIndex);
+        }
     }
 
     public boolean isEmpowered() {
-        return empowered;
+        return isDetached() ? empowered : store.isEmpoweredAt(slot);
     }
 
     public void setEmpowered(boolean empowered) {
-        this.empowered = empowered;
+        if (isDetached()) {
+            this.empowered = empowered;
+        } else {
+            store.setEmpowered(slot, empowered);
+        }
     }
 
     public int getAgeTurns() {
-        return ageTurns;
+        return isDetached() ? ageTurns : store.ageAt(slot);
     }
 
     public void incrementAge() {
-        ageTurns++;
+        setAgeTurns(getAgeTurns() + 1);
     }
 
     public void resetAge() {
-        ageTurns = 0;
+        setAgeTurns(0);
+    }
+
+    void setAgeTurns(int ageTurns) {
+        if (isDetached()) {
+            this.ageTurns = ageTurns;
+        } else {
+            store.setAge(slot, ageTurns);
+        }
     }
 
     public int turnsLifeRemaining(int turnLimit) {
-        return Math.max(0, turnLimit - ageTurns);
+        return Math.max(0, turnLimit - getAgeTurns());
     }
 
     public Position getPosition() {
-        return position;
+        return isDetached() ? null : store.positionAt(slot);
     }
 
+    /**
+     * Sets the position without a cell index; boards use
+     * {@link #setLocation(int, Position)} instead.
+     *
+     * @throws IllegalStateException if the piece has left the game
+     */
     public void setPosition(Position position) {
-        this.position = position;
+        setLocation(-1, position);
+    }
+
+    /**
+     * Cell index of the piece on the board holding it, or -1.
+     */
+    int cell() {
+        return isDetached() ? -1 : store.cellAt(slot);
+    }
+
+    void setLocation(int cell, Position position) {
+        if (isDetached()) {
+            throw new IllegalStateException("Piece has left the game");
+        }
+        store.setLocation(slot, cell, position);
     }
 }
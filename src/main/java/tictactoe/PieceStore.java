@@ -0,0 +1,526 @@
+package tictactoe;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Primitive storage for the pieces of one player, kept as parallel arrays
+ * indexed by slot: cell, position, birth round, placement index and flags.
+ * {@link Piece} objects are views over a slot. A slot released for good
+ * detaches its view, so a reference kept after its piece left the game never
+ * turns into the next piece placed there; a slot freed by undoing its
+ * placement keeps its view for the next piece, so searching with
+ * {@code make}/{@code unmake} allocates nothing; see {@link Piece}.
+ *
+ * <p>The FIFO queue of pieces on the board is a doubly linked list threaded
+ * through the slots, oldest first, so evicting the oldest piece, removing a
+ * captured or rewound piece from the middle and putting it back on undo all
+ * take constant time given the slot handle. As a {@link Deque} the store is a
+ * read-only view of that queue: the inspection methods work, and every method
+ * that would add or remove a piece throws
+ * {@link UnsupportedOperationException}, since only the game may change
+ * it.</p>
+ *
+ * <p>Once {@link #attachHash(Zobrist) attached} to a game's keys, the store
+ * also keeps the FIFO order term of the position's Zobrist hash: one key per
+ * link between a queued piece's cell and the cell of the piece before it.
+ * Linking, unlinking or moving a queued piece only rekeys the links it is
+ * part of, so evicting the oldest piece does not rehash the rest.</p>
+ *
+ * <p>Slots leave the queue and return to the free list separately:
+ * {@link Game} keeps the slots of pieces it evicted or captured while
+ * recording a move until the move can no longer be undone, so that undoing
+ * it finds them intact.</p>
+ */
+final class PieceStore extends AbstractCollection<Piece> implements Deque<Piece> {
+    static final int NONE = -1;
+
+    private static final byte EMPOWERED = 1;
+    private static final byte QUEUED = 2;
+
+    private final Player owner;
+    private RoundClock clock = new RoundClock();
+    private Zobrist zobrist;
+    private long orderHash;
+    private int[] cells;
+    private Position[] positions;
+    private int[] bornRounds;
+    private int[] placements;
+    private byte[] flags;
+    private int[] next;
+    private int[] prev;
+    private Piece[] views;
+    private int[] free;
+    private int freeCount;
+    private int slots;
+    private int head = NONE;
+    private int tail = NONE;
+    private int size;
+
+    PieceStore(Player owner) {
+        this(owner, 8);
+    }
+
+    PieceStore(Player owner, int capacity) {
+        this.owner = owner;
+        this.cells = new int[capacity];
+        this.positions = new Position[capacity];
+        this.bornRounds = new int[capacity];
+        this.placements = new int[capacity];
+        this.flags = new byte[capacity];
+        this.next = new int[capacity];
+        this.prev = new int[capacity];
+        this.views = new Piece[capacity];
+        this.free = new int[capacity];
+    }
+
+    Player owner() {
+        return owner;
+    }
+
+    /**
+     * Lets the pieces of this store age with {@code clock} from now on,
+     * keeping their current ages.
+     */
+    void attachClock(RoundClock clock) {
+        for (int slot = 0; slot < slots; slot++) {
+            bornRounds[slot] += clock.round - this.clock.round;
+        }
+        this.clock = clock;
+    }
+
+    /**
+     * Keeps {@link #orderHash()} up to date with {@code zobrist}'s keys from
+     * now on.
+     */
+    void attachHash(Zobrist zobrist) {
+        this.zobrist = zobrist;
+        this.orderHash = recomputeOrderHash();
+    }
+
+    /**
+     * Zobrist term of the FIFO order of the pieces on the board; zero until
+     * the store is attached with {@link #attachHash(Zobrist)}.
+     */
+    long orderHash() {
+        return orderHash;
+    }
+
+    /**
+     * Recomputes {@link #orderHash()} by walking the queue; used to verify
+     * the incrementally maintained value.
+     */
+    long recomputeOrderHash() {
+        long fresh = 0L;
+        if (zobrist != null) {
+            for (int slot = head; slot != NONE; slot = next[slot]) {
+                fresh ^= linkKey(prev[slot], slot);
+            }
+        }
+        return fresh;
+    }
+
+    /**
+     * Key for {@code slot} following {@code before} in the queue; zero when
+     * {@code slot} is {@link #NONE}.
+     */
+    private long linkKey(int before, int slot) {
+        return slot == NONE ? 0L : zobrist.order(before == NONE ? -1 : cells[before], cells[slot]);
+    }
+
+    /**
+     * Takes a free slot for a new piece of age 0 that is neither on a board
+     * nor queued, and returns its handle.
+     */
+    int allocate(int placementIndex) {
+        int slot;
+        if (freeCount > 0) {
+            slot = free[--freeCount];
+        } else {
+            if (slots == cells.length) {
+                grow();
+            }
+            slot = slots++;
+        }
+        cells[slot] = -1;
+        positions[slot] = null;
+        bornRounds[slot] = clock.round;
+        placements[slot] = placementIndex;
+        flags[slot] = 0;
+        return slot;
+    }
+
+    /**
+     * Returns the unqueued slot of a piece that left the game for good to the
+     * free list, detaching its view: the next piece allocated in the slot gets
+     * a new {@link Piece}.
+     */
+    void release(int slot) {
+        Piece piece = views[slot];
+        if (piece != null) {
+            piece.detach();
+            views[slot] = null;
+        }
+        free[freeCount++] = slot;
+    }
+
+    /**
+     * Returns the unqueued slot of a placement that is being undone to the
+     * free list; its view stands for the next piece allocated in the slot.
+     */
+    void unallocate(int slot) {
+        free[freeCount++] = slot;
+    }
+
+    /**
+     * The piece object for {@code slot}, created on first use.
+     */
+    Piece view(int slot) {
+        Piece piece = views[slot];
+        if (piece == null) {
+            piece = new Piece(this, slot);
+            views[slot] = piece;
+        }
+        return piece;
+    }
+
+    /**
+     * Registers {@code piece} as the view of {@code slot}; used by the public
+     * {@link Piece} constructor, which allocates its own slot.
+     */
+    void bindView(int slot, Piece piece) {
+        views[slot] = piece;
+    }
+
+    private void grow() {
+        int capacity = Math.max(4, cells.length * 2);
+        cells = Arrays.copyOf(cells, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+        bornRounds = Arrays.copyOf(bornRounds, capacity);
+        placements = Arrays.copyOf(placements, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        views = Arrays.copyOf(views, capacity);
+        free = Arrays.copyOf(free, capacity);
+    }
+
+    // ----- FIFO queue -----
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Slot of the oldest queued piece, or {@link #NONE}.
+     */
+    int first() {
+        return head;
+    }
+
+    /**
+     * Slot of the newest queued piece, or {@link #NONE}.
+     */
+    int last() {
+        return tail;
+    }
+
+    int next(int slot) {
+        return next[slot];
+    }
+
+    int prev(int slot) {
+        return prev[slot];
+    }
+
+    /**
+     * Whether {@code slot} is in the queue; {@link #NONE}, the slot of a
+     * detached piece, never is.
+     */
+    boolean isQueued(int slot) {
+        return slot != NONE && (flags[slot] & QUEUED) != 0;
+    }
+
+    /**
+     * The newest queued piece, or {@code null} if the queue is empty.
+     */
+    Piece newest() {
+        return tail == NONE ? null : view(tail);
+    }
+
+    void linkLast(int slot) {
+        linkAfter(tail, slot);
+    }
+
+    void linkFirst(int slot) {
+        linkAfter(NONE, slot);
+    }
+
+    /**
+     * Queues {@code slot} right after {@code before}, or first if
+     * {@code before} is {@link #NONE}.
+     */
+    void linkAfter(int before, int slot) {
+        int after = before == NONE ? head : next[before];
+        if (zobrist != null) {
+            orderHash ^= linkKey(before, after);
+        }
+        prev[slot] = before;
+        next[slot] = after;
+        if (before == NONE) {
+            head = slot;
+        } else {
+            next[before] = slot;
+        }
+        if (after == NONE) {
+            tail = slot;
+        } else {
+            prev[after] = slot;
+        }
+        flags[slot] |= QUEUED;
+        size++;
+        if (zobrist != null) {
+            orderHash ^= linkKey(before, slot) ^ linkKey(slot, after);
+        }
+    }
+
+    /**
+     * Takes {@code slot} out of the queue and returns the slot that preceded
+     * it ({@link #NONE} if it was the oldest), so it can be put back with
+     * {@link #linkAfter(int, int)}.
+     */
+    int unlink(int slot) {
+        int before = prev[slot];
+        int after = next[slot];
+        if (zobrist != null) {
+            orderHash ^= linkKey(before, slot) ^ linkKey(slot, after) ^ linkKey(before, after);
+        }
+        if (before == NONE) {
+            head = after;
+        } else {
+            next[before] = after;
+        }
+        if (after == NONE) {
+            tail = before;
+        } else {
+            prev[after] = before;
+        }
+        flags[slot] &= ~QUEUED;
+        size--;
+        return before;
+    }
+
+    // ----- per-slot state -----
+
+    int cellAt(int slot) {
+        return cells[slot];
+    }
+
+    Position positionAt(int slot) {
+        return positions[slot];
+    }
+
+    /**
+     * Records where the piece in {@code slot} stands: a cell index of the
+     * board holding it and the matching position, or -1 and {@code null}.
+     */
+    void setLocation(int slot, int cell, Position position) {
+        boolean rekey = zobrist != null && (flags[slot] & QUEUED) != 0 && cells[slot] != cell;
+        if (rekey) {
+            orderHash ^= linkKey(prev[slot], slot) ^ linkKey(slot, next[slot]);
+        }
+        cells[slot] = cell;
+        positions[slot] = position;
+        if (rekey) {
+            orderHash ^= linkKey(prev[slot], slot) ^ linkKey(slot, next[slot]);
+        }
+    }
+
+    int ageAt(int slot) {
+        return clock.round - bornRounds[slot];
+    }
+
+    void setAge(int slot, int ageTurns) {
+        bornRounds[slot] = clock.round - ageTurns;
+    }
+
+    int placementAt(int slot) {
+        return placements[slot];
+    }
+
+    void setPlacement(int slot, int placementIndex) {
+        placements[slot] = placementIndex;
+    }
+
+    boolean isEmpoweredAt(int slot) {
+        return (flags[slot] & EMPOWERED) != 0;
+    }
+
+    void setEmpowered(int slot, boolean empowered) {
+        if (empowered) {
+            flags[slot] |= EMPOWERED;
+        } else {
+            flags[slot] &= ~EMPOWERED;
+        }
+    }
+
+    // ----- read-only Deque view -----
+
+    @Override
+    public Iterator<Piece> iterator() {
+        return new QueueIterator(head, false);
+    }
+
+    @Override
+    public Iterator<Piece> descendingIterator() {
+        return new QueueIterator(tail, true);
+    }
+
+    @Override
+    public Piece peekFirst() {
+        return head == NONE ? null : view(head);
+    }
+
+    @Override
+    public Piece peekLast() {
+        return newest();
+    }
+
+    @Override
+    public Piece peek() {
+        return peekFirst();
+    }
+
+    @Override
+    public Piece getFirst() {
+        if (head == NONE) {
+            throw new NoSuchElementException();
+        }
+        return view(head);
+    }
+
+    @Override
+    public Piece getLast() {
+        if (tail == NONE) {
+            throw new NoSuchElementException();
+        }
+        return view(tail);
+    }
+
+    @Override
+    public Piece element() {
+        return getFirst();
+    }
+
+    @Override
+    public void addFirst(Piece piece) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addLast(Piece piece) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean offerFirst(Piece piece) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean offerLast(Piece piece) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean offer(Piece piece) {
+        throw readOnly();
+    }
+
+    @Override
+    public void push(Piece piece) {
+        throw readOnly();
+    }
+
+    @Override
+    public Piece removeFirst() {
+        throw readOnly();
+    }
+
+    @Override
+    public Piece removeLast() {
+        throw readOnly();
+    }
+
+    @Override
+    public Piece pollFirst() {
+        throw readOnly();
+    }
+
+    @Override
+    public Piece pollLast() {
+        throw readOnly();
+    }
+
+    @Override
+    public Piece remove() {
+        throw readOnly();
+    }
+
+    @Override
+    public Piece poll() {
+        throw readOnly();
+    }
+
+    @Override
+    public Piece pop() {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean removeFirstOccurrence(Object o) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean removeLastOccurrence(Object o) {
+        throw readOnly();
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("The pieces on the board are changed through Game");
+    }
+
+    /**
+     * Walks the queue from {@code start}, oldest first or, if
+     * {@code descending}, newest first.
+     */
+    private final class QueueIterator implements Iterator<Piece> {
+        private final boolean descending;
+        private int slot;
+
+        QueueIterator(int start, boolean descending) {
+            this.slot = start;
+            this.descending = descending;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return slot != NONE;
+        }
+
+        @Override
+        public Piece next() {
+            if (slot == NONE) {
+                throw new NoSuchElementException();
+            }
+            Piece piece = view(slot);
+            slot = descending ? prev[slot] : next[slot];
+            return piece;
+        }
+    }
+}
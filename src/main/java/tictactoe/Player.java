@@ -1,6 +1,5 @@
 package tictactoe;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
 import java.util.List;
@@ -12,7 +11,7 @@ import java.util.List;
 public class Player {
     private final String name;
     private int score;
-    private final Deque<Piece> piecesOnBoard = new ArrayDeque<>();
+    private final PieceStore piecesOnBoard = new PieceStore(this);
     private final List<Card> hand = new ArrayList<>();
 
     public Player(String name) {
@@ -31,10 +30,19 @@ public class Player {
         score += delta;
     }
 
+    /**
+     * Read-only view of the FIFO queue of pieces on the board, oldest first.
+     * Inspection works as on any deque; methods that add or remove pieces
+     * throw {@link UnsupportedOperationException}.
+     */
     public Deque<Piece> getPiecesOnBoard() {
         return piecesOnBoard;
     }
 
+    PieceStore pieceStore() {
+        return piecesOnBoard;
+    }
+
     public List<Card> getHand() {
         return hand;
     }
@@ -1,11 +1,29 @@
 package tictactoe;
 
-import java.util.Objects;
-
 /**
  * Immutable 3D coordinate used to address cells on the board.
+ *
+ * <p>Prefer {@link #of(int, int, int)} to the constructor: positions with
+ * every coordinate in {@code [0, BoardTopology.MAX_SIZE)} are interned, so a
+ * cell is always the same object whatever the board size and looking it up
+ * allocates nothing. On a board of edge {@code size} a cell can also be named
+ * by its packed index {@code x + size * (y + size * z)}; see
+ * {@link #cellIndex(int)} and {@link #ofCell(int, int)}.</p>
  */
 public class Position {
+    private static final int EDGE = BoardTopology.MAX_SIZE;
+    private static final Position[] INTERNED = new Position[EDGE * EDGE * EDGE];
+
+    static {
+        for (int z = 0; z < EDGE; z++) {
+            for (int y = 0; y < EDGE; y++) {
+                for (int x = 0; x < EDGE; x++) {
+                    INTERNED[x + EDGE * (y + EDGE * z)] = new Position(x, y, z);
+                }
+            }
+        }
+    }
+
     private final int x;
     private final int y;
     private final int z;
@@ -16,6 +34,25 @@ public class Position {
         this.z = z;
     }
 
+    /**
+     * The canonical position {@code (x, y, z)}; a new object only for
+     * coordinates outside every supported board.
+     */
+    public static Position of(int x, int y, int z) {
+        if (x >= 0 && x < EDGE && y >= 0 && y < EDGE && z >= 0 && z < EDGE) {
+            return INTERNED[x + EDGE * (y + EDGE * z)];
+        }
+        return new Position(x, y, z);
+    }
+
+    /**
+     * The canonical position of packed cell index {@code cell} on a board of
+     * edge {@code size}.
+     */
+    public static Position ofCell(int cell, int size) {
+        return of(cell % size, (cell / size) % size, cell / (size * size));
+    }
+
     public int getX() {
         return x;
     }
@@ -28,8 +65,16 @@ public class Position {
         return z;
     }
 
+    /**
+     * Packed index of this position on a board of edge {@code size}; only
+     * meaningful when the position is in bounds there.
+     */
+    public int cellIndex(int size) {
+        return x + size * (y + size * z);
+    }
+
     public Position translate(int dx, int dy, int dz) {
-        return new Position(x + dx, y + dy, z + dz);
+        return of(x + dx, y + dy, z + dz);
     }
 
     @Override
@@ -42,7 +87,8 @@ public class Position {
 
     @Override
     public int hashCode() {
-        return Objects.hash(x, y, z);
+        // Same value as Objects.hash(x, y, z), without boxing.
+        return 31 * (31 * (31 + x) + y) + z;
     }
 
     @Override
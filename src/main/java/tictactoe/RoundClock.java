@@ -0,0 +1,9 @@
+package tictactoe;
+
+/**
+ * Round counter shared by a board and the pieces of its game; see
+ * {@link Board#tickFreezes()}.
+ */
+final class RoundClock {
+    int round;
+}
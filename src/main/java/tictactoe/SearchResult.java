@@ -0,0 +1,50 @@
+package tictactoe;
+
+/**
+ * Outcome of an engine search: the move to play, its score from the point of
+ * view of the player to move, and the principal variation that led to it.
+ * Score and node count are on each engine's own scale.
+ */
+public final class SearchResult {
+    private final int bestMove;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+    private final int[] principalVariation;
+
+    public SearchResult(int bestMove, int score, int depth, long nodes, int[] principalVariation) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.principalVariation = principalVariation.clone();
+    }
+
+    /**
+     * The packed {@link Move} to play, or {@link Move#NONE} if the game is
+     * over or, for an engine that values it as a chance event, the next
+     * action is a card draw.
+     */
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Deepest fully searched iteration, in actions.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public int[] getPrincipalVariation() {
+        return principalVariation.clone();
+    }
+}
@@ -0,0 +1,488 @@
+package tictactoe;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Headless server hosting any number of two-player games for clients on this
+ * machine, over a line-based TCP protocol.
+ *
+ * <p>Every connection is served by a thread of its own that blocks reading
+ * the next command. On Java 21 and later these are virtual threads, so ten
+ * thousand idle connections cost ten thousand small heap objects rather than
+ * ten thousand OS threads; older runtimes fall back to platform threads.
+ * Locks are {@link ReentrantLock}s rather than monitors, so a virtual thread
+ * waiting for one never pins its carrier thread.</p>
+ *
+ * <p>The turn flow belongs to {@link GameSession}. Commands, one per line,
+ * each answered with one line starting {@code OK} or {@code ERR}:</p>
+ * <pre>
+ * NEW name [size [pieceCap [turnLimit]]]   OK id 0      open a game, take seat 0
+ * JOIN id name                             OK id 1      take seat 1, the game starts
+ * PLACE x y z                              OK [OFFER k k]
+ * CARD kind x y z | CARD kind layer        OK           play an offered card
+ * CAPTURE x y z x y z                      OK           empowered piece, then target
+ * END                                      OK           end the turn
+ * STATE                                    OK round seat phase offerMask score score cells
+ * QUIT
+ * </pre>
+ *
+ * <p>Card kinds are the {@code Move.CARD_*} numbers. In the {@code STATE}
+ * cells, in cell index order, {@code .} is empty, {@code #} frozen,
+ * {@code a}/{@code b} a piece of seat 0/1 and {@code A}/{@code B} an empowered
+ * one. The other seat is told about each move with an unsolicited
+ * {@code MOVE seat move} line, and both seats get {@code JOINED name},
+ * {@code OVER score score} and {@code LEFT} when that happens.</p>
+ */
+public final class SessionServer implements Closeable {
+    public static final int DEFAULT_PORT = 7333;
+
+    private static final int PIECE_CAP = 5;
+    private static final int TURN_LIMIT = 30;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = newConnectionExecutor();
+    private final ConcurrentMap<Integer, Table> tables = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    /**
+     * Binds a server to {@code port} on the loopback interface; port 0 picks
+     * a free one.
+     */
+    public SessionServer(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Number of games currently open.
+     */
+    public int getTableCount() {
+        return tables.size();
+    }
+
+    /**
+     * Accepts connections until the server is closed.
+     */
+    public void serve() {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                // E.g. out of file descriptors: the clients already connected
+                // keep playing, and the next accept may succeed again.
+                System.err.println("Accept failed: " + e.getMessage());
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+            executor.execute(() -> serve(socket));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        try (SessionServer server = new SessionServer(port)) {
+            System.out.println("Serving games on localhost:" + server.getPort());
+            server.serve();
+        }
+    }
+
+    /**
+     * One thread per connection: virtual if the runtime has them (Java 21+),
+     * looked up reflectively so the sources still build on older JDKs.
+     */
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "session");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private void serve(Socket socket) {
+        Connection connection = null;
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            connection = new Connection(socket);
+            String line;
+            while ((line = connection.readLine()) != null) {
+                String[] words = WHITESPACE.split(line.trim());
+                String command = words[0].toUpperCase(Locale.ROOT);
+                if (command.equals("QUIT")) {
+                    break;
+                }
+                try {
+                    connection.send(handle(connection, command, words));
+                } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                    connection.send("ERR malformed " + command);
+                }
+            }
+        } catch (IOException e) {
+            // The client went away; its seat is given up below.
+        } finally {
+            if (connection != null && connection.table != null) {
+                leave(connection.table);
+            }
+        }
+    }
+
+    private String handle(Connection connection, String command, String[] words) {
+        switch (command) {
+            case "NEW":
+                return open(connection, words);
+            case "JOIN":
+                return join(connection, words);
+            case "":
+                return "ERR empty command";
+            default:
+                Table table = connection.table;
+                if (table == null) {
+                    return "ERR not seated";
+                }
+                return table.handle(connection, command, words);
+        }
+    }
+
+    private String open(Connection connection, String[] words) {
+        if (connection.table != null) {
+            return "ERR already seated";
+        }
+        int size = words.length > 2 ? Integer.parseInt(words[2]) : Board.SIZE;
+        int pieceCap = words.length > 3 ? Integer.parseInt(words[3]) : PIECE_CAP;
+        int turnLimit = words.length > 4 ? Integer.parseInt(words[4]) : TURN_LIMIT;
+        if (size < 2 || size > BoardTopology.MAX_SIZE || pieceCap < 1 || turnLimit < 1) {
+            return "ERR bad game settings";
+        }
+        Table table = new Table(nextId.getAndIncrement(), BoardTopology.of(size), pieceCap, turnLimit);
+        table.seats[0] = connection;
+        table.names[0] = words[1];
+        connection.table = table;
+        connection.seat = 0;
+        tables.put(table.id, table);
+        return "OK " + table.id + " 0";
+    }
+
+    private String join(Connection connection, String[] words) {
+        if (connection.table != null) {
+            return "ERR already seated";
+        }
+        Table table = tables.get(Integer.parseInt(words[1]));
+        if (table == null) {
+            return "ERR no such game";
+        }
+        Connection host;
+        table.lock.lock();
+        try {
+            if (table.seats[1] != null || table.seats[0] == null) {
+                return "ERR game is full";
+            }
+            table.seats[1] = connection;
+            table.names[1] = words[2];
+            table.start();
+            connection.table = table;
+            connection.seat = 1;
+            host = table.seats[0];
+        } finally {
+            table.lock.unlock();
+        }
+        host.tell("JOINED " + words[2]);
+        return "OK " + table.id + " 1";
+    }
+
+    /**
+     * Closes the game of a departing client and tells the other seat.
+     */
+    private void leave(Table table) {
+        tables.remove(table.id);
+        List<Connection> others = new ArrayList<>(2);
+        table.lock.lock();
+        try {
+            for (int seat = 0; seat < table.seats.length; seat++) {
+                if (table.seats[seat] != null) {
+                    others.add(table.seats[seat]);
+                    table.seats[seat].table = null;
+                    table.seats[seat] = null;
+                }
+            }
+        } finally {
+            table.lock.unlock();
+        }
+        for (Connection other : others) {
+            other.tell("LEFT");
+        }
+    }
+
+    /**
+     * One hosted game and the connections seated at it.
+     */
+    private static final class Table {
+        final int id;
+        final BoardTopology topology;
+        final int pieceCap;
+        final int turnLimit;
+        final ReentrantLock lock = new ReentrantLock();
+        final Connection[] seats = new Connection[2];
+        final String[] names = new String[2];
+        GameSession session;
+
+        Table(int id, BoardTopology topology, int pieceCap, int turnLimit) {
+            this.id = id;
+            this.topology = topology;
+            this.pieceCap = pieceCap;
+            this.turnLimit = turnLimit;
+        }
+
+        void start() {
+            List<Player> players = List.of(new Player(names[0]), new Player(names[1]));
+            session = new GameSession(new Game(players, topology, pieceCap, turnLimit, new Random()));
+        }
+
+        /**
+         * Plays a game command for the client in {@code connection.seat} and
+         * returns the reply; notices for the other seat are sent once the
+         * table is unlocked.
+         */
+        String handle(Connection connection, String command, String[] words) {
+            String reply;
+            String notice = null;
+            Connection other;
+            lock.lock();
+            try {
+                if (session == null) {
+                    return "ERR waiting for an opponent";
+                }
+                Game game = session.getGame();
+                if (command.equals("STATE")) {
+                    return "OK " + state(game);
+                }
+                int move = parse(command, words);
+                if (move == Move.NONE) {
+                    return "ERR unknown command " + command;
+                }
+                if (game.getCurrentPlayerIndex() != connection.seat) {
+                    return "ERR not your turn";
+                }
+                if (!session.play(move)) {
+                    return "ERR illegal " + Move.toString(move, topology);
+                }
+                reply = "OK";
+                int offer = session.getOfferMask();
+                if (offer != 0) {
+                    reply += " OFFER" + kinds(offer);
+                }
+                notice = "MOVE " + connection.seat + " " + Move.toString(move, topology);
+                if (game.isGameOver()) {
+                    String over = "OVER " + game.getPlayers().get(0).getScore() + " "
+                            + game.getPlayers().get(1).getScore();
+                    reply += "\n" + over;
+                    notice += "\n" + over;
+                }
+                other = seats[1 - connection.seat];
+            } finally {
+                lock.unlock();
+            }
+            if (other != null) {
+                other.tell(notice);
+            }
+            return reply;
+        }
+
+        private int parse(String command, String[] words) {
+            switch (command) {
+                case "PLACE":
+                    return Move.place(cell(words, 1));
+                case "CARD":
+                    int kind = Integer.parseInt(words[1]);
+                    if (kind < 0 || kind >= Move.CARD_KINDS) {
+                        throw new IndexOutOfBoundsException("card kind " + kind);
+                    }
+                    boolean layer = kind == Move.CARD_SHIFT_UP || kind == Move.CARD_SHIFT_DOWN;
+                    return Move.card(kind, layer ? layer(words[2]) : cell(words, 2));
+                case "CAPTURE":
+                    return Move.capture(cell(words, 1), cell(words, 4));
+                case "END":
+                    return Move.endTurn();
+                default:
+                    return Move.NONE;
+            }
+        }
+
+        private int cell(String[] words, int from) {
+            int x = Integer.parseInt(words[from]);
+            int y = Integer.parseInt(words[from + 1]);
+            int z = Integer.parseInt(words[from + 2]);
+            if (!topology.inBounds(x, y, z)) {
+                throw new IndexOutOfBoundsException("cell " + x + " " + y + " " + z);
+            }
+            return topology.cellIndex(x, y, z);
+        }
+
+        private int layer(String word) {
+            int layer = Integer.parseInt(word);
+            if (layer < 0 || layer >= topology.getSize()) {
+                throw new IndexOutOfBoundsException("layer " + layer);
+            }
+            return layer;
+        }
+
+        private String state(Game game) {
+            Board board = game.getBoard();
+            List<Player> players = game.getPlayers();
+            StringBuilder line = new StringBuilder(64 + topology.getCellCount());
+            line.append(game.getCurrentRound()).append(' ')
+                    .append(game.getCurrentPlayerIndex()).append(' ')
+                    .append(game.getPhase()).append(' ')
+                    .append(session.getOfferMask()).append(' ')
+                    .append(players.get(0).getScore()).append(' ')
+                    .append(players.get(1).getScore()).append(' ');
+            for (int cell = 0; cell < topology.getCellCount(); cell++) {
+                Piece piece = board.getPiece(cell);
+                if (piece == null) {
+                    line.append(board.isFrozen(cell) ? '#' : '.');
+                } else {
+                    char mark = piece.getOwner() == players.get(0) ? 'a' : 'b';
+                    line.append(piece.isEmpowered() ? Character.toUpperCase(mark) : mark);
+                }
+            }
+            return line.toString();
+        }
+
+        private static String kinds(int mask) {
+            StringBuilder kinds = new StringBuilder();
+            for (int kind = 0; kind < Move.CARD_KINDS; kind++) {
+                if ((mask & 1 << kind) != 0) {
+                    kinds.append(' ').append(kind);
+                }
+            }
+            return kinds.toString();
+        }
+    }
+
+    /**
+     * A client connection; {@link #send(String)} may be called from the
+     * threads of both seats.
+     *
+     * <p>Lines are cut from the socket's bytes in a small buffer and replies
+     * are written as one array each, without reader and writer objects: their
+     * default buffers would cost some 48 KB per connection, which on ten
+     * thousand idle connections fills the heap and drags out every garbage
+     * collection.</p>
+     */
+    private static final class Connection {
+        private static final int MAX_LINE = 4096;
+
+        final InputStream in;
+        final OutputStream out;
+        final ReentrantLock writeLock = new ReentrantLock();
+        private byte[] buffer = new byte[128];
+        private int start;
+        private int end;
+        volatile Table table;
+        volatile int seat;
+
+        Connection(Socket socket) throws IOException {
+            this.in = socket.getInputStream();
+            this.out = socket.getOutputStream();
+        }
+
+        /**
+         * The next line without its terminator, or {@code null} once the
+         * client has closed the connection.
+         */
+        String readLine() throws IOException {
+            int scanned = start;
+            while (true) {
+                for (; scanned < end; scanned++) {
+                    if (buffer[scanned] == '\n') {
+                        int length = scanned - start;
+                        if (length > 0 && buffer[scanned - 1] == '\r') {
+                            length--;
+                        }
+                        String line = new String(buffer, start, length, StandardCharsets.UTF_8);
+                        start = scanned + 1;
+                        return line;
+                    }
+                }
+                if (start > 0) {
+                    System.arraycopy(buffer, start, buffer, 0, end - start);
+                    scanned -= start;
+                    end -= start;
+                    start = 0;
+                } else if (end == buffer.length) {
+                    if (buffer.length >= MAX_LINE) {
+                        throw new IOException("Line too long");
+                    }
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                int read = in.read(buffer, end, buffer.length - end);
+                if (read < 0) {
+                    return null;
+                }
+                end += read;
+            }
+        }
+
+        void send(String line) throws IOException {
+            byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+            writeLock.lock();
+            try {
+                out.write(bytes);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        /**
+         * Sends an unsolicited line; if this client has gone away, its own
+         * thread notices and gives up the seat.
+         */
+        void tell(String line) {
+            try {
+                send(line);
+            } catch (IOException e) {
+                // Reported by the reading thread of this connection.
+            }
+        }
+    }
+}
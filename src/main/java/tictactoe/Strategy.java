@@ -0,0 +1,207 @@
+package tictactoe;
+
+import java.util.Random;
+
+/**
+ * A computer player: picks the next action for the current player of a game,
+ * as a packed {@link Move}. Used by headless runners such as
+ * {@link Tournament}.
+ *
+ * <p>The game is in the middle of a turn when asked; in a card round the
+ * caller has already drawn the cards with {@link Game#offerCards()}. The
+ * strategy may explore moves with {@link Game#make(int)} but must leave the
+ * game as it found it. Strategies may keep state between moves and are not
+ * shared between threads.</p>
+ */
+public interface Strategy {
+    String getName();
+
+    /**
+     * Returns a legal move for {@code game.getCurrentPlayer()}, using
+     * {@code random} for any random choice so games can be replayed.
+     */
+    int chooseMove(Game game, Random random);
+
+    /**
+     * Plays uniformly at random among the searched moves.
+     */
+    static Strategy random() {
+        return new RandomStrategy();
+    }
+
+    /**
+     * Plays the move that gains the most points right away, at random
+     * among equals.
+     */
+    static Strategy greedy() {
+        return new GreedyStrategy();
+    }
+
+    /**
+     * Alpha-beta search with a time budget per move; how deep it gets, and so
+     * which move it picks, depends on the machine.
+     */
+    static Strategy alphaBeta(long budgetMillis) {
+        return new AlphaBetaStrategy(budgetMillis, 0, null);
+    }
+
+    /**
+     * Alpha-beta search storing its results in {@code table}, which may be
+     * shared with other strategies, including ones playing on other threads.
+     */
+    static Strategy alphaBeta(long budgetMillis, TranspositionTable table) {
+        return new AlphaBetaStrategy(budgetMillis, 0, table);
+    }
+
+    /**
+     * Alpha-beta search to a fixed depth with no time limit; deterministic.
+     */
+    static Strategy alphaBetaDepth(int depth) {
+        return new AlphaBetaStrategy(0, depth, null);
+    }
+
+    /**
+     * Monte Carlo tree search with a time budget per move; the strategy owns
+     * worker threads and must be closed after use.
+     */
+    static Strategy mcts(int threads, long budgetMillis) {
+        return new MctsStrategy(threads, budgetMillis, 0);
+    }
+
+    /**
+     * Single-threaded Monte Carlo tree search of a fixed number of playouts
+     * per move with no time limit; deterministic for a given random source,
+     * and searching on the caller's thread.
+     */
+    static Strategy mctsPlayouts(long playouts) {
+        return new MctsStrategy(1, 0, playouts);
+    }
+}
+
+class RandomStrategy implements Strategy {
+    private int[] moves = new int[0];
+
+    @Override
+    public String getName() {
+        return "random";
+    }
+
+    @Override
+    public int chooseMove(Game game, Random random) {
+        int capacity = MoveGenerator.capacity(game.getBoard().getTopology());
+        if (moves.length < capacity) {
+            moves = new int[capacity];
+        }
+        int count = MoveGenerator.generateForSearch(game, moves);
+        return moves[random.nextInt(count)];
+    }
+}
+
+class GreedyStrategy implements Strategy {
+    private int[] moves = new int[0];
+
+    @Override
+    public String getName() {
+        return "greedy";
+    }
+
+    @Override
+    public int chooseMove(Game game, Random random) {
+        int capacity = MoveGenerator.capacity(game.getBoard().getTopology());
+        if (moves.length < capacity) {
+            moves = new int[capacity];
+        }
+        int count = MoveGenerator.generateForSearch(game, moves);
+        Player me = game.getCurrentPlayer();
+        int best = Move.NONE;
+        int bestGain = Integer.MIN_VALUE;
+        int ties = 0;
+        for (int i = 0; i < count; i++) {
+            game.make(moves[i]);
+            int gain = margin(game, me);
+            game.unmake();
+            if (gain > bestGain) {
+                bestGain = gain;
+                best = moves[i];
+                ties = 1;
+            } else if (gain == bestGain && random.nextInt(++ties) == 0) {
+                best = moves[i];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Points of {@code me} minus the best score among the other players.
+     */
+    private static int margin(Game game, Player me) {
+        int others = Integer.MIN_VALUE;
+        for (Player player : game.getPlayers()) {
+            if (player != me) {
+                others = Math.max(others, player.getScore());
+            }
+        }
+        return me.getScore() - others;
+    }
+}
+
+class AlphaBetaStrategy implements Strategy {
+    private final AlphaBetaEngine engine;
+
+    AlphaBetaStrategy(long budgetMillis, int maxDepth, TranspositionTable table) {
+        engine = new AlphaBetaEngine(table);
+        engine.setBudgetMillis(budgetMillis);
+        if (maxDepth > 0) {
+            engine.setMaxDepth(maxDepth);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return engine.getBudgetMillis() == 0
+                ? "alphabeta-d" + engine.getMaxDepth()
+                : "alphabeta-" + engine.getBudgetMillis() + "ms";
+    }
+
+    @Override
+    public int chooseMove(Game game, Random random) {
+        return engine.search(game).getBestMove();
+    }
+}
+
+class MctsStrategy implements Strategy, AutoCloseable {
+    private final int threads;
+    private final long budgetMillis;
+    private final long playouts;
+    private MctsEngine engine;
+
+    MctsStrategy(int threads, long budgetMillis, long playouts) {
+        this.threads = threads;
+        this.budgetMillis = budgetMillis;
+        this.playouts = playouts;
+    }
+
+    @Override
+    public String getName() {
+        return budgetMillis == 0
+                ? "mcts-" + playouts + "p"
+                : "mcts-" + threads + "x" + budgetMillis + "ms";
+    }
+
+    @Override
+    public int chooseMove(Game game, Random random) {
+        if (engine == null) {
+            engine = new MctsEngine(threads, random.nextLong());
+            engine.setBudgetMillis(budgetMillis);
+            engine.setMaxPlayouts(playouts);
+        }
+        return engine.search(game).getBestMove();
+    }
+
+    @Override
+    public void close() {
+        if (engine != null) {
+            engine.close();
+        }
+    }
+}
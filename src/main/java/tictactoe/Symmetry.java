@@ -0,0 +1,291 @@
+package tictactoe;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The symmetries of a board that the rules cannot tell apart, with
+ * precomputed cell permutations, and canonicalization of board states under
+ * them.
+ *
+ * <p>The cube has 48 symmetries, but layer shifts move whole z layers, so only
+ * those that keep the z layers as layers are rule-safe: the eight symmetries
+ * of the square acting on x and y, each with or without the flip
+ * {@code z -> size - 1 - z}. The flip turns shifting layer {@code l} up into
+ * shifting layer {@code size - 1 - l} down, so under transforms that flip
+ * ({@link #flipsLayers(int)}) the two shift cards trade places, in moves and
+ * in the offer mask alike; everything else in the rules is the same in every
+ * direction. Transform {@code t} maps cell {@code c} to
+ * {@link #apply(int, int) apply(t, c)}; transform 0 is the identity and
+ * transforms {@code 8..15} are transforms {@code 0..7} followed by the
+ * flip.</p>
+ *
+ * <p>The canonical form of a board is the image with the smallest sequence of
+ * cell states (owner slot, empowered flag and frozen timer, from cell 0
+ * upwards) over the sixteen transforms. {@link #canonicalTransform(Board)}
+ * returns the transform that produces it, so moves found in the canonical
+ * position can be mapped back with {@link #unmapMove(int, int)}. Instances
+ * are shared per topology via {@link #of(BoardTopology)}.</p>
+ */
+public final class Symmetry {
+    /** Number of rule-safe symmetries. */
+    public static final int COUNT = 16;
+    public static final int IDENTITY = 0;
+
+    /** Transforms from this one up flip the z layers. */
+    private static final int FLIPPED = 8;
+    private static final int SHIFT_KINDS = 1 << Move.CARD_SHIFT_UP | 1 << Move.CARD_SHIFT_DOWN;
+
+    private static final ConcurrentMap<BoardTopology, Symmetry> CACHE = new ConcurrentHashMap<>();
+
+    private final BoardTopology topology;
+    private final Zobrist zobrist;
+    private final int[][] forward = new int[COUNT][];
+    private final int[] inverse = new int[COUNT];
+
+    public static Symmetry of(BoardTopology topology) {
+        return CACHE.computeIfAbsent(topology, Symmetry::new);
+    }
+
+    private Symmetry(BoardTopology topology) {
+        this.topology = topology;
+        this.zobrist = Zobrist.of(topology);
+        int size = topology.getSize();
+        int last = size - 1;
+        int cells = topology.getCellCount();
+        for (int t = 0; t < COUNT; t++) {
+            forward[t] = new int[cells];
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            int x = topology.x(cell);
+            int y = topology.y(cell);
+            for (int flip = 0; flip < COUNT; flip += FLIPPED) {
+                int z = flip == 0 ? topology.z(cell) : last - topology.z(cell);
+                forward[flip][cell] = topology.cellIndex(x, y, z);
+                forward[flip + 1][cell] = topology.cellIndex(last - y, x, z);
+                forward[flip + 2][cell] = topology.cellIndex(last - x, last - y, z);
+                forward[flip + 3][cell] = topology.cellIndex(y, last - x, z);
+                forward[flip + 4][cell] = topology.cellIndex(last - x, y, z);
+                forward[flip + 5][cell] = topology.cellIndex(x, last - y, z);
+                forward[flip + 6][cell] = topology.cellIndex(y, x, z);
+                forward[flip + 7][cell] = topology.cellIndex(last - y, last - x, z);
+            }
+        }
+        for (int t = 0; t < COUNT; t++) {
+            for (int u = 0; u < COUNT; u++) {
+                if (composesToIdentity(t, u)) {
+                    inverse[t] = u;
+                    break;
+                }
+            }
+        }
+    }
+
+    private boolean composesToIdentity(int t, int u) {
+        for (int cell = 0; cell < forward[t].length; cell++) {
+            if (forward[u][forward[t][cell]] != cell) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public BoardTopology getTopology() {
+        return topology;
+    }
+
+    /**
+     * Image of {@code cell} under {@code transform}.
+     */
+    public int apply(int transform, int cell) {
+        return forward[transform][cell];
+    }
+
+    /**
+     * The transform that undoes {@code transform}.
+     */
+    public int inverse(int transform) {
+        return inverse[transform];
+    }
+
+    /**
+     * Whether {@code transform} turns the layers upside down, trading the
+     * shift-up and shift-down cards.
+     */
+    public static boolean flipsLayers(int transform) {
+        return transform >= FLIPPED;
+    }
+
+    /**
+     * Maps a card offer mask ({@link Game#getOfferMask()}, or the argument of
+     * a card draw) to the matching mask in the image under
+     * {@code transform}.
+     */
+    public static int mapOfferMask(int transform, int kindMask) {
+        if (!flipsLayers(transform)) {
+            return kindMask;
+        }
+        int up = kindMask >>> Move.CARD_SHIFT_UP & 1;
+        int down = kindMask >>> Move.CARD_SHIFT_DOWN & 1;
+        return kindMask & ~SHIFT_KINDS | up << Move.CARD_SHIFT_DOWN | down << Move.CARD_SHIFT_UP;
+    }
+
+    /**
+     * Maps a move of a position to the matching move of its image under
+     * {@code transform}: placement, card and capture cells are moved, layer
+     * shifts are moved to the image layer (and turned around by transforms
+     * that flip the layers), card draws are remapped like the offer mask and
+     * the end of the turn stays as it is.
+     */
+    public int mapMove(int transform, int move) {
+        int[] map = forward[transform];
+        switch (Move.type(move)) {
+            case Move.TYPE_PLACE:
+                return Move.place(map[Move.cell(move)]);
+            case Move.TYPE_CARD:
+                int kind = Move.cardKind(move);
+                if (kind == Move.CARD_SHIFT_UP || kind == Move.CARD_SHIFT_DOWN) {
+                    if (!flipsLayers(transform)) {
+                        return move;
+                    }
+                    int flipped = kind == Move.CARD_SHIFT_UP ? Move.CARD_SHIFT_DOWN : Move.CARD_SHIFT_UP;
+                    return Move.card(flipped, topology.getSize() - 1 - Move.cell(move));
+                }
+                return Move.card(kind, map[Move.cell(move)]);
+            case Move.TYPE_CAPTURE:
+                return Move.capture(map[Move.cell(move)], map[Move.target(move)]);
+            case Move.TYPE_OFFER:
+                return Move.offer(mapOfferMask(transform, Move.cell(move)));
+            default:
+                return move;
+        }
+    }
+
+    /**
+     * Maps a move of the image under {@code transform} back to the original
+     * position.
+     */
+    public int unmapMove(int transform, int move) {
+        return mapMove(inverse[transform], move);
+    }
+
+    /**
+     * The transform taking {@code board} to its canonical form; the lowest
+     * such transform if several give the same image. Allocates a buffer per
+     * call; search code should pass its own to
+     * {@link #canonicalTransform(Board, int[])}.
+     */
+    public int canonicalTransform(Board board) {
+        return canonicalTransform(board, new int[topology.getCellCount()]);
+    }
+
+    /**
+     * {@link #canonicalTransform(Board)} using {@code codes}, of at least the
+     * topology's cell count, as scratch space; allocates nothing.
+     */
+    public int canonicalTransform(Board board, int[] codes) {
+        int cells = topology.getCellCount();
+        for (int cell = 0; cell < cells; cell++) {
+            codes[cell] = cellCode(board, cell);
+        }
+        int best = IDENTITY;
+        for (int t = 1; t < COUNT; t++) {
+            if (compareImages(codes, t, best) < 0) {
+                best = t;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Zobrist hash of the cell contents of the canonical form of
+     * {@code board}: equal for all boards that are images of each other, and
+     * equal to the board's own cell hash when it is canonical.
+     */
+    public long canonicalHash(Board board) {
+        return hash(board, canonicalTransform(board));
+    }
+
+    /**
+     * {@link #canonicalHash(Board)} using {@code codes} as scratch space, as
+     * in {@link #canonicalTransform(Board, int[])}.
+     */
+    public long canonicalHash(Board board, int[] codes) {
+        return hash(board, canonicalTransform(board, codes));
+    }
+
+    /**
+     * Zobrist hash of the cell contents of the image of {@code board} under
+     * {@code transform}.
+     */
+    public long hash(Board board, int transform) {
+        int[] map = forward[transform];
+        long hash = 0L;
+        for (int cell = 0; cell < map.length; cell++) {
+            int slot = board.slotAt(cell);
+            int image = map[cell];
+            if (slot >= 0) {
+                hash ^= zobrist.piece(slot, image);
+                if (board.getPiece(cell).isEmpowered()) {
+                    hash ^= zobrist.empowered(image);
+                }
+            }
+            hash ^= zobrist.frozen(image, board.frozenTurnsRemaining(cell));
+        }
+        return hash;
+    }
+
+    /**
+     * Builds the image of {@code board} under {@code transform} on a new
+     * board: the same owners, with copies of the pieces (placement index,
+     * age, empowered flag) and the frozen timers moved to the image cells.
+     */
+    public Board transform(Board board, int transform) {
+        int[] map = forward[transform];
+        Board image = new Board(topology);
+        List<Player> owners = board.owners();
+        PieceStore[] stores = new PieceStore[owners.size()];
+        for (int slot = 0; slot < stores.length; slot++) {
+            image.registerOwner(owners.get(slot));
+            stores[slot] = new PieceStore(owners.get(slot));
+        }
+        for (int cell = 0; cell < map.length; cell++) {
+            Piece piece = board.getPiece(cell);
+            if (piece != null) {
+                PieceStore store = stores[board.slotAt(cell)];
+                Piece copy = store.view(store.allocate(piece.getPlacementIndex()));
+                copy.setEmpowered(piece.isEmpowered());
+                copy.setAgeTurns(piece.getAgeTurns());
+                image.setPiece(map[cell], copy);
+            }
+            image.freezeCell(map[cell], board.frozenTurnsRemaining(cell));
+        }
+        return image;
+    }
+
+    /**
+     * Compares the images of the cell codes under transforms {@code t} and
+     * {@code u} cell by cell of the image.
+     */
+    private int compareImages(int[] codes, int t, int u) {
+        int[] backT = forward[inverse[t]];
+        int[] backU = forward[inverse[u]];
+        for (int cell = 0; cell < backT.length; cell++) {
+            int difference = codes[backT[cell]] - codes[backU[cell]];
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return 0;
+    }
+
+    private static int cellCode(Board board, int cell) {
+        Piece piece = board.getPiece(cell);
+        int code = board.frozenTurnsRemaining(cell) << 8;
+        if (piece != null) {
+            code |= (piece.isEmpowered() ? 0x80 : 0) | board.slotAt(cell) + 1;
+        }
+        return code;
+    }
+}
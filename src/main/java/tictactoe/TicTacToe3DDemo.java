@@ -8,7 +8,8 @@ import java.util.Scanner;
 /**
  * Console-based interface for the 3×3×3 strategic Tic-Tac-Toe ruleset. It
  * renders the board by layers, lets users enter coordinates, pick cards when
- * offered, and shows the current game state each turn.
+ * offered, and shows the current game state each turn. Every action is played
+ * through a {@link GameSession}, which owns the turn flow.
  */
 public class TicTacToe3DDemo {
     private static final int PIECE_CAP = 5;
@@ -22,18 +23,15 @@ public class TicTacToe3DDemo {
         Player p2 = new Player(scanner.nextLine().trim());
 
         Game game = new Game(List.of(p1, p2), PIECE_CAP, TURN_LIMIT, new Random());
+        GameSession session = new GameSession(game);
 
         while (!game.isGameOver()) {
-            System.out.println("\n=== Round " + game.getCurrentRound() + " / " + game.getTurnLimit() + " ===");
-            for (Player current : game.getPlayers()) {
-                if (game.isGameOver()) {
-                    break;
-                }
-                System.out.println("-- " + current.getName() + "'s placement --");
-                printStatus(game);
-                takeTurn(scanner, game, current);
+            if (game.getCurrentPlayerIndex() == 0) {
+                System.out.println("\n=== Round " + game.getCurrentRound() + " / " + game.getTurnLimit() + " ===");
             }
-            game.advanceRound();
+            System.out.println("-- " + game.getCurrentPlayer().getName() + "'s placement --");
+            printStatus(game);
+            takeTurn(scanner, session);
         }
 
         System.out.println("\nGame over! Final scores:");
@@ -42,16 +40,20 @@ public class TicTacToe3DDemo {
         }
     }
 
-    private static void takeTurn(Scanner scanner, Game game, Player current) {
-        boolean placed = false;
-        boolean finished = false;
+    /**
+     * Reads actions until the current player has ended the turn.
+     */
+    private static void takeTurn(Scanner scanner, GameSession session) {
+        Game game = session.getGame();
         boolean cardRound = game.shouldOfferCard();
+        boolean finished = false;
         while (!finished) {
+            boolean placed = game.getPhase() != Game.PHASE_PLACE;
             String prompt;
             if (cardRound) {
-                prompt = placed ? "Action (capture/status/end): " : "Action (place/status): ";
+                prompt = placed ? "Action (capture/moves/status/end): " : "Action (place/moves/status): ";
             } else {
-                prompt = placed ? "Action (status/end): " : "Action (place/status): ";
+                prompt = placed ? "Action (moves/status/end): " : "Action (place/moves/status): ";
             }
             System.out.print(prompt);
             String action = scanner.nextLine().trim().toLowerCase(Locale.ROOT);
@@ -61,7 +63,7 @@ public class TicTacToe3DDemo {
                         System.out.println("You already placed a piece this round.");
                         break;
                     }
-                    placed = handlePlacement(scanner, game, current);
+                    handlePlacement(scanner, session);
                     break;
                 case "capture":
                     if (!cardRound) {
@@ -72,17 +74,20 @@ public class TicTacToe3DDemo {
                         System.out.println("Place a piece first.");
                         break;
                     }
-                    handleCapture(scanner, game, current);
+                    handleCapture(scanner, session);
                     break;
                 case "status":
                     printStatus(game);
                     break;
+                case "moves":
+                    printMoves(game);
+                    break;
                 case "end":
                     if (!placed) {
                         System.out.println("You must place a piece before ending your turn.");
                         break;
                     }
-                    finished = true;
+                    finished = session.endTurn();
                     break;
                 default:
                     System.out.println("Unknown action. Try again.");
@@ -90,103 +95,132 @@ public class TicTacToe3DDemo {
         }
     }
 
-    private static boolean handlePlacement(Scanner scanner, Game game, Player current) {
-        Position pos = readPosition(scanner, "Enter x y z (0-indexed): ");
-        if (pos == null) {
-            return false;
+    private static void handlePlacement(Scanner scanner, GameSession session) {
+        int cell = readCell(scanner, session.getGame(), "Enter x y z (0-indexed): ");
+        if (cell < 0) {
+            return;
         }
-        if (game.placePiece(current, pos)) {
-            if (game.shouldOfferCard()) {
-                offerAndPlayCard(scanner, game, current);
-            }
-            return true;
+        if (!session.place(cell)) {
+            System.out.println("Cannot place there (occupied or frozen).");
+            return;
+        }
+        if (session.getOfferMask() != 0) {
+            playOfferedCard(scanner, session);
         }
-        System.out.println("Cannot place there (occupied, frozen, or out of bounds).");
-        return false;
     }
 
-    private static ActionContext buildContextForCard(Scanner scanner, Game game, Player current, Card card) {
-        if (card instanceof LayerShiftUpCard) {
-            Integer layer = readLayer(scanner, "Layer to shift up (0 = bottom, 2 = top): ");
-            return layer == null ? new ActionContext(0) : new ActionContext(layer);
-        }
-        if (card instanceof LayerShiftDownCard) {
-            Integer layer = readLayer(scanner, "Layer to shift down (0 = bottom, 2 = top): ");
-            return layer == null ? new ActionContext(0) : new ActionContext(layer);
-        }
-        if (card instanceof TimeRewindCard) {
-            Piece piece = pickOwnPiece(scanner, game, current, "Enter coordinates of your piece to rewind (x y z): ");
-            return new ActionContext(piece);
-        }
-        if (card instanceof FreezeCard) {
-            Position pos = readPosition(scanner, "Enter empty cell to freeze (x y z): ");
-            return new ActionContext(pos);
-        }
-        if (card instanceof EmpowerCard) {
-            Piece piece = pickOwnPiece(scanner, game, current, "Enter coordinates of your piece to empower (x y z): ");
-            return new ActionContext(piece);
+    /**
+     * The {@link Move#card(int, int)} argument for a card of {@code kind}:
+     * a layer, or the cell of the target; -1 if none was given.
+     */
+    private static int readCardArgument(Scanner scanner, Game game, int kind) {
+        int last = game.getBoard().getTopology().getSize() - 1;
+        switch (kind) {
+            case Move.CARD_SHIFT_UP: {
+                Integer layer = readLayer(scanner, "Layer to shift up (0 = bottom, " + last + " = top): ");
+                return layer == null ? -1 : layer;
+            }
+            case Move.CARD_SHIFT_DOWN: {
+                Integer layer = readLayer(scanner, "Layer to shift down (0 = bottom, " + last + " = top): ");
+                return layer == null ? -1 : layer;
+            }
+            case Move.CARD_TIME_REWIND:
+                return pickOwnPiece(scanner, game, "Enter coordinates of your piece to rewind (x y z): ");
+            case Move.CARD_FREEZE:
+                return readCell(scanner, game, "Enter empty cell to freeze (x y z): ");
+            default:
+                return pickOwnPiece(scanner, game, "Enter coordinates of your piece to empower (x y z): ");
         }
-        return new ActionContext(0);
     }
 
-    private static boolean handleCapture(Scanner scanner, Game game, Player current) {
-        Piece piece = pickOwnPiece(scanner, game, current, "Enter your empowered piece coordinates (x y z): ");
-        if (piece == null || !piece.isEmpowered()) {
+    private static void handleCapture(Scanner scanner, GameSession session) {
+        Game game = session.getGame();
+        int from = pickOwnPiece(scanner, game, "Enter your empowered piece coordinates (x y z): ");
+        if (from < 0 || !game.getBoard().getPiece(from).isEmpowered()) {
             System.out.println("That piece is not empowered.");
-            return false;
+            return;
         }
-        Position target = readPosition(scanner, "Enter adjacent enemy cell to capture (x y z): ");
-        if (target == null) {
-            return false;
+        int target = readCell(scanner, game, "Enter adjacent enemy cell to capture (x y z): ");
+        if (target < 0) {
+            return;
         }
-        if (game.empoweredCapture(current, piece, target)) {
-            return true;
+        if (!session.capture(from, target)) {
+            System.out.println("Invalid capture target.");
         }
-        System.out.println("Invalid capture target.");
-        return false;
     }
 
-    private static Piece pickOwnPiece(Scanner scanner, Game game, Player player, String prompt) {
-        Position pos = readPosition(scanner, prompt);
-        if (pos == null) {
-            return null;
+    /**
+     * Cell of one of the current player's pieces entered by the user, or -1.
+     */
+    private static int pickOwnPiece(Scanner scanner, Game game, String prompt) {
+        int cell = readCell(scanner, game, prompt);
+        if (cell < 0) {
+            return -1;
         }
-        Piece piece = game.getBoard().inBounds(pos) ? game.getBoard().getPiece(pos) : null;
-        if (piece == null || piece.getOwner() != player) {
+        Piece piece = game.getBoard().getPiece(cell);
+        if (piece == null || piece.getOwner() != game.getCurrentPlayer()) {
             System.out.println("No such piece.");
-            return null;
+            return -1;
         }
-        return piece;
+        return cell;
     }
 
-    private static void offerAndPlayCard(Scanner scanner, Game game, Player current) {
-        List<Card> offers = game.offerCards();
+    /**
+     * Asks for one of the offered cards and its target until a card has been
+     * played; the card is not optional.
+     */
+    private static void playOfferedCard(Scanner scanner, GameSession session) {
+        Game game = session.getGame();
+        int mask = session.getOfferMask();
+        int[] kinds = new int[Integer.bitCount(mask)];
+        for (int kind = 0, i = 0; kind < Move.CARD_KINDS; kind++) {
+            if ((mask & 1 << kind) != 0) {
+                kinds[i++] = kind;
+            }
+        }
         System.out.println("Card offer: choose one to play immediately");
-        for (int i = 0; i < offers.size(); i++) {
-            System.out.println("  [" + i + "] " + offers.get(i).getName());
+        for (int i = 0; i < kinds.length; i++) {
+            System.out.println("  [" + i + "] " + Card.create(kinds[i]).getName());
         }
-        Integer idx = null;
-        while (idx == null) {
+        while (true) {
             System.out.print("Select: ");
             String line = scanner.nextLine().trim();
+            int idx;
             try {
                 idx = Integer.parseInt(line);
             } catch (NumberFormatException e) {
                 System.out.println("Enter 0 or 1 to choose a card.");
                 continue;
             }
-            if (idx < 0 || idx >= offers.size()) {
+            if (idx < 0 || idx >= kinds.length) {
                 System.out.println("Selection out of range.");
-                idx = null;
+                continue;
+            }
+            int arg = readCardArgument(scanner, game, kinds[idx]);
+            if (arg >= 0 && session.playCard(kinds[idx], arg)) {
+                if (kinds[idx] == Move.CARD_EMPOWER) {
+                    System.out.println("Piece empowered. Use 'capture' to move it onto an adjacent enemy.");
+                }
+                return;
             }
+            System.out.println("That card cannot be played there; choose again.");
         }
+    }
 
-        Card card = offers.get(idx);
-        ActionContext ctx = buildContextForCard(scanner, game, current, card);
-        game.useCard(card, current, ctx);
-        if (card instanceof EmpowerCard) {
-            System.out.println("Piece empowered. Use 'capture' to move it onto an adjacent enemy.");
+    /**
+     * Cell index of a position entered by the user, or -1.
+     */
+    private static int readCell(Scanner scanner, Game game, String prompt) {
+        Position pos = readPosition(scanner, prompt);
+        if (pos == null) {
+            return -1;
+        }
+        Board board = game.getBoard();
+        if (!board.inBounds(pos)) {
+            System.out.println("Out of bounds.");
+            return -1;
         }
+        return board.getTopology().cellIndex(pos.getX(), pos.getY(), pos.getZ());
     }
 
     private static Position readPosition(Scanner scanner, String prompt) {
@@ -204,7 +238,7 @@ public class TicTacToe3DDemo {
             int x = Integer.parseInt(parts[0]);
             int y = Integer.parseInt(parts[1]);
             int z = Integer.parseInt(parts[2]);
-            return new Position(x, y, z);
+            return Position.of(x, y, z);
         } catch (NumberFormatException e) {
             System.out.println("Invalid coordinates.");
             return null;
@@ -225,14 +259,24 @@ public class TicTacToe3DDemo {
         }
     }
 
+    private static void printMoves(Game game) {
+        BoardTopology topology = game.getBoard().getTopology();
+        int[] moves = new int[MoveGenerator.capacity(topology)];
+        int count = MoveGenerator.generate(game, moves);
+        System.out.println("Legal actions (" + count + "):");
+        for (int i = 0; i < count; i++) {
+            System.out.println("  " + Move.toString(moves[i], topology));
+        }
+    }
+
     private static void printStatus(Game game) {
         Board board = game.getBoard();
-        for (int z = Board.SIZE - 1; z >= 0; z--) {
+        for (int z = board.getSize() - 1; z >= 0; z--) {
             System.out.println("Layer z=" + z + ":");
-            for (int y = 0; y < Board.SIZE; y++) {
+            for (int y = 0; y < board.getSize(); y++) {
                 StringBuilder row = new StringBuilder();
-                for (int x = 0; x < Board.SIZE; x++) {
-                    Position pos = new Position(x, y, z);
+                for (int x = 0; x < board.getSize(); x++) {
+                    Position pos = Position.of(x, y, z);
                     Piece piece = board.getPiece(pos);
                     if (piece != null) {
                         String mark = piece.getOwner().getName().isEmpty()
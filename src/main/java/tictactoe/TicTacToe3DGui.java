@@ -4,24 +4,43 @@ import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
-import java.awt.GridLayout;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.awt.image.BufferedImage;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Random;
-import javax.swing.BorderFactory;
+import java.util.stream.Collectors;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
+import javax.swing.JComponent;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
-import javax.swing.border.LineBorder;
+import javax.swing.Timer;
 
 /**
  * Swing-based 3D Tic-Tac-Toe interface that mirrors the console ruleset but
- * renders stacked layers for a visual play experience.
+ * renders stacked layers for a visual play experience. The board is one
+ * custom-painted component that listens to the game and repaints only the
+ * cells that changed. Every action, human or computer, is played through
+ * one {@link GameSession}. In "vs computer" mode the second seat is played by
+ * a {@link ComputerPlayer} that thinks on a background thread; the budget in
+ * milliseconds is the optional first program argument.
  */
 public class TicTacToe3DGui extends JFrame {
     private static final int PIECE_CAP = 5;
@@ -29,30 +48,85 @@ public class TicTacToe3DGui extends JFrame {
     private static final Color BOARD_COLOR = new Color(245, 230, 200);
     private static final Font CELL_FONT = new Font(Font.SANS_SERIF, Font.BOLD, 26);
 
-    private final Game game;
-    private final List<Player> players;
-    private final CellButton[][][] cells = new CellButton[Board.SIZE][Board.SIZE][Board.SIZE];
+    private static final int COMPUTER_SEAT = 1;
 
-    private int currentPlayerIdx = 0;
-    private boolean placedThisTurn = false;
+    private Game game;
+    private GameSession session;
+    private List<Player> players;
+    private BoardView boardView;
+    private final ComputerPlayer computer;
 
     private final JLabel roundLabel = new JLabel();
     private final JLabel statusLabel = new JLabel();
     private final JLabel scoreLabel = new JLabel();
 
-    private TicTacToe3DGui(List<Player> players) {
+    /**
+     * @param computerBudgetMillis search budget of the computer opponent in
+     *        the second seat, or 0 for two human players
+     */
+    private TicTacToe3DGui(List<Player> players, long computerBudgetMillis) {
         super("3D Tic-Tac-Toe");
-        this.players = players;
-        this.game = new Game(players, PIECE_CAP, TURN_LIMIT, new Random());
+        this.computer = computerBudgetMillis > 0
+                ? new ComputerPlayer(computerBudgetMillis, SwingUtilities::invokeLater)
+                : null;
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                if (computer != null) {
+                    computer.close();
+                }
+            }
+        });
         setLayout(new BorderLayout());
         add(buildHeader(), BorderLayout.NORTH);
-        add(buildBoard(), BorderLayout.CENTER);
         add(buildControls(), BorderLayout.SOUTH);
+        startGame(players);
         pack();
         setLocationRelativeTo(null);
-        refreshBoard();
+    }
+
+    /**
+     * Starts a fresh game for {@code players}, abandoning any computer turn
+     * of the previous one.
+     */
+    private void startGame(List<Player> players) {
+        if (computer != null) {
+            computer.cancel();
+        }
+        this.players = players;
+        this.game = new Game(players, PIECE_CAP, TURN_LIMIT, new Random());
+        this.session = new GameSession(game);
+        if (boardView != null) {
+            remove(boardView);
+        }
+        boardView = new BoardView(game, this::getPlayerSymbol, this::handleCellClick);
+        game.addListener(boardView);
+        add(boardView, BorderLayout.CENTER);
+        revalidate();
+        repaint();
         refreshStatus();
+        startComputerTurnIfDue();
+    }
+
+    private void restartGame() {
+        startGame(players.stream().map(p -> new Player(p.getName())).collect(Collectors.toList()));
+    }
+
+    private boolean isComputerTurn() {
+        return computer != null && !game.isGameOver() && game.getCurrentPlayerIndex() == COMPUTER_SEAT;
+    }
+
+    private void startComputerTurnIfDue() {
+        if (isComputerTurn() && !computer.isThinking()) {
+            computer.playTurn(session, this::refreshStatus, () -> {
+                refreshStatus();
+                if (game.isGameOver()) {
+                    showGameOver();
+                }
+            });
+            refreshStatus();
+        }
     }
 
     private JPanel buildHeader() {
@@ -71,69 +145,63 @@ public class TicTacToe3DGui extends JFrame {
         return header;
     }
 
-    private JPanel buildBoard() {
-        JPanel layers = new JPanel();
-        layers.setLayout(new BoxLayout(layers, BoxLayout.Y_AXIS));
-        for (int z = Board.SIZE - 1; z >= 0; z--) {
-            JPanel layerPanel = new JPanel(new GridLayout(Board.SIZE, Board.SIZE));
-            layerPanel.setBorder(BorderFactory.createTitledBorder("Layer z=" + z));
-            for (int y = 0; y < Board.SIZE; y++) {
-                for (int x = 0; x < Board.SIZE; x++) {
-                    Position pos = new Position(x, y, z);
-                    CellButton btn = new CellButton(pos);
-                    btn.addActionListener(e -> handleCellClick(btn.getPosition()));
-                    btn.setPreferredSize(new Dimension(70, 70));
-                    btn.setBackground(BOARD_COLOR);
-                    btn.setOpaque(true);
-                    btn.setFont(CELL_FONT);
-                    btn.setBorder(new LineBorder(Color.BLACK));
-                    cells[x][y][z] = btn;
-                    layerPanel.add(btn);
-                }
-            }
-            layers.add(layerPanel);
-            layers.add(Box.createRigidArea(new Dimension(0, 6)));
-        }
-        return layers;
-    }
-
     private JPanel buildControls() {
         JPanel controls = new JPanel();
         JButton captureButton = new JButton("Capture (card rounds)");
         JButton endTurnButton = new JButton("End Turn");
+        JButton newGameButton = new JButton("New Game");
 
         captureButton.addActionListener(e -> attemptCapture());
         endTurnButton.addActionListener(e -> advanceTurn());
+        newGameButton.addActionListener(e -> restartGame());
 
         controls.add(captureButton);
         controls.add(endTurnButton);
+        controls.add(newGameButton);
         return controls;
     }
 
-    private void handleCellClick(Position pos) {
-        if (game.isGameOver()) {
+    private boolean hasPlaced() {
+        return game.getPhase() != Game.PHASE_PLACE;
+    }
+
+    private void handleCellClick(int cell) {
+        if (game.isGameOver() || isComputerTurn()) {
+            return;
+        }
+        if (session.getOfferMask() != 0) {
+            handleCardOffer();
             return;
         }
-        if (placedThisTurn) {
+        if (hasPlaced()) {
             JOptionPane.showMessageDialog(this, "You've already placed this round.");
             return;
         }
-        Player current = players.get(currentPlayerIdx);
-        if (game.placePiece(current, pos)) {
-            placedThisTurn = true;
-            refreshBoard();
+        if (session.place(cell)) {
             refreshStatus();
-            if (game.shouldOfferCard()) {
-                handleCardOffer(current);
+            if (session.getOfferMask() != 0) {
+                handleCardOffer();
             }
         } else {
-            JOptionPane.showMessageDialog(this, "Cannot place there (occupied, frozen, or out of bounds).");
+            JOptionPane.showMessageDialog(this, "Cannot place there (occupied or frozen).");
         }
     }
 
-    private void handleCardOffer(Player player) {
-        List<Card> offers = game.offerCards();
-        Object[] optionLabels = offers.stream().map(Card::getName).toArray();
+    /**
+     * Asks for one of the offered cards and its target and plays it. The
+     * card is not optional: if the dialog is dismissed, it comes back on the
+     * next click or End Turn.
+     */
+    private void handleCardOffer() {
+        int mask = session.getOfferMask();
+        int[] kinds = new int[Integer.bitCount(mask)];
+        Object[] optionLabels = new Object[kinds.length];
+        for (int kind = 0, i = 0; kind < Move.CARD_KINDS; kind++) {
+            if ((mask & 1 << kind) != 0) {
+                kinds[i] = kind;
+                optionLabels[i++] = Card.create(kind).getName();
+            }
+        }
         int choice = JOptionPane.showOptionDialog(
                 this,
                 "Choose a card to play immediately",
@@ -143,66 +211,79 @@ public class TicTacToe3DGui extends JFrame {
                 null,
                 optionLabels,
                 optionLabels[0]);
-        if (choice < 0 || choice >= offers.size()) {
-            JOptionPane.showMessageDialog(this, "No card selected; skipping.");
+        if (choice < 0 || choice >= kinds.length) {
+            refreshStatus();
             return;
         }
 
-        Card card = offers.get(choice);
-        ActionContext ctx = buildContext(card, player);
-        game.useCard(card, player, ctx);
-        refreshBoard();
+        int kind = kinds[choice];
+        int arg = promptCardArgument(kind);
+        if (arg < 0) {
+            refreshStatus();
+            return;
+        }
+        if (!session.playCard(kind, arg)) {
+            JOptionPane.showMessageDialog(this, "That card cannot be played there.");
+            refreshStatus();
+            return;
+        }
         refreshStatus();
-        if (card instanceof EmpowerCard) {
+        if (kind == Move.CARD_EMPOWER) {
             JOptionPane.showMessageDialog(this, "Piece empowered. Use Capture to move it onto an adjacent enemy.");
         }
     }
 
-    private ActionContext buildContext(Card card, Player current) {
-        if (card instanceof LayerShiftUpCard) {
-            Integer layer = promptLayer("Layer to shift up (0 = bottom, 2 = top):");
-            return new ActionContext(layer == null ? 0 : layer);
-        }
-        if (card instanceof LayerShiftDownCard) {
-            Integer layer = promptLayer("Layer to shift down (0 = bottom, 2 = top):");
-            return new ActionContext(layer == null ? 0 : layer);
-        }
-        if (card instanceof FreezeCard) {
-            Position pos = promptPosition("Enter empty cell to freeze as x y z:");
-            return new ActionContext(pos);
-        }
-        if (card instanceof TimeRewindCard) {
-            Piece piece = promptOwnPiece(current, "Enter your piece to rewind as x y z:");
-            return new ActionContext(piece);
-        }
-        if (card instanceof EmpowerCard) {
-            Piece piece = promptOwnPiece(current, "Enter your piece to empower as x y z:");
-            return new ActionContext(piece);
+    /**
+     * The {@link Move#card(int, int)} argument for a card of {@code kind}:
+     * a layer, or the cell of the target; -1 if none was given.
+     */
+    private int promptCardArgument(int kind) {
+        int last = game.getBoard().getTopology().getSize() - 1;
+        switch (kind) {
+            case Move.CARD_SHIFT_UP: {
+                Integer layer = promptLayer("Layer to shift up (0 = bottom, " + last + " = top):");
+                return layer == null ? -1 : layer;
+            }
+            case Move.CARD_SHIFT_DOWN: {
+                Integer layer = promptLayer("Layer to shift down (0 = bottom, " + last + " = top):");
+                return layer == null ? -1 : layer;
+            }
+            case Move.CARD_FREEZE:
+                return promptCell("Enter empty cell to freeze as x y z:");
+            case Move.CARD_TIME_REWIND:
+                return promptOwnPiece(game.getCurrentPlayer(), "Enter your piece to rewind as x y z:");
+            default:
+                return promptOwnPiece(game.getCurrentPlayer(), "Enter your piece to empower as x y z:");
         }
-        return new ActionContext(0);
     }
 
     private void attemptCapture() {
+        if (isComputerTurn()) {
+            return;
+        }
         if (!game.shouldOfferCard()) {
             JOptionPane.showMessageDialog(this, "Captures are only available in card-draw rounds.");
             return;
         }
-        if (!placedThisTurn) {
+        if (!hasPlaced()) {
             JOptionPane.showMessageDialog(this, "Place a piece before capturing.");
             return;
         }
-        Player current = players.get(currentPlayerIdx);
-        Piece piece = promptOwnPiece(current, "Enter your empowered piece (x y z):");
-        if (piece == null || !piece.isEmpowered()) {
+        if (session.getOfferMask() != 0) {
+            handleCardOffer();
+            return;
+        }
+        Player current = game.getCurrentPlayer();
+        int from = promptOwnPiece(current, "Enter your empowered piece (x y z):");
+        if (from < 0 || !game.getBoard().getPiece(from).isEmpowered()) {
             JOptionPane.showMessageDialog(this, "That piece is not empowered.");
             return;
         }
-        Position target = promptPosition("Enter adjacent enemy cell to capture (x y z):");
-        if (target == null) {
+        int target = promptCell("Enter adjacent enemy cell to capture (x y z):");
+        if (target < 0) {
             return;
         }
-        if (game.empoweredCapture(current, piece, target)) {
-            refreshBoard();
+        if (session.capture(from, target)) {
             refreshStatus();
         } else {
             JOptionPane.showMessageDialog(this, "Invalid capture target.");
@@ -210,55 +291,40 @@ public class TicTacToe3DGui extends JFrame {
     }
 
     private void advanceTurn() {
-        if (!placedThisTurn) {
+        if (isComputerTurn()) {
+            return;
+        }
+        if (!hasPlaced()) {
             JOptionPane.showMessageDialog(this, "You must place a piece before ending your turn.");
             return;
         }
-        currentPlayerIdx = (currentPlayerIdx + 1) % players.size();
-        placedThisTurn = false;
-        if (currentPlayerIdx == 0) {
-            game.advanceRound();
+        if (session.getOfferMask() != 0) {
+            handleCardOffer();
+            return;
         }
+        session.endTurn();
         if (game.isGameOver()) {
             showGameOver();
         }
-        refreshBoard();
         refreshStatus();
-    }
-
-    private void refreshBoard() {
-        Board board = game.getBoard();
-        for (int x = 0; x < Board.SIZE; x++) {
-            for (int y = 0; y < Board.SIZE; y++) {
-                for (int z = 0; z < Board.SIZE; z++) {
-                    Position pos = new Position(x, y, z);
-                    CellButton btn = cells[x][y][z];
-                    Piece piece = board.getPiece(pos);
-                    if (piece != null) {
-                        String symbol = getPlayerSymbol(piece.getOwner());
-                        if (piece.isEmpowered()) {
-                            symbol += "*";
-                        }
-                        btn.setText(symbol);
-                        btn.setForeground(symbol.startsWith("X") ? Color.RED : Color.BLUE);
-                    } else if (board.isFrozen(pos)) {
-                        btn.setText("F" + board.frozenTurnsRemaining(pos));
-                        btn.setForeground(Color.GRAY.darker());
-                    } else {
-                        btn.setText("");
-                        btn.setForeground(Color.BLACK);
-                    }
-                }
-            }
-        }
+        startComputerTurnIfDue();
     }
 
     private void refreshStatus() {
-        Player current = players.get(currentPlayerIdx);
+        Player current = game.getCurrentPlayer();
         roundLabel.setText("Round " + game.getCurrentRound() + " of " + game.getTurnLimit());
-        String actionHint = placedThisTurn
-                ? "Optional capture (card rounds) or end turn."
-                : "Click a cell to place.";
+        String actionHint;
+        if (game.isGameOver()) {
+            actionHint = "Game over.";
+        } else if (isComputerTurn()) {
+            actionHint = "thinking...";
+        } else {
+            actionHint = session.getOfferMask() != 0
+                    ? "Choose a card (click the board or End Turn)."
+                    : hasPlaced()
+                    ? "Optional capture (card rounds) or end turn."
+                    : "Click a cell to place.";
+        }
         statusLabel.setText("Current: " + current.getName() + " — " + actionHint);
         scoreLabel.setText(scoreSummary());
     }
@@ -313,29 +379,43 @@ public class TicTacToe3DGui extends JFrame {
             int x = Integer.parseInt(parts[0]);
             int y = Integer.parseInt(parts[1]);
             int z = Integer.parseInt(parts[2]);
-            return new Position(x, y, z);
+            return Position.of(x, y, z);
         } catch (NumberFormatException e) {
             JOptionPane.showMessageDialog(this, "Invalid coordinates.");
             return null;
         }
     }
 
-    private Piece promptOwnPiece(Player player, String prompt) {
+    /**
+     * Cell index of a position entered by the user, or -1.
+     */
+    private int promptCell(String prompt) {
         Position pos = promptPosition(prompt);
         if (pos == null) {
-            return null;
+            return -1;
         }
         Board board = game.getBoard();
         if (!board.inBounds(pos)) {
             JOptionPane.showMessageDialog(this, "Out of bounds.");
-            return null;
+            return -1;
         }
-        Piece piece = board.getPiece(pos);
+        return board.getTopology().cellIndex(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    /**
+     * Cell of one of {@code player}'s pieces entered by the user, or -1.
+     */
+    private int promptOwnPiece(Player player, String prompt) {
+        int cell = promptCell(prompt);
+        if (cell < 0) {
+            return -1;
+        }
+        Piece piece = game.getBoard().getPiece(cell);
         if (piece == null || piece.getOwner() != player) {
             JOptionPane.showMessageDialog(this, "No such piece.");
-            return null;
+            return -1;
         }
-        return piece;
+        return cell;
     }
 
     private String getPlayerSymbol(Player player) {
@@ -350,12 +430,23 @@ public class TicTacToe3DGui extends JFrame {
         return name.isEmpty() ? "?" : name.substring(0, 1).toUpperCase(Locale.ROOT);
     }
 
-    private static List<Player> promptPlayers() {
-        String p1Name = JOptionPane.showInputDialog(null, "Enter name for Player 1 (X):", "Player 1", JOptionPane.PLAIN_MESSAGE);
+    private static boolean promptVsComputer() {
+        Object[] modes = {"Two players", "Vs computer"};
+        int choice = JOptionPane.showOptionDialog(null, "Choose a game mode", "3D Tic-Tac-Toe",
+                JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, modes, modes[0]);
+        return choice == 1;
+    }
+
+    private static List<Player> promptPlayers(boolean vsComputer) {
+        String p1Name = JOptionPane.showInputDialog(null, "Enter name for Player 1 (X):", "Player 1",
+                JOptionPane.PLAIN_MESSAGE);
         if (p1Name == null || p1Name.isBlank()) {
             p1Name = "Player 1";
         }
-        String p2Name = JOptionPane.showInputDialog(null, "Enter name for Player 2 (O):", "Player 2", JOptionPane.PLAIN_MESSAGE);
+        String p2Name = vsComputer
+                ? "Computer"
+                : JOptionPane.showInputDialog(null, "Enter name for Player 2 (O):", "Player 2",
+                        JOptionPane.PLAIN_MESSAGE);
         if (p2Name == null || p2Name.isBlank()) {
             p2Name = "Player 2";
         }
@@ -363,22 +454,325 @@ public class TicTacToe3DGui extends JFrame {
     }
 
     public static void main(String[] args) {
+        long budget = args.length > 0 ? Long.parseLong(args[0]) : ComputerPlayer.DEFAULT_BUDGET_MILLIS;
         SwingUtilities.invokeLater(() -> {
-            List<Player> players = promptPlayers();
-            TicTacToe3DGui frame = new TicTacToe3DGui(players);
+            boolean vsComputer = promptVsComputer();
+            List<Player> players = promptPlayers(vsComputer);
+            TicTacToe3DGui frame = new TicTacToe3DGui(players, vsComputer ? budget : 0);
             frame.setVisible(true);
         });
     }
 
-    private static class CellButton extends JButton {
-        private final Position position;
+    /**
+     * The whole board as one component: every layer is drawn into a back
+     * buffer, one cell at a time from cached glyph images, and only the cells
+     * touched by a {@link GameEvents} batch, the hover or a running animation
+     * are redrawn and repainted. Placed pieces pop in and scored lines flash
+     * in the scorer's colour, driven by a 60 fps timer that only runs while
+     * something is animating.
+     */
+    private static final class BoardView extends JComponent implements GameListener {
+        private static final long serialVersionUID = 1L;
+
+        private static final int CELL = 70;
+        private static final int TITLE = 22;
+        private static final int GAP = 8;
+        private static final int MARGIN = 10;
+        private static final int POP_MILLIS = 180;
+        private static final int FLASH_MILLIS = 1200;
+        private static final Color HOVER_COLOR = new Color(232, 212, 175);
+        private static final Color FROZEN_COLOR = new Color(214, 228, 242);
+        private static final Color FROZEN_TEXT = Color.GRAY.darker();
+        private static final Color GRID_COLOR = Color.BLACK;
+        private static final Font TITLE_FONT = new Font(Font.SANS_SERIF, Font.BOLD, 12);
+
+        private final Game game;
+        private final BoardTopology topology;
+        private final int size;
+        private final Function<Player, String> symbols;
+        private final IntConsumer clicks;
+        private final Map<String, BufferedImage> glyphs = new HashMap<>();
+        private final long[] popStart;
+        private final long[] flashStart;
+        private final Color[] flashColor;
+        private final BitSet animating = new BitSet();
+        private final BitSet dirty = new BitSet();
+        private final Timer animation = new Timer(16, e -> animate());
+        private BufferedImage buffer;
+        private int hovered = -1;
+
+        BoardView(Game game, Function<Player, String> symbols, IntConsumer clicks) {
+            this.game = game;
+            this.topology = game.getBoard().getTopology();
+            this.size = topology.getSize();
+            this.symbols = symbols;
+            this.clicks = clicks;
+            this.popStart = new long[topology.getCellCount()];
+            this.flashStart = new long[topology.getCellCount()];
+            this.flashColor = new Color[topology.getCellCount()];
+            setOpaque(true);
+            setPreferredSize(new Dimension(2 * MARGIN + size * CELL, 2 * MARGIN + size * layerHeight() - GAP));
+            MouseAdapter mouse = new MouseAdapter() {
+                @Override
+                public void mouseMoved(MouseEvent e) {
+                    hover(cellAt(e.getX(), e.getY()));
+                }
+
+                @Override
+                public void mouseExited(MouseEvent e) {
+                    hover(-1);
+                }
+
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    int cell = cellAt(e.getX(), e.getY());
+                    if (cell >= 0 && SwingUtilities.isLeftMouseButton(e)) {
+                        clicks.accept(cell);
+                    }
+                }
+            };
+            addMouseListener(mouse);
+            addMouseMotionListener(mouse);
+        }
+
+        @Override
+        public void gameChanged(Game game, GameEvents events) {
+            long now = System.currentTimeMillis();
+            Board board = game.getBoard();
+            for (int i = 0; i < events.size(); i++) {
+                int cell = events.cell(i);
+                switch (events.type(i)) {
+                    case GameEvents.PIECE_PLACED:
+                        startPop(cell, now);
+                        break;
+                    case GameEvents.PIECE_CAPTURED:
+                        startPop(cell, now);
+                        dirty.set(events.value(i));
+                        break;
+                    case GameEvents.PIECE_EVICTED:
+                    case GameEvents.PIECE_EMPOWERED:
+                    case GameEvents.PIECE_REWOUND:
+                    case GameEvents.CELL_FROZEN:
+                    case GameEvents.CELL_UNFROZEN:
+                        dirty.set(cell);
+                        break;
+                    case GameEvents.LAYERS_SWAPPED:
+                        markLayer(cell);
+                        markLayer(events.value(i));
+                        break;
+                    case GameEvents.ROUND_ADVANCED:
+                        // Freeze countdowns are drawn on the cell.
+                        for (int c = 0; c < topology.getCellCount(); c++) {
+                            if (board.isFrozen(c)) {
+                                dirty.set(c);
+                            }
+                        }
+                        break;
+                    case GameEvents.LINE_SCORED:
+                        Color color = playerColor(game.getPlayers().get(events.player(i)));
+                        for (int c : topology.lineCells(events.value(i))) {
+                            flashStart[c] = now;
+                            flashColor[c] = color;
+                            animating.set(c);
+                            dirty.set(c);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            flush(now);
+            if (!animating.isEmpty() && !animation.isRunning()) {
+                animation.start();
+            }
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            if (buffer == null) {
+                buffer = new BufferedImage(getPreferredSize().width, getPreferredSize().height,
+                        BufferedImage.TYPE_INT_RGB);
+                renderAll(System.currentTimeMillis());
+            }
+            g.setColor(getBackground());
+            g.fillRect(0, 0, getWidth(), getHeight());
+            g.drawImage(buffer, offsetX(), 0, null);
+        }
+
+        private void startPop(int cell, long now) {
+            popStart[cell] = now;
+            animating.set(cell);
+            dirty.set(cell);
+        }
+
+        private void markLayer(int z) {
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    dirty.set(topology.cellIndex(x, y, z));
+                }
+            }
+        }
+
+        private void hover(int cell) {
+            if (cell == hovered) {
+                return;
+            }
+            if (hovered >= 0) {
+                dirty.set(hovered);
+            }
+            hovered = cell;
+            if (cell >= 0) {
+                dirty.set(cell);
+            }
+            flush(System.currentTimeMillis());
+        }
+
+        private void animate() {
+            long now = System.currentTimeMillis();
+            for (int cell = animating.nextSetBit(0); cell >= 0; cell = animating.nextSetBit(cell + 1)) {
+                if (now - popStart[cell] >= POP_MILLIS && now - flashStart[cell] >= FLASH_MILLIS) {
+                    animating.clear(cell);
+                }
+                dirty.set(cell);
+            }
+            flush(now);
+            if (animating.isEmpty()) {
+                animation.stop();
+            }
+        }
+
+        /**
+         * Redraws the dirty cells into the back buffer and repaints just
+         * their rectangles.
+         */
+        private void flush(long now) {
+            if (buffer == null) {
+                dirty.clear();
+                return;
+            }
+            for (int cell = dirty.nextSetBit(0); cell >= 0; cell = dirty.nextSetBit(cell + 1)) {
+                renderCell(cell, now);
+                repaint(offsetX() + cellX(cell), cellY(cell), CELL, CELL);
+            }
+            dirty.clear();
+        }
+
+        private void renderAll(long now) {
+            Graphics2D g = buffer.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                g.setColor(getBackground());
+                g.fillRect(0, 0, buffer.getWidth(), buffer.getHeight());
+                g.setColor(Color.BLACK);
+                g.setFont(TITLE_FONT);
+                for (int z = size - 1; z >= 0; z--) {
+                    int top = MARGIN + (size - 1 - z) * layerHeight();
+                    g.drawString("Layer z=" + z, MARGIN, top + TITLE - 6);
+                }
+            } finally {
+                g.dispose();
+            }
+            for (int cell = 0; cell < topology.getCellCount(); cell++) {
+                renderCell(cell, now);
+            }
+        }
+
+        private void renderCell(int cell, long now) {
+            Board board = game.getBoard();
+            int left = cellX(cell);
+            int top = cellY(cell);
+            Graphics2D g = buffer.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                boolean frozen = board.isFrozen(cell);
+                g.setColor(frozen ? FROZEN_COLOR : cell == hovered ? HOVER_COLOR : BOARD_COLOR);
+                g.fillRect(left, top, CELL, CELL);
+                long flash = now - flashStart[cell];
+                if (flashColor[cell] != null && flash < FLASH_MILLIS) {
+                    int alpha = (int) (140 * (FLASH_MILLIS - flash) / FLASH_MILLIS);
+                    Color c = flashColor[cell];
+                    g.setColor(new Color(c.getRed(), c.getGreen(), c.getBlue(), alpha));
+                    g.fillRect(left, top, CELL, CELL);
+                }
+                g.setColor(GRID_COLOR);
+                g.drawRect(left, top, CELL - 1, CELL - 1);
+
+                Piece piece = board.getPiece(cell);
+                BufferedImage glyph;
+                if (piece != null) {
+                    String symbol = symbols.apply(piece.getOwner());
+                    glyph = glyph(piece.isEmpowered() ? symbol + "*" : symbol, playerColor(piece.getOwner()));
+                } else if (frozen) {
+                    glyph = glyph("F" + board.frozenTurnsRemaining(cell), FROZEN_TEXT);
+                } else {
+                    return;
+                }
+                long pop = now - popStart[cell];
+                double scale = piece != null && pop < POP_MILLIS ? 0.4 + 0.6 * pop / POP_MILLIS : 1.0;
+                int w = (int) Math.round(glyph.getWidth() * scale);
+                int h = (int) Math.round(glyph.getHeight() * scale);
+                g.drawImage(glyph, left + (CELL - w) / 2, top + (CELL - h) / 2, w, h, null);
+            } finally {
+                g.dispose();
+            }
+        }
+
+        /**
+         * The pre-rendered image of {@code text}, drawn once per text and
+         * colour so painting a cell is a single image copy.
+         */
+        private BufferedImage glyph(String text, Color color) {
+            return glyphs.computeIfAbsent(text + '#' + color.getRGB(), key -> {
+                FontMetrics metrics = getFontMetrics(CELL_FONT);
+                int w = Math.max(1, metrics.stringWidth(text));
+                int h = metrics.getAscent() + metrics.getDescent();
+                BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+                Graphics2D g = image.createGraphics();
+                try {
+                    g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                    g.setFont(CELL_FONT);
+                    g.setColor(color);
+                    g.drawString(text, 0, metrics.getAscent());
+                } finally {
+                    g.dispose();
+                }
+                return image;
+            });
+        }
+
+        private Color playerColor(Player player) {
+            return symbols.apply(player).startsWith("X") ? Color.RED : Color.BLUE;
+        }
+
+        private int cellAt(int px, int py) {
+            int bx = px - offsetX() - MARGIN;
+            int by = py - MARGIN;
+            if (bx < 0 || by < 0 || bx >= size * CELL) {
+                return -1;
+            }
+            int layer = by / layerHeight();
+            int inLayer = by % layerHeight() - TITLE;
+            if (layer >= size || inLayer < 0 || inLayer >= size * CELL) {
+                return -1;
+            }
+            return topology.cellIndex(bx / CELL, inLayer / CELL, size - 1 - layer);
+        }
+
+        private int cellX(int cell) {
+            return MARGIN + topology.x(cell) * CELL;
+        }
+
+        private int cellY(int cell) {
+            return MARGIN + (size - 1 - topology.z(cell)) * layerHeight() + TITLE + topology.y(cell) * CELL;
+        }
 
-        CellButton(Position position) {
-            this.position = position;
+        private int layerHeight() {
+            return TITLE + size * CELL + GAP;
         }
 
-        Position getPosition() {
-            return position;
+        /** Centres the board horizontally when the window is wider than it. */
+        private int offsetX() {
+            return Math.max(0, (getWidth() - getPreferredSize().width) / 2);
         }
     }
 }
@@ -1,15 +1,27 @@
 package tictactoe;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 import java.util.Random;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
-import javafx.geometry.Point2D;
+import javafx.application.Platform;
+import javafx.geometry.Point3D;
 import javafx.geometry.Pos;
+import javafx.scene.AmbientLight;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.PerspectiveCamera;
+import javafx.scene.PointLight;
 import javafx.scene.Scene;
+import javafx.scene.SceneAntialiasing;
+import javafx.scene.SubScene;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.Button;
@@ -17,17 +29,29 @@ import javafx.scene.control.ChoiceDialog;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.scene.control.TextInputDialog;
+import javafx.scene.control.ToggleButton;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.CullFace;
+import javafx.scene.shape.Cylinder;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import javafx.scene.transform.Rotate;
+import javafx.scene.transform.Translate;
 import javafx.stage.Stage;
 
 /**
  * 3D Tic-Tac-Toe JavaFX GUI
  * 修改版：增加了層間距，並支援滑鼠直接點擊格子下棋。
+ * 人類與電腦的每個動作都經由同一個 {@link GameSession} 進行。
+ * 「對電腦」模式由 {@link ComputerPlayer} 在背景執行緒思考第二位玩家的回合，
+ * 第一個程式參數可指定每一步的思考時間 (毫秒)。
  */
 public class TicTacToe3DJavaFX extends Application {
     private static final int PIECE_CAP = 5;
@@ -43,22 +67,33 @@ public class TicTacToe3DJavaFX extends Application {
     private final Label scoreLabel = new Label();
     private final Label hintLabel = new Label();
 
+    private static final int COMPUTER_SEAT = 1;
+
     private Game game;
+    private GameSession session;
+    private ComputerPlayer computer;
     private List<Player> players;
     private IsoBoardView boardView;
-    private boolean placedThisTurn = false;
-    private int currentPlayerIdx = 0;
+    private SubSceneBoardView sceneView;
+    private BorderPane root;
 
     @Override
     public void start(Stage stage) {
-        this.players = promptPlayers();
+        boolean vsComputer = promptVsComputer();
+        if (vsComputer) {
+            List<String> args = getParameters().getRaw();
+            long budget = args.isEmpty() ? ComputerPlayer.DEFAULT_BUDGET_MILLIS : Long.parseLong(args.get(0));
+            this.computer = new ComputerPlayer(budget, Platform::runLater);
+        }
+        this.players = promptPlayers(vsComputer);
         this.game = new Game(players, PIECE_CAP, TURN_LIMIT, new Random());
+        this.session = new GameSession(game);
         
         // 初始化視圖，並傳入點擊回呼函數 (Lambda)
         this.boardView = new IsoBoardView(pos -> attemptMove(pos));
         boardView.setGame(game);
 
-        BorderPane root = new BorderPane();
+        root = new BorderPane();
         root.setTop(buildHeader());
         root.setCenter(boardView);
         root.setRight(buildControls());
@@ -70,6 +105,57 @@ public class TicTacToe3DJavaFX extends Application {
         stage.show();
 
         refreshUi();
+        startComputerTurnIfDue();
+    }
+
+    /**
+     * 視窗關閉時停止電腦的搜尋。
+     */
+    @Override
+    public void stop() {
+        if (computer != null) {
+            computer.close();
+        }
+    }
+
+    /**
+     * 用同樣的玩家名稱重新開一局；電腦進行中的回合直接放棄。
+     */
+    private void restartGame() {
+        if (computer != null) {
+            computer.cancel();
+        }
+        players = players.stream().map(p -> new Player(p.getName())).collect(Collectors.toList());
+        game = new Game(players, PIECE_CAP, TURN_LIMIT, new Random());
+        session = new GameSession(game);
+        if (root.getCenter() == sceneView) {
+            sceneView.setGame(game);
+        } else {
+            boardView.setGame(game);
+        }
+        refreshUi();
+        startComputerTurnIfDue();
+    }
+
+    /**
+     * 這一回合是否已經下過棋子；由遊戲的階段推得。
+     */
+    private boolean hasPlaced() {
+        return game.getPhase() != Game.PHASE_PLACE;
+    }
+
+    private boolean isComputerTurn() {
+        return computer != null && !game.isGameOver() && game.getCurrentPlayerIndex() == COMPUTER_SEAT;
+    }
+
+    /**
+     * 輪到電腦時在背景思考整個回合；每一步都在 FX 執行緒上套用，畫面不會卡住。
+     */
+    private void startComputerTurnIfDue() {
+        if (isComputerTurn() && !computer.isThinking()) {
+            computer.playTurn(session, this::refreshUi, this::refreshUi);
+            refreshUi();
+        }
     }
 
     private VBox buildHeader() {
@@ -110,16 +196,44 @@ public class TicTacToe3DJavaFX extends Application {
         endTurnButton.setMaxWidth(Double.MAX_VALUE);
         endTurnButton.setStyle("-fx-font-weight: bold; -fx-base: #b6e7c9;"); // 讓結束按鈕顯眼一點
         endTurnButton.setOnAction(e -> advanceTurn());
+
+        Button newGameButton = new Button("New Game");
+        newGameButton.setMaxWidth(Double.MAX_VALUE);
+        newGameButton.setOnAction(e -> restartGame());
         
+        ToggleButton view3dButton = new ToggleButton("3D view (drag to orbit, scroll to zoom)");
+        view3dButton.setMaxWidth(Double.MAX_VALUE);
+        view3dButton.setOnAction(e -> switchView(view3dButton.isSelected()));
+
         Label clickHint = new Label("\nTip:\nYou can click directly\non the grid to place pieces!");
         clickHint.setTextFill(Color.DARKSLATEBLUE);
         clickHint.setStyle("-fx-border-color: lightblue; -fx-padding: 5;");
 
         controls.getChildren().addAll(manualLabel, placeLabel, placeRow, placeButton,
-                captureLabel, captureRow, captureButton, endTurnButton, clickHint);
+                captureLabel, captureRow, captureButton, endTurnButton, newGameButton, view3dButton, clickHint);
         return controls;
     }
 
+    /**
+     * 在等角 Canvas 與 SubScene 立體視圖之間切換；沒顯示的視圖不監聽遊戲。
+     */
+    private void switchView(boolean use3d) {
+        if (use3d) {
+            if (sceneView == null) {
+                sceneView = new SubSceneBoardView(pos -> attemptMove(pos));
+            }
+            boardView.setGame(null);
+            sceneView.setGame(game);
+            root.setCenter(sceneView);
+        } else {
+            if (sceneView != null) {
+                sceneView.setGame(null);
+            }
+            boardView.setGame(game);
+            root.setCenter(boardView);
+        }
+    }
+
     /**
      * 核心下棋邏輯：由按鈕或滑鼠點擊觸發
      */
@@ -128,26 +242,27 @@ public class TicTacToe3DJavaFX extends Application {
             hintLabel.setText("Game is over.");
             return;
         }
-        if (placedThisTurn) {
+        if (isComputerTurn()) {
+            hintLabel.setText("The computer is thinking...");
+            return;
+        }
+        if (session.getOfferMask() != 0) {
+            offerAndPlayCard();
+            return;
+        }
+        if (hasPlaced()) {
             hintLabel.setText("You have already placed a piece this turn.");
             return;
         }
 
-        Player current = players.get(currentPlayerIdx);
-        if (game.placePiece(current, pos)) {
-            placedThisTurn = true;
+        if (game.getBoard().inBounds(pos) && session.place(cellOf(pos))) {
+            refreshUi();
             hintLabel.setText(String.format("Placed at (%d, %d, %d)", pos.getX(), pos.getY(), pos.getZ()));
-            
-            // 如果觸發卡片機制
-            if (game.shouldOfferCard()) {
-                // 為了讓 UI 先更新棋子顯示，再彈出卡片對話框，這裡可以用 Platform.runLater
-                // 但為了簡單起見，直接呼叫
-                boardView.redraw(); 
-                offerAndPlayCard(current);
+
+            // 如果觸發卡片機制 (棋盤會在對話框開著時的下一個畫格更新)
+            if (session.getOfferMask() != 0) {
+                offerAndPlayCard();
             }
-            
-            boardView.redraw();
-            refreshUi();
         } else {
             hintLabel.setText("Cannot place at " + pos.getX() + " " + pos.getY() + " " + pos.getZ());
         }
@@ -163,14 +278,22 @@ public class TicTacToe3DJavaFX extends Application {
     }
 
     private void handleCapture() {
+        if (isComputerTurn()) {
+            hintLabel.setText("The computer is thinking...");
+            return;
+        }
         if (!game.shouldOfferCard()) {
             hintLabel.setText("Captures only in card rounds after empowering.");
             return;
         }
-        if (!placedThisTurn) {
+        if (!hasPlaced()) {
             hintLabel.setText("Place a piece before capturing.");
             return;
         }
+        if (session.getOfferMask() != 0) {
+            offerAndPlayCard();
+            return;
+        }
         Position from = parsePositionTriplet(captureFrom.getText());
         Position target = parsePositionTriplet(captureTo.getText());
         if (from == null || target == null) {
@@ -179,8 +302,7 @@ public class TicTacToe3DJavaFX extends Application {
         }
         Board board = game.getBoard();
         Piece piece = board.inBounds(from) ? board.getPiece(from) : null;
-        Player current = players.get(currentPlayerIdx);
-        if (piece == null || piece.getOwner() != current) {
+        if (piece == null || piece.getOwner() != game.getCurrentPlayer()) {
             hintLabel.setText("No empowered piece there.");
             return;
         }
@@ -188,8 +310,7 @@ public class TicTacToe3DJavaFX extends Application {
             hintLabel.setText("Selected piece is not empowered.");
             return;
         }
-        if (game.empoweredCapture(current, piece, target)) {
-            boardView.redraw();
+        if (board.inBounds(target) && session.capture(cellOf(from), cellOf(target))) {
             refreshUi();
             hintLabel.setText("Capture resolved.");
         } else {
@@ -197,60 +318,74 @@ public class TicTacToe3DJavaFX extends Application {
         }
     }
 
-    private void offerAndPlayCard(Player player) {
-        List<Card> offers = game.offerCards();
-        ChoiceDialog<Card> dialog = new ChoiceDialog<>(offers.get(0), offers);
+    /**
+     * 讓玩家從發到的兩張卡中選一張並指定目標後打出。卡片不能略過：
+     * 關掉對話框的話，下一次點擊棋盤或按 End Turn 時會再問一次。
+     */
+    private void offerAndPlayCard() {
+        int mask = session.getOfferMask();
+        List<Integer> kinds = new ArrayList<>(2);
+        List<String> names = new ArrayList<>(2);
+        for (int kind = 0; kind < Move.CARD_KINDS; kind++) {
+            if ((mask & 1 << kind) != 0) {
+                kinds.add(kind);
+                names.add(Card.create(kind).getName());
+            }
+        }
+        // ChoiceDialog 沒有轉換器，直接用卡片名稱當選項
+        ChoiceDialog<String> dialog = new ChoiceDialog<>(names.get(0), names);
         dialog.setTitle("Card Offer");
         dialog.setHeaderText("Choose one card to play immediately");
         dialog.setContentText("Card:");
-        // 簡單的轉換器
-        dialog.setConverter(new javafx.util.StringConverter<>() {
-            @Override
-            public String toString(Card card) { return card == null ? "" : card.getName(); }
-            @Override
-            public Card fromString(String string) { return null; }
-        });
-        
-        Optional<Card> selection = dialog.showAndWait();
+
+        Optional<String> selection = dialog.showAndWait();
         if (selection.isEmpty()) {
-            hintLabel.setText("No card selected; skipping.");
+            refreshUi();
             return;
         }
 
-        Card card = selection.get();
-        ActionContext ctx = buildContextForCard(card, player);
-        game.useCard(card, player, ctx);
-        boardView.redraw();
+        int kind = kinds.get(names.indexOf(selection.get()));
+        int arg = promptCardArgument(kind);
+        if (arg < 0) {
+            refreshUi();
+            return;
+        }
+        if (!session.playCard(kind, arg)) {
+            refreshUi();
+            hintLabel.setText("That card cannot be played there.");
+            return;
+        }
         refreshUi();
-        if (card instanceof EmpowerCard) {
+        if (kind == Move.CARD_EMPOWER) {
             hintLabel.setText("Piece empowered: capture available this round.");
         } else {
-            hintLabel.setText("Card played: " + card.getName());
+            hintLabel.setText("Card played: " + Card.create(kind).getName());
         }
     }
 
-    private ActionContext buildContextForCard(Card card, Player current) {
-        if (card instanceof LayerShiftUpCard) {
-            Integer layer = promptLayer("Layer to shift up (0 bottom, 2 top):");
-            return new ActionContext(layer == null ? 0 : layer);
-        }
-        if (card instanceof LayerShiftDownCard) {
-            Integer layer = promptLayer("Layer to shift down (0 bottom, 2 top):");
-            return new ActionContext(layer == null ? 0 : layer);
-        }
-        if (card instanceof FreezeCard) {
-            Position pos = promptPosition("Enter empty cell to freeze (x y z):");
-            return new ActionContext(pos);
-        }
-        if (card instanceof TimeRewindCard) {
-            Piece piece = promptOwnPiece(current, "Enter your piece to rewind (x y z):");
-            return new ActionContext(piece);
-        }
-        if (card instanceof EmpowerCard) {
-            Piece piece = promptOwnPiece(current, "Enter your piece to empower (x y z):");
-            return new ActionContext(piece);
+    /**
+     * 卡片的 {@link Move#card(int, int)} 參數：層的編號或目標格子；沒有輸入時傳回 -1。
+     */
+    private int promptCardArgument(int kind) {
+        int last = game.getBoard().getTopology().getSize() - 1;
+        switch (kind) {
+            case Move.CARD_SHIFT_UP: {
+                Integer layer = promptLayer("Layer to shift up (0 bottom, " + last + " top):");
+                return layer == null ? -1 : layer;
+            }
+            case Move.CARD_SHIFT_DOWN: {
+                Integer layer = promptLayer("Layer to shift down (0 bottom, " + last + " top):");
+                return layer == null ? -1 : layer;
+            }
+            case Move.CARD_FREEZE: {
+                Position pos = promptPosition("Enter empty cell to freeze (x y z):");
+                return pos == null || !game.getBoard().inBounds(pos) ? -1 : cellOf(pos);
+            }
+            case Move.CARD_TIME_REWIND:
+                return promptOwnPiece(game.getCurrentPlayer(), "Enter your piece to rewind (x y z):");
+            default:
+                return promptOwnPiece(game.getCurrentPlayer(), "Enter your piece to empower (x y z):");
         }
-        return new ActionContext(0);
     }
 
     private Position promptPosition(String message) {
@@ -278,31 +413,39 @@ public class TicTacToe3DJavaFX extends Application {
         }
     }
 
-    private Piece promptOwnPiece(Player player, String prompt) {
+    /**
+     * 玩家輸入的自己棋子所在格子編號，沒有則傳回 -1。
+     */
+    private int promptOwnPiece(Player player, String prompt) {
         Position pos = promptPosition(prompt);
-        if (pos == null) return null;
+        if (pos == null) return -1;
         Board board = game.getBoard();
-        if (!board.inBounds(pos)) return null;
+        if (!board.inBounds(pos)) return -1;
         Piece piece = board.getPiece(pos);
-        if (piece == null || piece.getOwner() != player) return null;
-        return piece;
+        if (piece == null || piece.getOwner() != player) return -1;
+        return cellOf(pos);
+    }
+
+    private int cellOf(Position pos) {
+        return game.getBoard().getTopology().cellIndex(pos.getX(), pos.getY(), pos.getZ());
     }
 
     private void advanceTurn() {
-        if (!placedThisTurn) {
-            hintLabel.setText("Place a piece before ending your turn.");
+        if (isComputerTurn()) {
+            hintLabel.setText("The computer is thinking...");
             return;
         }
-        currentPlayerIdx = (currentPlayerIdx + 1) % players.size();
-        placedThisTurn = false;
-        if (currentPlayerIdx == 0) {
-            game.advanceRound();
+        if (!hasPlaced()) {
+            hintLabel.setText("Place a piece before ending your turn.");
+            return;
         }
-        if (game.isGameOver()) {
-            hintLabel.setText("Game over.");
+        if (session.getOfferMask() != 0) {
+            offerAndPlayCard();
+            return;
         }
-        boardView.redraw();
+        session.endTurn();
         refreshUi();
+        startComputerTurnIfDue();
     }
 
     private Position parsePosition(String xStr, String yStr, String zStr) {
@@ -310,7 +453,7 @@ public class TicTacToe3DJavaFX extends Application {
             int x = Integer.parseInt(xStr.trim());
             int y = Integer.parseInt(yStr.trim());
             int z = Integer.parseInt(zStr.trim());
-            return new Position(x, y, z);
+            return Position.of(x, y, z);
         } catch (Exception e) {
             return null;
         }
@@ -323,11 +466,21 @@ public class TicTacToe3DJavaFX extends Application {
         return parsePosition(parts[0], parts[1], parts[2]);
     }
 
-    private List<Player> promptPlayers() {
+    private boolean promptVsComputer() {
+        ChoiceDialog<String> dialog = new ChoiceDialog<>("Two players", "Two players", "Vs computer");
+        dialog.setTitle("Game Mode");
+        dialog.setHeaderText("Choose a game mode");
+        return dialog.showAndWait().map("Vs computer"::equals).orElse(false);
+    }
+
+    private List<Player> promptPlayers(boolean vsComputer) {
         TextInputDialog p1Dialog = new TextInputDialog("Player 1");
         p1Dialog.setTitle("Players");
         p1Dialog.setHeaderText("Enter name for Player 1 (X)");
         String p1 = p1Dialog.showAndWait().orElse("Player 1");
+        if (vsComputer) {
+            return List.of(new Player(p1.trim()), new Player("Computer"));
+        }
 
         TextInputDialog p2Dialog = new TextInputDialog("Player 2");
         p2Dialog.setTitle("Players");
@@ -338,13 +491,20 @@ public class TicTacToe3DJavaFX extends Application {
     }
 
     private void refreshUi() {
-        Player current = players.get(currentPlayerIdx);
+        Player current = game.getCurrentPlayer();
         roundLabel.setText("Round " + game.getCurrentRound() + " / " + game.getTurnLimit());
-        hintLabel.setText(placedThisTurn
-                ? "Capture (card rounds) or end your turn."
-                : current.getName() + " (" + symbolFor(current) + ") turn to place.");
+        if (game.isGameOver()) {
+            hintLabel.setText("Game over.");
+        } else if (isComputerTurn()) {
+            hintLabel.setText(current.getName() + " (" + symbolFor(current) + ") is thinking...");
+        } else {
+            hintLabel.setText(session.getOfferMask() != 0
+                    ? "Choose a card (click the board or End Turn)."
+                    : hasPlaced()
+                    ? "Capture (card rounds) or end your turn."
+                    : current.getName() + " (" + symbolFor(current) + ") turn to place.");
+        }
         scoreLabel.setText(scoreSummary());
-        boardView.redraw();
     }
 
     private String scoreSummary() {
@@ -368,17 +528,72 @@ public class TicTacToe3DJavaFX extends Application {
     // =============================================================
     // 改進後的 View 類別：支援大間距與滑鼠點擊
     // =============================================================
-    private class IsoBoardView extends Canvas {
-        private static final double CELL = 60; // 格子大小
+    /**
+     * 等角投影的棋盤畫布，分成四層疊起來的 Canvas：靜態的立方體 (支柱、格子
+     * 填色與格線) 只在大小改變時重畫；凍結格、棋子與壽命、得分連線三個覆蓋層
+     * 依遊戲事件標記為需要重畫，由 AnimationTimer 在下一個畫格只重畫有變動的
+     * 那幾層，放置與吃子的動畫也在同一個迴圈裡播放。
+     *
+     * <p>所有格子的投影座標依畫布大小與棋盤大小計算一次，存在基本型別陣列中；
+     * 點擊時逐層反解投影公式，不需配置任何物件。</p>
+     */
+    private class IsoBoardView extends Pane implements GameListener {
+        private static final double CELL = 60; // 格子大小 (3x3x3 時)
         private static final double LAYER_HEIGHT = 160; // 層間距：拉大讓中間不重疊
         private static final Color CELL_COLOR = Color.rgb(245, 230, 200);
+        private static final long POP_NANOS = 200_000_000L;
+        private static final long SLIDE_NANOS = 250_000_000L;
         
         private Game game;
         private Consumer<Position> onClickHandler;
 
+        private final Canvas cubeLayer = new Canvas();
+        private final Canvas frozenLayer = new Canvas();
+        private final Canvas pieceLayer = new Canvas();
+        private final Canvas lineLayer = new Canvas();
+        private boolean cubeDirty = true;
+        private boolean frozenDirty = true;
+        private boolean piecesDirty = true;
+        private boolean linesDirty = true;
+
+        // 動畫：每格的開始時間 (0 = 沒有動畫)，吃子時另記棋子的來源格
+        private long[] animationStart = new long[0];
+        private int[] slideFrom = new int[0];
+        private int animating;
+        private boolean running;
+
+        private final AnimationTimer frameLoop = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                renderFrame(now);
+            }
+        };
+
+        // 幾何快取：對應的畫布大小與棋盤大小改變時才重算
+        private double cachedWidth = -1;
+        private double cachedHeight = -1;
+        private int size;
+        private double cell;
+        private double layerHeight;
+        private double originX;
+        private double originY;
+        private double[][] cellXs; // 每格四個頂點，可直接交給 fillPolygon
+        private double[][] cellYs;
+        private double[] centerX;
+        private double[] centerY;
+        private final double[] pillarX = new double[4];
+        private final double[] pillarBottomY = new double[4];
+        private final double[] pillarTopY = new double[4];
+
         IsoBoardView(Consumer<Position> onClickHandler) {
-            super(800, 750); // 加大 Canvas
             this.onClickHandler = onClickHandler;
+            setPrefSize(800, 750); // 加大 Canvas
+            for (Canvas layer : new Canvas[] {cubeLayer, frozenLayer, pieceLayer, lineLayer}) {
+                layer.widthProperty().bind(widthProperty());
+                layer.heightProperty().bind(heightProperty());
+                layer.setMouseTransparent(true);
+            }
+            getChildren().addAll(cubeLayer, frozenLayer, pieceLayer, lineLayer);
             
             widthProperty().addListener((obs, oldV, newV) -> redraw());
             heightProperty().addListener((obs, oldV, newV) -> redraw());
@@ -387,190 +602,697 @@ public class TicTacToe3DJavaFX extends Application {
             this.setOnMouseClicked(e -> handleMouseClick(e.getX(), e.getY()));
         }
 
+        /**
+         * 換成另一局 (null 表示這個視圖暫時不用，停止監聽與畫格迴圈)。
+         */
         void setGame(Game game) {
+            if (this.game != null) {
+                this.game.removeListener(this);
+            }
             this.game = game;
+            this.cachedWidth = -1;
+            if (game == null) {
+                running = false;
+                frameLoop.stop();
+                return;
+            }
+            game.addListener(this);
+            redraw();
+        }
+
+        @Override
+        public void gameChanged(Game game, GameEvents events) {
+            long now = System.nanoTime();
+            for (int i = 0; i < events.size(); i++) {
+                switch (events.type(i)) {
+                    case GameEvents.PIECE_PLACED:
+                        startAnimation(events.cell(i), -1, now);
+                        break;
+                    case GameEvents.PIECE_CAPTURED:
+                        startAnimation(events.cell(i), events.value(i), now);
+                        break;
+                    case GameEvents.LAYERS_SWAPPED:
+                        frozenDirty = true;
+                        piecesDirty = true;
+                        break;
+                    case GameEvents.CELL_FROZEN:
+                    case GameEvents.CELL_UNFROZEN:
+                        frozenDirty = true;
+                        break;
+                    case GameEvents.PIECE_EVICTED:
+                    case GameEvents.PIECE_EMPOWERED:
+                    case GameEvents.PIECE_REWOUND: // 壽命重置
+                    case GameEvents.ROUND_ADVANCED: // 壽命倒數每回合都會變
+                        piecesDirty = true;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            // 每次放置、吃子或出牌都會重新計算「最近得分的連線」
+            if (events.contains(GameEvents.PIECE_PLACED) || events.contains(GameEvents.PIECE_CAPTURED)
+                    || events.contains(GameEvents.LAYERS_SWAPPED) || events.contains(GameEvents.CELL_FROZEN)
+                    || events.contains(GameEvents.PIECE_EMPOWERED) || events.contains(GameEvents.PIECE_REWOUND)
+                    || events.contains(GameEvents.LINE_SCORED)) {
+                linesDirty = true;
+            }
+            requestFrame();
         }
 
         // 處理點擊事件：反推座標
         private void handleMouseClick(double mx, double my) {
             if (game == null) return;
-            
-            double originX = getWidth() / 2;
-            double originY = getHeight() / 2 + 150; // 原點下移
-
-            // 從最上層往最下層檢查 (Z=2 -> Z=0)
-            // 這樣如果視覺上有重疊，會優先點到上面的
-            for (int z = Board.SIZE - 1; z >= 0; z--) {
-                for (int x = 0; x < Board.SIZE; x++) {
-                    for (int y = 0; y < Board.SIZE; y++) {
-                        Point2D[] poly = getPolygonPoints(originX, originY, x, y, z);
-                        
-                        // 檢查點是否在多邊形內
-                        if (contains(mx, my, poly)) {
-                            // 觸發回調
-                            onClickHandler.accept(new Position(x, y, z));
-                            return; // 找到後立即停止
-                        }
-                    }
-                }
+            int cellIndex = cellAt(mx, my);
+            if (cellIndex >= 0) {
+                onClickHandler.accept(game.getBoard().getTopology().position(cellIndex));
             }
         }
-        
-        // 幾何算法：判斷點是否在多邊形內 (Ray Casting Algorithm)
-        private boolean contains(double testx, double testy, Point2D[] poly) {
-            int i, j;
-            boolean c = false;
-            int nvert = poly.length;
-            for (i = 0, j = nvert - 1; i < nvert; j = i++) {
-                if (((poly[i].getY() > testy) != (poly[j].getY() > testy)) &&
-                    (testx < (poly[j].getX() - poly[i].getX()) * (testy - poly[i].getY()) / (poly[j].getY() - poly[i].getY()) + poly[i].getX())) {
-                    c = !c;
+
+        /**
+         * 點擊位置所在的格子，找不到時回傳 -1。每一層的投影是可逆的線性映射：
+         * u = x - y，v = x + y，所以 x = (u + v) / 2，y = (v - u) / 2。
+         * 從最上層往下檢查，視覺上重疊時優先點到上面的格子。
+         */
+        int cellAt(double mx, double my) {
+            if (game == null) return -1;
+            ensureGeometry();
+            double u = (mx - originX) / (cell * 0.9);
+            for (int z = size - 1; z >= 0; z--) {
+                double v = (my - originY + z * layerHeight) / (cell * 0.45);
+                double x = (u + v) / 2;
+                double y = (v - u) / 2;
+                if (x >= 0 && y >= 0 && x < size && y < size) {
+                    return (int) x + size * ((int) y + size * z);
                 }
             }
-            return c;
+            return -1;
         }
 
+        /**
+         * 把所有圖層標記為需要重畫，於下一個畫格生效。
+         */
         void redraw() {
-            if (game == null) return;
-            GraphicsContext gc = getGraphicsContext2D();
-            gc.clearRect(0, 0, getWidth(), getHeight());
+            cubeDirty = true;
+            frozenDirty = true;
+            piecesDirty = true;
+            linesDirty = true;
+            requestFrame();
+        }
 
-            double originX = getWidth() / 2;
-            double originY = getHeight() / 2 + 150; 
+        private void requestFrame() {
+            if (!running && game != null) {
+                running = true;
+                frameLoop.start();
+            }
+        }
 
-            // 繪圖順序：從下往上 (Z=0 -> Z=2) 以確保遮擋關係正確
-            drawLayerConnectors(gc, originX, originY);
-            drawCells(gc, originX, originY);
-            drawPieces(gc, originX, originY);
-            drawLines(gc, originX, originY);
+        private void startAnimation(int target, int from, long now) {
+            ensureGeometry();
+            if (animationStart[target] == 0) {
+                animating++;
+            }
+            animationStart[target] = now;
+            slideFrom[target] = from;
+            piecesDirty = true;
         }
 
-        private void drawCells(GraphicsContext gc, double originX, double originY) {
-            Board board = game.getBoard();
-            for (int z = 0; z < Board.SIZE; z++) {
-                double shade = 1.0 - (z * 0.08); // 每一層顏色稍微不同
-                Color layerColor = CELL_COLOR.deriveColor(0, 1, shade, 1);
-                
-                for (int x = 0; x < Board.SIZE; x++) {
-                    for (int y = 0; y < Board.SIZE; y++) {
-                        Point2D[] p = getPolygonPoints(originX, originY, x, y, z);
-                        double[] xs = {p[0].getX(), p[1].getX(), p[2].getX(), p[3].getX()};
-                        double[] ys = {p[0].getY(), p[1].getY(), p[2].getY(), p[3].getY()};
-                        
-                        gc.setFill(layerColor);
-                        gc.fillPolygon(xs, ys, 4);
-                        gc.setStroke(Color.BLACK);
-                        gc.setLineWidth(1.0);
-                        gc.strokePolygon(xs, ys, 4);
-
-                        Position pos = new Position(x, y, z);
-                        if (board.isFrozen(pos)) {
-                            gc.setFill(Color.rgb(180, 200, 220, 0.6));
-                            gc.fillPolygon(xs, ys, 4);
-                            Point2D center = projectCenter(originX, originY, pos);
-                            gc.setFill(Color.DARKBLUE);
-                            gc.setFont(Font.font(12));
-                            gc.fillText("FZ", center.getX() - 6, center.getY());
-                        }
+        private void renderFrame(long now) {
+            ensureGeometry();
+            if (cubeDirty) {
+                GraphicsContext gc = clear(cubeLayer);
+                // 繪圖順序：從下往上 (Z=0 -> Z=2) 以確保遮擋關係正確
+                drawLayerConnectors(gc);
+                drawCells(gc);
+                cubeDirty = false;
+            }
+            if (frozenDirty) {
+                drawFrozen(clear(frozenLayer));
+                frozenDirty = false;
+            }
+            if (piecesDirty || animating > 0) {
+                drawPieces(clear(pieceLayer), now);
+                piecesDirty = false;
+            }
+            if (linesDirty) {
+                drawLines(clear(lineLayer));
+                linesDirty = false;
+            }
+            if (animating == 0) {
+                running = false;
+                frameLoop.stop();
+            }
+        }
+
+        private GraphicsContext clear(Canvas layer) {
+            GraphicsContext gc = layer.getGraphicsContext2D();
+            gc.clearRect(0, 0, layer.getWidth(), layer.getHeight());
+            return gc;
+        }
+
+        /**
+         * 需要時重算幾何快取；重算後所有圖層都要重畫。
+         */
+        private void ensureGeometry() {
+            int boardSize = game.getBoard().getTopology().getSize();
+            if (getWidth() == cachedWidth && getHeight() == cachedHeight && boardSize == size) {
+                return;
+            }
+            cubeDirty = true;
+            frozenDirty = true;
+            piecesDirty = true;
+            linesDirty = true;
+            cachedWidth = getWidth();
+            cachedHeight = getHeight();
+            size = boardSize;
+            // 棋盤變大時縮小格子與層距，讓整個立方體維持在相同範圍內
+            cell = CELL * 3 / size;
+            layerHeight = LAYER_HEIGHT * 3 / size;
+            originX = cachedWidth / 2;
+            originY = cachedHeight / 2 + 150; // 原點下移
+
+            int cells = size * size * size;
+            cellXs = new double[cells][4];
+            cellYs = new double[cells][4];
+            centerX = new double[cells];
+            centerY = new double[cells];
+            if (animationStart.length != cells) {
+                animationStart = new long[cells];
+                slideFrom = new int[cells];
+                animating = 0;
+            }
+            for (int z = 0; z < size; z++) {
+                for (int y = 0; y < size; y++) {
+                    for (int x = 0; x < size; x++) {
+                        int index = x + size * (y + size * z);
+                        double[] xs = cellXs[index];
+                        double[] ys = cellYs[index];
+                        xs[0] = projectX(x, y);
+                        ys[0] = projectY(x, y, z);
+                        xs[1] = projectX(x + 1, y);
+                        ys[1] = projectY(x + 1, y, z);
+                        xs[2] = projectX(x + 1, y + 1);
+                        ys[2] = projectY(x + 1, y + 1, z);
+                        xs[3] = projectX(x, y + 1);
+                        ys[3] = projectY(x, y + 1, z);
+                        centerX[index] = projectX(x + 0.5, y + 0.5);
+                        centerY[index] = projectY(x + 0.5, y + 0.5, z);
                     }
                 }
             }
+            // 四個角落支柱，延伸到頂部上方一層
+            for (int c = 0; c < 4; c++) {
+                int cx = (c & 1) * size;
+                int cy = (c >> 1) * size;
+                pillarX[c] = projectX(cx, cy);
+                pillarBottomY[c] = projectY(cx, cy, 0);
+                pillarTopY[c] = projectY(cx, cy, size);
+            }
+        }
+
+        private void drawCells(GraphicsContext gc) {
+            gc.setStroke(Color.BLACK);
+            gc.setLineWidth(1.0);
+            for (int z = 0; z < size; z++) {
+                double shade = 1.0 - (z * 0.08 * 3 / size); // 每一層顏色稍微不同
+                gc.setFill(CELL_COLOR.deriveColor(0, 1, shade, 1));
+                
+                int end = (z + 1) * size * size;
+                for (int index = z * size * size; index < end; index++) {
+                    gc.fillPolygon(cellXs[index], cellYs[index], 4);
+                    gc.strokePolygon(cellXs[index], cellYs[index], 4);
+                }
+            }
+        }
+
+        private void drawFrozen(GraphicsContext gc) {
+            Board board = game.getBoard();
+            gc.setFont(Font.font(12));
+            for (int index = 0; index < centerX.length; index++) {
+                if (board.isFrozen(index)) {
+                    gc.setFill(Color.rgb(180, 200, 220, 0.6));
+                    gc.fillPolygon(cellXs[index], cellYs[index], 4);
+                    gc.setFill(Color.DARKBLUE);
+                    gc.fillText("FZ", centerX[index] - 6, centerY[index]);
+                }
+            }
         }
         
         // 繪製角落支柱，讓畫面看起來像一個整體結構
-        private void drawLayerConnectors(GraphicsContext gc, double originX, double originY) {
+        private void drawLayerConnectors(GraphicsContext gc) {
             gc.setStroke(Color.GRAY);
             gc.setLineDashes(4); // 虛線
             gc.setLineWidth(1);
-            
-            // 四個角落座標
-            int[][] corners = {{0,0}, {3,0}, {0,3}, {3,3}};
-            for(int[] c : corners) {
-                Point2D bot = project(originX, originY, c[0], c[1], 0);
-                Point2D top = project(originX, originY, c[0], c[1], 3); // 延伸到頂部上方一點
-                gc.strokeLine(bot.getX(), bot.getY(), top.getX(), top.getY());
+            for (int c = 0; c < 4; c++) {
+                gc.strokeLine(pillarX[c], pillarBottomY[c], pillarX[c], pillarTopY[c]);
             }
             gc.setLineDashes(null);
         }
 
-        private void drawPieces(GraphicsContext gc, double originX, double originY) {
+        private void drawPieces(GraphicsContext gc, long now) {
             Board board = game.getBoard();
-            gc.setFont(Font.font("Arial", FontWeight.BOLD, 20));
+            Font symbolFont = Font.font("Arial", FontWeight.BOLD, 20);
+            Font lifeFont = Font.font(10);
+            gc.setLineWidth(1.0);
             
-            for (int z = 0; z < Board.SIZE; z++) {
-                for (int x = 0; x < Board.SIZE; x++) {
-                    for (int y = 0; y < Board.SIZE; y++) {
-                        Position pos = new Position(x, y, z);
-                        Piece piece = board.getPiece(pos);
-                        if (piece == null) continue;
-
-                        Point2D center = projectCenter(originX, originY, pos);
-                        Color pColor = players.indexOf(piece.getOwner()) == 0 ? Color.RED : Color.BLUE;
-                        
-                        // 畫一個背景圓，讓字更清楚
-                        gc.setFill(Color.WHITE);
-                        gc.fillOval(center.getX()-12, center.getY()-12, 24, 24);
-                        gc.setStroke(pColor);
-                        gc.strokeOval(center.getX()-12, center.getY()-12, 24, 24);
-
-                        String symbol = symbolFor(piece.getOwner());
-                        if (piece.isEmpowered()) symbol += "*";
-                        
-                        gc.setFill(pColor);
-                        gc.fillText(symbol, center.getX() - 6, center.getY() + 7);
-
-                        // 顯示壽命 (如果需要)
-                        try {
-                            // 注意：如果您的 Piece 類別還沒修復 turnsLifeRemaining，這裡可能會報錯
-                            // 建議確保 Piece.java 裡面有這個方法
-                             int life = piece.turnsLifeRemaining(game.getTurnLimit());
-                             gc.setFont(Font.font(10));
-                             gc.setFill(Color.BLACK);
-                             gc.fillText(String.valueOf(life), center.getX() + 10, center.getY() - 10);
-                             gc.setFont(Font.font("Arial", FontWeight.BOLD, 20)); // 還原字體
-                        } catch (Error | Exception e) {
-                            // 忽略方法找不到的錯誤，避免程式崩潰
-                        }
+            for (int index = 0; index < centerX.length; index++) {
+                Piece piece = board.getPiece(index);
+                if (piece == null) {
+                    if (animationStart[index] != 0) {
+                        endAnimation(index); // 棋子在動畫中被移走
+                    }
+                    continue;
+                }
+
+                double cx = centerX[index];
+                double cy = centerY[index];
+                double scale = 1.0;
+                if (animationStart[index] != 0) {
+                    long elapsed = now - animationStart[index];
+                    int from = slideFrom[index];
+                    if (from >= 0) {
+                        // 吃子：從來源格滑到目標格
+                        double t = Math.max(0, Math.min(1, elapsed / (double) SLIDE_NANOS));
+                        double ease = 1 - (1 - t) * (1 - t);
+                        cx = centerX[from] + (cx - centerX[from]) * ease;
+                        cy = centerY[from] + (cy - centerY[from]) * ease;
+                        if (elapsed >= SLIDE_NANOS) endAnimation(index);
+                    } else {
+                        // 放置：由小放大
+                        double t = Math.max(0, Math.min(1, elapsed / (double) POP_NANOS));
+                        scale = 0.3 + 0.7 * t;
+                        if (elapsed >= POP_NANOS) endAnimation(index);
                     }
                 }
+                Color pColor = players.indexOf(piece.getOwner()) == 0 ? Color.RED : Color.BLUE;
+                
+                gc.save();
+                gc.translate(cx, cy);
+                gc.scale(scale, scale);
+                // 畫一個背景圓，讓字更清楚
+                gc.setFill(Color.WHITE);
+                gc.fillOval(-12, -12, 24, 24);
+                gc.setStroke(pColor);
+                gc.strokeOval(-12, -12, 24, 24);
+
+                String symbol = symbolFor(piece.getOwner());
+                if (piece.isEmpowered()) symbol += "*";
+                
+                gc.setFont(symbolFont);
+                gc.setFill(pColor);
+                gc.fillText(symbol, -6, 7);
+
+                // 顯示壽命
+                int life = piece.turnsLifeRemaining(game.getTurnLimit());
+                gc.setFont(lifeFont);
+                gc.setFill(Color.BLACK);
+                gc.fillText(String.valueOf(life), 10, -10);
+                gc.restore();
             }
         }
 
-        private void drawLines(GraphicsContext gc, double originX, double originY) {
+        private void endAnimation(int index) {
+            animationStart[index] = 0;
+            animating--;
+        }
+
+        private void drawLines(GraphicsContext gc) {
             List<Game.ScoredLine> lines = game.getLastCompletedLines();
             if (lines.isEmpty()) return;
             
+            BoardTopology topology = game.getBoard().getTopology();
             gc.setLineWidth(4);
             for (Game.ScoredLine line : lines) {
                 List<Position> positions = line.getPositions();
-                Point2D start = projectCenter(originX, originY, positions.get(0));
-                Point2D end = projectCenter(originX, originY, positions.get(positions.size() - 1));
+                Position first = positions.get(0);
+                Position last = positions.get(positions.size() - 1);
+                int start = topology.cellIndex(first.getX(), first.getY(), first.getZ());
+                int end = topology.cellIndex(last.getX(), last.getY(), last.getZ());
                 Color color = players.indexOf(line.getPlayer()) == 0 ? Color.RED : Color.BLUE;
                 gc.setStroke(color);
-                gc.strokeLine(start.getX(), start.getY(), end.getX(), end.getY());
+                gc.strokeLine(centerX[start], centerY[start], centerX[end], centerY[end]);
             }
             gc.setLineWidth(1.0);
         }
 
-        // 輔助：取得一個格子的四個頂點
-        private Point2D[] getPolygonPoints(double ox, double oy, int x, int y, int z) {
-            return new Point2D[] {
-                project(ox, oy, x, y, z),
-                project(ox, oy, x + 1, y, z),
-                project(ox, oy, x + 1, y + 1, z),
-                project(ox, oy, x, y + 1, z)
+        // Isometric 投影公式
+        private double projectX(double x, double y) {
+            return originX + (x - y) * cell * 0.9;
+        }
+
+        private double projectY(double x, double y, double z) {
+            return originY + (x + y) * cell * 0.45 - z * layerHeight;
+        }
+    }
+
+    /**
+     * 真正的 3D 棋盤：SubScene 加上 PerspectiveCamera，可拖曳環繞、滾輪縮放。
+     * 每種棋子與格子底板各只有一個共用的 TriangleMesh，所有格子的 MeshView
+     * 都參照同一份網格與少數共用材質；遊戲事件只更新受影響格子的節點屬性，
+     * 其餘的繪製交給 JavaFX 的 3D 管線。點擊使用 JavaFX 的 PickResult，
+     * 每個節點的 userData 是它的格子編號。
+     */
+    private class SubSceneBoardView extends Pane implements GameListener {
+        private static final double CELL = 40; // 格距
+        private static final double LAYER = 70; // 層距
+        private static final double PLATE = 3; // 底板厚度
+        private static final double PIECE_HEIGHT = 8;
+        private static final Color CELL_COLOR = Color.rgb(245, 230, 200);
+
+        private final Consumer<Position> onClickHandler;
+        private final Group boardGroup = new Group();
+        private final Group lineGroup = new Group();
+        private final SubScene subScene;
+        private final Rotate yaw = new Rotate(-30, Rotate.Y_AXIS);
+        private final Rotate pitch = new Rotate(-30, Rotate.X_AXIS);
+        private final Translate zoom = new Translate(0, 0, -700);
+        private double dragX;
+        private double dragY;
+        private double dragYaw;
+        private double dragPitch;
+
+        // 共用網格與材質
+        private final TriangleMesh plateMesh;
+        private final TriangleMesh[] pieceMeshes; // X、O、其他玩家
+        private final PhongMaterial frozenMaterial = new PhongMaterial(Color.rgb(150, 180, 215));
+        private final PhongMaterial[][] pieceMaterials = new PhongMaterial[2][2]; // [顏色][是否強化]
+        private PhongMaterial[] layerMaterials = new PhongMaterial[0];
+
+        private Game game;
+        private int size;
+        private MeshView[] plates = new MeshView[0];
+        private MeshView[] pieces = new MeshView[0];
+
+        SubSceneBoardView(Consumer<Position> onClickHandler) {
+            this.onClickHandler = onClickHandler;
+            setPrefSize(800, 750);
+
+            plateMesh = new MeshBuilder().box(0, 0, 0, CELL * 0.94, PLATE, CELL * 0.94, 0).build();
+            double bar = CELL * 0.78;
+            pieceMeshes = new TriangleMesh[] {
+                new MeshBuilder()
+                        .box(0, 0, 0, bar, PIECE_HEIGHT, CELL * 0.16, 45)
+                        .box(0, 0, 0, bar, PIECE_HEIGHT, CELL * 0.16, -45)
+                        .build(),
+                new MeshBuilder().ring(CELL * 0.22, CELL * 0.34, PIECE_HEIGHT, 32).build(),
+                new MeshBuilder().box(0, 0, 0, CELL * 0.45, PIECE_HEIGHT * 1.5, CELL * 0.45, 45).build()
             };
+            Color[] colors = {Color.RED, Color.BLUE};
+            for (int c = 0; c < colors.length; c++) {
+                pieceMaterials[c][0] = new PhongMaterial(colors[c]);
+                pieceMaterials[c][1] = new PhongMaterial(colors[c].deriveColor(0, 0.6, 1.4, 1));
+                pieceMaterials[c][1].setSpecularColor(Color.WHITE);
+            }
+
+            PointLight light = new PointLight(Color.WHITE);
+            light.setTranslateX(-400);
+            light.setTranslateY(-700);
+            light.setTranslateZ(-600);
+            Group world = new Group(new AmbientLight(Color.rgb(140, 140, 140)), light, boardGroup, lineGroup);
+
+            PerspectiveCamera camera = new PerspectiveCamera(true);
+            camera.setNearClip(1);
+            camera.setFarClip(20000);
+            camera.setFieldOfView(35);
+            camera.getTransforms().addAll(yaw, pitch, zoom);
+
+            subScene = new SubScene(world, 800, 750, true, SceneAntialiasing.BALANCED);
+            subScene.setFill(Color.rgb(244, 244, 244));
+            subScene.setCamera(camera);
+            subScene.widthProperty().bind(widthProperty());
+            subScene.heightProperty().bind(heightProperty());
+            getChildren().add(subScene);
+
+            // 拖曳環繞、滾輪縮放
+            subScene.setOnMousePressed(e -> {
+                dragX = e.getSceneX();
+                dragY = e.getSceneY();
+                dragYaw = yaw.getAngle();
+                dragPitch = pitch.getAngle();
+            });
+            subScene.setOnMouseDragged(e -> {
+                yaw.setAngle(dragYaw + (e.getSceneX() - dragX) * 0.4);
+                pitch.setAngle(Math.max(-89, Math.min(89, dragPitch - (e.getSceneY() - dragY) * 0.4)));
+            });
+            subScene.setOnScroll(e -> {
+                double distance = -zoom.getZ() * Math.pow(1.0015, -e.getDeltaY());
+                zoom.setZ(-Math.max(100, Math.min(10000, distance)));
+            });
+            subScene.setOnMouseClicked(e -> {
+                if (!e.isStillSincePress() || game == null) return; // 拖曳結束不算點擊
+                Node node = e.getPickResult().getIntersectedNode();
+                if (node != null && node.getUserData() instanceof Integer) {
+                    onClickHandler.accept(game.getBoard().getTopology().position((Integer) node.getUserData()));
+                }
+            });
         }
 
-        private Point2D projectCenter(double originX, double originY, Position pos) {
-            return project(originX, originY, pos.getX() + 0.5, pos.getY() + 0.5, pos.getZ());
+        /**
+         * 換成另一局 (null 表示這個視圖暫時不用，停止監聽)。
+         */
+        void setGame(Game game) {
+            if (this.game != null) {
+                this.game.removeListener(this);
+            }
+            this.game = game;
+            if (game == null) return;
+            game.addListener(this);
+            build();
         }
 
-        private Point2D project(double originX, double originY, double x, double y, double z) {
-            // Isometric 投影公式
-            double isoX = (x - y) * CELL * 0.9;
-            double isoY = (x + y) * CELL * 0.45 - z * LAYER_HEIGHT;
-            return new Point2D(originX + isoX, originY + isoY);
+        @Override
+        public void gameChanged(Game game, GameEvents events) {
+            for (int i = 0; i < events.size(); i++) {
+                int cell = events.cell(i);
+                switch (events.type(i)) {
+                    case GameEvents.PIECE_PLACED:
+                    case GameEvents.PIECE_EVICTED:
+                    case GameEvents.PIECE_EMPOWERED:
+                    case GameEvents.PIECE_REWOUND:
+                    case GameEvents.CELL_FROZEN:
+                    case GameEvents.CELL_UNFROZEN:
+                        update(cell);
+                        break;
+                    case GameEvents.PIECE_CAPTURED:
+                        update(cell);
+                        update(events.value(i));
+                        break;
+                    case GameEvents.LAYERS_SWAPPED:
+                        updateLayer(cell);
+                        updateLayer(events.value(i));
+                        break;
+                    default:
+                        break;
+                }
+            }
+            // 與等角視圖相同：這些動作之後「最近得分的連線」會重新計算
+            if (events.contains(GameEvents.PIECE_PLACED) || events.contains(GameEvents.PIECE_CAPTURED)
+                    || events.contains(GameEvents.LAYERS_SWAPPED) || events.contains(GameEvents.CELL_FROZEN)
+                    || events.contains(GameEvents.PIECE_EMPOWERED) || events.contains(GameEvents.PIECE_REWOUND)
+                    || events.contains(GameEvents.LINE_SCORED)) {
+                rebuildLines();
+            }
+        }
+
+        /**
+         * 依棋盤大小建立每格的底板與棋子節點 (大小不變時沿用)，再同步目前的盤面。
+         */
+        private void build() {
+            int boardSize = game.getBoard().getTopology().getSize();
+            if (boardSize != size) {
+                size = boardSize;
+                int cells = size * size * size;
+                plates = new MeshView[cells];
+                pieces = new MeshView[cells];
+                layerMaterials = new PhongMaterial[size];
+                for (int z = 0; z < size; z++) {
+                    double shade = 1.0 - (z * 0.08 * 3 / size); // 每一層顏色稍微不同
+                    layerMaterials[z] = new PhongMaterial(CELL_COLOR.deriveColor(0, 1, shade, 1));
+                }
+                for (int index = 0; index < cells; index++) {
+                    Integer cellId = index;
+                    MeshView plate = new MeshView(plateMesh);
+                    plate.setCullFace(CullFace.NONE);
+                    plate.setUserData(cellId);
+                    place(plate, index, 0);
+                    MeshView piece = new MeshView(pieceMeshes[0]);
+                    piece.setCullFace(CullFace.NONE);
+                    piece.setUserData(cellId);
+                    piece.setVisible(false);
+                    place(piece, index, -(PLATE + PIECE_HEIGHT) / 2);
+                    plates[index] = plate;
+                    pieces[index] = piece;
+                }
+                boardGroup.getChildren().clear();
+                boardGroup.getChildren().addAll(plates);
+                boardGroup.getChildren().addAll(pieces);
+                zoom.setZ(-(160 * size + 250));
+            }
+            for (int index = 0; index < plates.length; index++) {
+                update(index);
+            }
+            rebuildLines();
+        }
+
+        private void place(Node node, int index, double lift) {
+            node.setTranslateX(centerX(index));
+            node.setTranslateY(centerY(index) + lift);
+            node.setTranslateZ(centerZ(index));
+        }
+
+        private void updateLayer(int z) {
+            int start = z * size * size;
+            for (int index = start; index < start + size * size; index++) {
+                update(index);
+            }
+        }
+
+        private void update(int index) {
+            Board board = game.getBoard();
+            plates[index].setMaterial(board.isFrozen(index)
+                    ? frozenMaterial
+                    : layerMaterials[index / (size * size)]);
+            Piece piece = board.getPiece(index);
+            MeshView view = pieces[index];
+            if (piece == null) {
+                view.setVisible(false);
+                return;
+            }
+            int owner = game.getPlayers().indexOf(piece.getOwner());
+            view.setMesh(pieceMeshes[Math.min(owner, pieceMeshes.length - 1)]);
+            view.setMaterial(pieceMaterials[owner == 0 ? 0 : 1][piece.isEmpowered() ? 1 : 0]);
+            view.setVisible(true);
+        }
+
+        private void rebuildLines() {
+            lineGroup.getChildren().clear();
+            BoardTopology topology = game.getBoard().getTopology();
+            for (Game.ScoredLine line : game.getLastCompletedLines()) {
+                List<Position> positions = line.getPositions();
+                Position first = positions.get(0);
+                Position last = positions.get(positions.size() - 1);
+                int start = topology.cellIndex(first.getX(), first.getY(), first.getZ());
+                int end = topology.cellIndex(last.getX(), last.getY(), last.getZ());
+                double lift = -(PLATE / 2 + PIECE_HEIGHT * 1.5);
+                double dx = centerX(end) - centerX(start);
+                double dy = centerY(end) - centerY(start);
+                double dz = centerZ(end) - centerZ(start);
+                double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+                // 圓柱預設沿 Y 軸，轉到連線方向：轉軸 = Y × d，角度 = acos(d.y / |d|)
+                Cylinder bar = new Cylinder(2.5, length);
+                bar.setMaterial(pieceMaterials[game.getPlayers().indexOf(line.getPlayer()) == 0 ? 0 : 1][1]);
+                bar.setMouseTransparent(true);
+                bar.setTranslateX(centerX(start) + dx / 2);
+                bar.setTranslateY(centerY(start) + dy / 2 + lift);
+                bar.setTranslateZ(centerZ(start) + dz / 2);
+                if (dx != 0 || dz != 0) {
+                    bar.getTransforms().add(new Rotate(Math.toDegrees(Math.acos(dy / length)), new Point3D(dz, 0, -dx)));
+                }
+                lineGroup.getChildren().add(bar);
+            }
+        }
+
+        // 棋盤置中於原點；JavaFX 的 Y 軸朝下，所以高層的 Y 比較小
+        private double centerX(int index) {
+            return (index % size - (size - 1) / 2.0) * CELL;
+        }
+
+        private double centerY(int index) {
+            return -(index / (size * size) - (size - 1) / 2.0) * LAYER;
+        }
+
+        private double centerZ(int index) {
+            return (index / size % size - (size - 1) / 2.0) * CELL;
+        }
+    }
+
+    /**
+     * 組出 TriangleMesh 的小工具：累積頂點與三角形，最後一次寫入網格。
+     * 只用一組 (0, 0) 貼圖座標，材質都是單色。
+     */
+    private static final class MeshBuilder {
+        private float[] points = new float[96];
+        private int[] faces = new int[192];
+        private int pointCount;
+        private int faceCount;
+
+        MeshBuilder box(double cx, double cy, double cz, double sx, double sy, double sz, double angleY) {
+            double cos = Math.cos(Math.toRadians(angleY));
+            double sin = Math.sin(Math.toRadians(angleY));
+            int base = pointCount / 3;
+            for (int i = 0; i < 8; i++) {
+                double x = ((i & 1) == 0 ? -sx : sx) / 2;
+                double y = ((i & 2) == 0 ? -sy : sy) / 2;
+                double z = ((i & 4) == 0 ? -sz : sz) / 2;
+                point(cx + x * cos - z * sin, cy + y, cz + x * sin + z * cos);
+            }
+            quad(base, base + 1, base + 3, base + 2); // z-
+            quad(base + 4, base + 6, base + 7, base + 5); // z+
+            quad(base, base + 4, base + 5, base + 1); // y-
+            quad(base + 2, base + 3, base + 7, base + 6); // y+
+            quad(base, base + 2, base + 6, base + 4); // x-
+            quad(base + 1, base + 5, base + 7, base + 3); // x+
+            return this;
+        }
+
+        /**
+         * 平放在 XZ 平面上的圓環 (O 棋子)，每段四個頂點：外上、外下、內上、內下。
+         */
+        MeshBuilder ring(double inner, double outer, double height, int segments) {
+            int base = pointCount / 3;
+            for (int i = 0; i < segments; i++) {
+                double a = 2 * Math.PI * i / segments;
+                double cos = Math.cos(a);
+                double sin = Math.sin(a);
+                point(outer * cos, -height / 2, outer * sin);
+                point(outer * cos, height / 2, outer * sin);
+                point(inner * cos, -height / 2, inner * sin);
+                point(inner * cos, height / 2, inner * sin);
+            }
+            for (int i = 0; i < segments; i++) {
+                int a = base + 4 * i;
+                int b = base + 4 * ((i + 1) % segments);
+                quad(a, b, b + 2, a + 2); // 上
+                quad(a + 1, a + 3, b + 3, b + 1); // 下
+                quad(a, a + 1, b + 1, b); // 外
+                quad(a + 2, b + 2, b + 3, a + 3); // 內
+            }
+            return this;
+        }
+
+        TriangleMesh build() {
+            TriangleMesh mesh = new TriangleMesh();
+            mesh.getPoints().setAll(Arrays.copyOf(points, pointCount));
+            mesh.getTexCoords().setAll(0, 0);
+            mesh.getFaces().setAll(Arrays.copyOf(faces, faceCount));
+            mesh.getFaceSmoothingGroups().setAll(new int[faceCount / 6]); // 不平滑：方塊保留稜角
+            return mesh;
+        }
+
+        private void point(double x, double y, double z) {
+            if (pointCount + 3 > points.length) {
+                points = Arrays.copyOf(points, points.length * 2);
+            }
+            points[pointCount++] = (float) x;
+            points[pointCount++] = (float) y;
+            points[pointCount++] = (float) z;
+        }
+
+        private void quad(int a, int b, int c, int d) {
+            triangle(a, b, c);
+            triangle(a, c, d);
+        }
+
+        private void triangle(int a, int b, int c) {
+            if (faceCount + 6 > faces.length) {
+                faces = Arrays.copyOf(faces, faces.length * 2);
+            }
+            faces[faceCount++] = a;
+            faces[faceCount++] = 0;
+            faces[faceCount++] = b;
+            faces[faceCount++] = 0;
+            faces[faceCount++] = c;
+            faces[faceCount++] = 0;
         }
     }
 
@@ -0,0 +1,321 @@
+package tictactoe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Headless round-robin between {@link Strategy} entrants, played on a
+ * fork-join pool.
+ *
+ * <p>Every pair of entrants plays the same number of games, alternating who
+ * moves first. Each game gets its own seed, derived from the tournament seed,
+ * the pairing and the game number; it seeds the game's card draws and the
+ * strategies' random choices, so a run with the same seed and deterministic
+ * strategies replays exactly, however the games are spread over threads.
+ * Strategies are created per game from their factories, so they never need
+ * to be thread-safe.</p>
+ *
+ * <p>{@link #main(String[])} runs a default field from the command line:
+ * random, greedy, alpha-beta to depth 2 and single-threaded MCTS of 100
+ * playouts per move. All of them stop on a fixed amount of work rather than
+ * on the clock, so their games replay exactly. A positive budget in
+ * milliseconds adds alpha-beta and MCTS entrants with that time limit per
+ * move; their games depend on the machine and the load.</p>
+ * <pre>java -cp out tictactoe.Tournament [gamesPerPairing] [pieceCap] [turnLimit] [seed] [threads] [budgetMillis]</pre>
+ */
+public class Tournament {
+    private static final double ELO_SCALE = 400.0;
+    private static final double BASE_ELO = 1500.0;
+    private static final int RATING_ITERATIONS = 500;
+    private static final int DEFAULT_DEPTH = 2;
+    private static final long DEFAULT_PLAYOUTS = 100;
+
+    private final BoardTopology topology;
+    private final int pieceCap;
+    private final int turnLimit;
+    private final List<String> names = new ArrayList<>();
+    private final List<Supplier<Strategy>> factories = new ArrayList<>();
+
+    public Tournament(int pieceCap, int turnLimit) {
+        this(BoardTopology.of(Board.SIZE), pieceCap, turnLimit);
+    }
+
+    public Tournament(BoardTopology topology, int pieceCap, int turnLimit) {
+        this.topology = topology;
+        this.pieceCap = pieceCap;
+        this.turnLimit = turnLimit;
+    }
+
+    public void addEntrant(String name, Supplier<Strategy> factory) {
+        names.add(name);
+        factories.add(factory);
+    }
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int pieceCap = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int turnLimit = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1L;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+        long budgetMillis = args.length > 5 ? Long.parseLong(args[5]) : 0;
+
+        Tournament tournament = new Tournament(pieceCap, turnLimit);
+        tournament.addEntrant("random", Strategy::random);
+        tournament.addEntrant("greedy", Strategy::greedy);
+        tournament.addEntrant("alphabeta-d" + DEFAULT_DEPTH, () -> Strategy.alphaBetaDepth(DEFAULT_DEPTH));
+        tournament.addEntrant("mcts-" + DEFAULT_PLAYOUTS + "p", () -> Strategy.mctsPlayouts(DEFAULT_PLAYOUTS));
+        if (budgetMillis > 0) {
+            TranspositionTable table = new TranspositionTable(64);
+            tournament.addEntrant("alphabeta-" + budgetMillis + "ms", () -> Strategy.alphaBeta(budgetMillis, table));
+            tournament.addEntrant("mcts-" + budgetMillis + "ms", () -> Strategy.mcts(1, budgetMillis));
+        }
+        Results results = tournament.run(games, seed, threads);
+        System.out.print(results.toTable());
+    }
+
+    /**
+     * Plays {@code gamesPerPairing} games between every pair of entrants on
+     * {@code threads} threads.
+     */
+    public Results run(int gamesPerPairing, long seed, int threads) {
+        int entrants = names.size();
+        if (entrants < 2) {
+            throw new IllegalStateException("A tournament needs at least two entrants");
+        }
+        List<Callable<Outcome>> games = new ArrayList<>();
+        int pairing = 0;
+        for (int a = 0; a < entrants; a++) {
+            for (int b = a + 1; b < entrants; b++) {
+                for (int g = 0; g < gamesPerPairing; g++) {
+                    long gameSeed = new SplittableRandom(seed ^ ((long) pairing << 32 | g)).nextLong();
+                    int first = g % 2 == 0 ? a : b;
+                    int second = first == a ? b : a;
+                    games.add(() -> play(first, second, gameSeed));
+                }
+                pairing++;
+            }
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            Results results = new Results(names);
+            for (Future<Outcome> future : pool.invokeAll(games)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Tournament interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Tournament game failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Outcome play(int first, int second, long seed) throws Exception {
+        Strategy[] strategies = {factories.get(first).get(), factories.get(second).get()};
+        try {
+            List<Player> players = List.of(new Player(names.get(first)), new Player(names.get(second)));
+            Random cards = new Random(seed);
+            Game game = new Game(players, topology, pieceCap, turnLimit, cards);
+            Random choices = new Random(~seed);
+            while (!game.isGameOver()) {
+                if (game.getPhase() == Game.PHASE_CARD && game.getOfferMask() == 0) {
+                    game.offerCards();
+                }
+                Strategy strategy = strategies[game.getCurrentPlayerIndex()];
+                int move = strategy.chooseMove(game, choices);
+                if (!game.play(move)) {
+                    throw new IllegalStateException(strategy.getName() + " chose an illegal move: "
+                            + Move.toString(move, topology));
+                }
+            }
+            return new Outcome(first, second, players.get(0).getScore(), players.get(1).getScore());
+        } finally {
+            for (Strategy strategy : strategies) {
+                if (strategy instanceof AutoCloseable) {
+                    ((AutoCloseable) strategy).close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Final points of one game, by entrant index.
+     */
+    static final class Outcome {
+        final int first;
+        final int second;
+        final int firstScore;
+        final int secondScore;
+
+        Outcome(int first, int second, int firstScore, int secondScore) {
+            this.first = first;
+            this.second = second;
+            this.firstScore = firstScore;
+            this.secondScore = secondScore;
+        }
+    }
+
+    /**
+     * Win/draw/loss and point totals per entrant and per pairing, with Elo
+     * ratings fitted to all games at once.
+     */
+    public static final class Results {
+        private final List<String> names;
+        private final int[][] wins;
+        private final int[][] draws;
+        private final long[] pointsFor;
+        private final long[] pointsAgainst;
+
+        Results(List<String> names) {
+            int n = names.size();
+            this.names = Collections.unmodifiableList(new ArrayList<>(names));
+            this.wins = new int[n][n];
+            this.draws = new int[n][n];
+            this.pointsFor = new long[n];
+            this.pointsAgainst = new long[n];
+        }
+
+        void add(Outcome outcome) {
+            int a = outcome.first;
+            int b = outcome.second;
+            if (outcome.firstScore > outcome.secondScore) {
+                wins[a][b]++;
+            } else if (outcome.firstScore < outcome.secondScore) {
+                wins[b][a]++;
+            } else {
+                draws[a][b]++;
+                draws[b][a]++;
+            }
+            pointsFor[a] += outcome.firstScore;
+            pointsAgainst[a] += outcome.secondScore;
+            pointsFor[b] += outcome.secondScore;
+            pointsAgainst[b] += outcome.firstScore;
+        }
+
+        public List<String> getNames() {
+            return names;
+        }
+
+        public int getWins(int entrant, int opponent) {
+            return wins[entrant][opponent];
+        }
+
+        public int getDraws(int entrant, int opponent) {
+            return draws[entrant][opponent];
+        }
+
+        public int getGames(int entrant, int opponent) {
+            return wins[entrant][opponent] + wins[opponent][entrant] + draws[entrant][opponent];
+        }
+
+        public long getPointsFor(int entrant) {
+            return pointsFor[entrant];
+        }
+
+        public long getPointsAgainst(int entrant) {
+            return pointsAgainst[entrant];
+        }
+
+        /**
+         * Elo ratings averaging {@value #BASE_ELO}, from a Bradley–Terry fit
+         * over every game (draws count half). Each pairing gets one extra
+         * virtual draw so that an entrant without a win still gets a finite
+         * rating.
+         */
+        public double[] getEloRatings() {
+            int n = names.size();
+            double[] strength = new double[n];
+            Arrays.fill(strength, 1.0);
+            for (int iteration = 0; iteration < RATING_ITERATIONS; iteration++) {
+                double[] next = new double[n];
+                for (int i = 0; i < n; i++) {
+                    double score = 0;
+                    double denominator = 0;
+                    for (int j = 0; j < n; j++) {
+                        if (i == j) {
+                            continue;
+                        }
+                        int games = getGames(i, j) + 1;
+                        score += wins[i][j] + 0.5 * (draws[i][j] + 1);
+                        denominator += games / (strength[i] + strength[j]);
+                    }
+                    next[i] = score / denominator;
+                }
+                double logMean = 0;
+                for (double value : next) {
+                    logMean += Math.log(value) / n;
+                }
+                for (int i = 0; i < n; i++) {
+                    strength[i] = next[i] / Math.exp(logMean);
+                }
+            }
+            double[] elo = new double[n];
+            for (int i = 0; i < n; i++) {
+                elo[i] = BASE_ELO + ELO_SCALE * Math.log10(strength[i]);
+            }
+            return elo;
+        }
+
+        /**
+         * Standings sorted by Elo, followed by the head-to-head
+         * win-draw-loss matrix (row entrant against column entrant).
+         */
+        public String toTable() {
+            int n = names.size();
+            double[] elo = getEloRatings();
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                order.add(i);
+            }
+            order.sort((x, y) -> Double.compare(elo[y], elo[x]));
+            int width = 8;
+            for (String name : names) {
+                width = Math.max(width, name.length() + 2);
+            }
+            StringBuilder out = new StringBuilder();
+            out.append(String.format(Locale.ROOT, "%-" + width + "s%7s%7s%7s%7s%9s%9s%8s%n",
+                    "Entrant", "Games", "Win", "Draw", "Loss", "Pts+", "Pts-", "Elo"));
+            for (int i : order) {
+                int games = 0;
+                int won = 0;
+                int drawn = 0;
+                for (int j = 0; j < n; j++) {
+                    if (j != i) {
+                        games += getGames(i, j);
+                        won += wins[i][j];
+                        drawn += draws[i][j];
+                    }
+                }
+                out.append(String.format(Locale.ROOT, "%-" + width + "s%7d%7d%7d%7d%9d%9d%8.0f%n",
+                        names.get(i), games, won, drawn, games - won - drawn, pointsFor[i], pointsAgainst[i], elo[i]));
+            }
+            out.append(System.lineSeparator());
+            out.append(String.format(Locale.ROOT, "%-" + width + "s", "W-D-L"));
+            for (int j : order) {
+                out.append(String.format(Locale.ROOT, "%" + width + "s", names.get(j)));
+            }
+            out.append(System.lineSeparator());
+            for (int i : order) {
+                out.append(String.format(Locale.ROOT, "%-" + width + "s", names.get(i)));
+                for (int j : order) {
+                    String cell = i == j ? "-" : wins[i][j] + "-" + draws[i][j] + "-" + wins[j][i];
+                    out.append(String.format(Locale.ROOT, "%" + width + "s", cell));
+                }
+                out.append(System.lineSeparator());
+            }
+            return out.toString();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package tictactoe;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Fixed-size hash table of search results keyed by 64-bit position hashes,
+ * kept off-heap in direct byte buffers so that even a multi-gigabyte table
+ * adds nothing for the garbage collector to trace or copy.
+ *
+ * <p>The table is split into 32-byte buckets of two entries. The first entry
+ * is depth-preferred: it is only replaced by a search at least as deep, by
+ * the same position, or once it is left over from an earlier search (see
+ * {@link #newSearch()}). Everything else goes to the second entry, which is
+ * always replaced. An entry is two {@code long}s, the packed data and the key
+ * XOR the data, so any number of threads can probe and store without locks:
+ * a torn entry, half written by one thread and half by another, fails the
+ * key check on probing and simply reads as a miss.</p>
+ *
+ * <p>Probes return the entry data packed in a {@code long}, 0 on a miss,
+ * which {@link #move(long)}, {@link #score(long)}, {@link #depth(long)} and
+ * {@link #bound(long)} unpack, so lookups allocate nothing. Scores are stored
+ * as given; an engine that scores wins by distance to the root should make
+ * them relative to the stored node first.</p>
+ */
+public final class TranspositionTable {
+    /** The stored score is the exact value of the position. */
+    public static final int BOUND_EXACT = 1;
+    /** The position is worth at least the stored score (a beta cutoff). */
+    public static final int BOUND_LOWER = 2;
+    /** The position is worth at most the stored score (no move raised alpha). */
+    public static final int BOUND_UPPER = 3;
+
+    /** Largest storable score magnitude. */
+    public static final int MAX_SCORE = (1 << 21) - 1;
+    /** Largest storable depth. */
+    public static final int MAX_DEPTH = 127;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.nativeOrder());
+    private static final int BUCKET_SHIFT = 5;
+    private static final int CHUNK_BUCKET_BITS = 30 - BUCKET_SHIFT;
+
+    // Data layout: move (31 bits) | score (22 bits, signed) | depth (7) | bound (2) | generation (2).
+    private static final int SCORE_SHIFT = 31;
+    private static final int DEPTH_SHIFT = 53;
+    private static final int BOUND_SHIFT = 60;
+    private static final int GENERATION_SHIFT = 62;
+
+    private final ByteBuffer[] chunks;
+    private final long bucketMask;
+    private final int chunkMask;
+    private int generation;
+
+    /**
+     * Creates a table of at most {@code megabytes} MB, rounded down to a
+     * power-of-two number of buckets. The memory is allocated up front.
+     */
+    public TranspositionTable(int megabytes) {
+        if (megabytes < 1) {
+            throw new IllegalArgumentException("Table size must be at least 1 MB: " + megabytes);
+        }
+        long buckets = Long.highestOneBit(((long) megabytes << 20) >>> BUCKET_SHIFT);
+        long chunkBuckets = Math.min(buckets, 1L << CHUNK_BUCKET_BITS);
+        this.bucketMask = buckets - 1;
+        this.chunkMask = (int) (chunkBuckets - 1);
+        this.chunks = new ByteBuffer[(int) (buckets / chunkBuckets)];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = ByteBuffer.allocateDirect((int) (chunkBuckets << BUCKET_SHIFT)).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /**
+     * Number of entries the table holds.
+     */
+    public long getCapacity() {
+        return (bucketMask + 1) * 2;
+    }
+
+    public long getSizeBytes() {
+        return (bucketMask + 1) << BUCKET_SHIFT;
+    }
+
+    /**
+     * Starts a new search: entries stored before are still found, but no
+     * longer protect their depth-preferred slot. Engines sharing the table
+     * may each call it; a thread that sees the change late only makes a
+     * slightly worse replacement choice.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 3;
+    }
+
+    /**
+     * Forgets every entry.
+     */
+    public void clear() {
+        byte[] zeros = new byte[1 << 16];
+        for (ByteBuffer chunk : chunks) {
+            for (int offset = 0; offset < chunk.capacity(); offset += zeros.length) {
+                chunk.put(offset, zeros, 0, Math.min(zeros.length, chunk.capacity() - offset));
+            }
+        }
+    }
+
+    /**
+     * Looks up {@code key} and returns its packed entry, or 0 if the table
+     * holds nothing for it.
+     */
+    public long probe(long key) {
+        ByteBuffer chunk = chunk(key);
+        int base = offset(key);
+        for (int entry = base; entry < base + 32; entry += 16) {
+            long data = (long) LONGS.getOpaque(chunk, entry + 8);
+            if (((long) LONGS.getOpaque(chunk, entry) ^ data) == key && data != 0) {
+                return data;
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Stores a search result for {@code key}; see the class comment for which
+     * entry of the bucket it replaces. A result without a move keeps the move
+     * already stored for the same position.
+     *
+     * @param depth remaining depth the result was searched to, clamped to
+     *              {@code [0, MAX_DEPTH]}
+     * @param bound one of the {@code BOUND_*} constants
+     * @param score value of the position, within {@code ±MAX_SCORE}
+     * @param move  best move found, or {@link Move#NONE}
+     */
+    public void store(long key, int depth, int bound, int score, int move) {
+        if (bound < BOUND_EXACT || bound > BOUND_UPPER) {
+            throw new IllegalArgumentException("Unknown bound: " + bound);
+        }
+        if (Math.abs(score) > MAX_SCORE) {
+            throw new IllegalArgumentException("Score out of range: " + score);
+        }
+        depth = Math.max(0, Math.min(depth, MAX_DEPTH));
+        ByteBuffer chunk = chunk(key);
+        int base = offset(key);
+        long preferred = (long) LONGS.getOpaque(chunk, base + 8);
+        boolean same = ((long) LONGS.getOpaque(chunk, base) ^ preferred) == key && preferred != 0;
+        int entry = base + 16;
+        if (same || preferred == 0 || depth >= depth(preferred) || generation(preferred) != generation) {
+            entry = base;
+        }
+        if (move == Move.NONE) {
+            long old = (long) LONGS.getOpaque(chunk, entry + 8);
+            if (((long) LONGS.getOpaque(chunk, entry) ^ old) == key && old != 0) {
+                move = move(old);
+            }
+        }
+        long data = (move & 0x7FFF_FFFFL)
+                | ((long) score & 0x3F_FFFFL) << SCORE_SHIFT
+                | (long) depth << DEPTH_SHIFT
+                | (long) bound << BOUND_SHIFT
+                | (long) generation << GENERATION_SHIFT;
+        LONGS.setOpaque(chunk, entry + 8, data);
+        LONGS.setOpaque(chunk, entry, key ^ data);
+    }
+
+    /**
+     * Best move of a probed entry, or {@link Move#NONE}.
+     */
+    public static int move(long entry) {
+        return (int) (entry & 0x7FFF_FFFFL);
+    }
+
+    public static int score(long entry) {
+        return (int) (entry << (64 - DEPTH_SHIFT) >> (64 - DEPTH_SHIFT + SCORE_SHIFT));
+    }
+
+    public static int depth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT) & MAX_DEPTH;
+    }
+
+    /**
+     * Bound type of a probed entry; 0 for a miss.
+     */
+    public static int bound(long entry) {
+        return (int) (entry >>> BOUND_SHIFT) & 3;
+    }
+
+    private static int generation(long entry) {
+        return (int) (entry >>> GENERATION_SHIFT);
+    }
+
+    private ByteBuffer chunk(long key) {
+        return chunks[(int) ((key & bucketMask) >>> CHUNK_BUCKET_BITS)];
+    }
+
+    private int offset(long key) {
+        return ((int) key & chunkMask) << BUCKET_SHIFT;
+    }
+}
@@ -0,0 +1,125 @@
+package tictactoe;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Random 64-bit keys used to hash game positions, generated once per board
+ * topology from a fixed seed so hashes are stable across runs.
+ *
+ * <p>Owners and sides beyond the first {@value #TABLE_OWNERS} players, and
+ * FIFO links, are not tabulated; their keys are derived by mixing a per-cell
+ * seed instead.</p>
+ */
+final class Zobrist {
+    static final int MAX_FROZEN_TURNS = 15;
+    private static final int TABLE_OWNERS = 4;
+    private static final long SEED = 0x3D7A_C0DE_5EED_0001L;
+    private static final ConcurrentMap<BoardTopology, Zobrist> CACHE = new ConcurrentHashMap<>();
+
+    private final long[][] pieceKeys;
+    private final long[] empoweredKeys;
+    private final long[][] frozenKeys;
+    private final long[] cellSeeds;
+    private final long[] sideKeys;
+    private final long[] phaseKeys;
+    private final long oddRoundKey;
+
+    static Zobrist of(BoardTopology topology) {
+        return CACHE.computeIfAbsent(topology, Zobrist::new);
+    }
+
+    private Zobrist(BoardTopology topology) {
+        int cells = topology.getCellCount();
+        SplittableRandom random = new SplittableRandom(SEED ^ ((long) topology.getSize() << 32) ^ topology.getWinLength());
+        pieceKeys = new long[TABLE_OWNERS][cells];
+        empoweredKeys = new long[cells];
+        frozenKeys = new long[cells][MAX_FROZEN_TURNS + 1];
+        cellSeeds = new long[cells];
+        sideKeys = new long[TABLE_OWNERS];
+        for (int cell = 0; cell < cells; cell++) {
+            for (int owner = 0; owner < TABLE_OWNERS; owner++) {
+                pieceKeys[owner][cell] = random.nextLong();
+            }
+            empoweredKeys[cell] = random.nextLong();
+            for (int turns = 1; turns <= MAX_FROZEN_TURNS; turns++) {
+                frozenKeys[cell][turns] = random.nextLong();
+            }
+            cellSeeds[cell] = random.nextLong();
+        }
+        for (int side = 0; side < TABLE_OWNERS; side++) {
+            sideKeys[side] = random.nextLong();
+        }
+        oddRoundKey = random.nextLong();
+        phaseKeys = new long[]{0L, random.nextLong(), random.nextLong()};
+    }
+
+    long piece(int owner, int cell) {
+        if (owner < TABLE_OWNERS) {
+            return pieceKeys[owner][cell];
+        }
+        return mix(cellSeeds[cell] ^ (0x100L + owner));
+    }
+
+    long empowered(int cell) {
+        return empoweredKeys[cell];
+    }
+
+    /**
+     * Key for a frozen timer; timers above {@value #MAX_FROZEN_TURNS} share
+     * the top key.
+     */
+    long frozen(int cell, int turns) {
+        return turns <= 0 ? 0L : frozenKeys[cell][Math.min(turns, MAX_FROZEN_TURNS)];
+    }
+
+    /**
+     * Key for the piece on {@code cell} coming right after the piece on
+     * {@code previous} in its owner's FIFO queue, or first if
+     * {@code previous} is -1. A piece off the board ({@code cell} -1) has no
+     * key of its own.
+     */
+    long order(int previous, int cell) {
+        return cell < 0 ? 0L : mix(cellSeeds[cell] + (previous + 2) * 0x9E37_79B9_7F4A_7C15L);
+    }
+
+    long side(int side) {
+        if (side < TABLE_OWNERS) {
+            return sideKeys[side];
+        }
+        return mix(SEED + side);
+    }
+
+    /**
+     * Key for a {@code Game.PHASE_*} value; the placement phase, which starts
+     * every turn, hashes to zero.
+     */
+    long phase(int phase) {
+        return phaseKeys[phase];
+    }
+
+    /**
+     * Key for a pending card offer given as a bitmask of card kinds.
+     */
+    long offer(int mask) {
+        return mask == 0 ? 0L : mix(SEED ^ (0x5EED_0000L + mask));
+    }
+
+    /**
+     * Key for {@code owner} having scored line {@code line}.
+     */
+    long scoredLine(int owner, int line) {
+        return mix(SEED + ((long) (owner + 1) << 40) + line * 0xD6E8_FEB8_6659_FD93L);
+    }
+
+    long oddRound() {
+        return oddRoundKey;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58_476D_1CE4_E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D0_49BB_1331_11EBL;
+        return z ^ (z >>> 31);
+    }
+}